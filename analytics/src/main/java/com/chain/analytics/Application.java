@@ -5,6 +5,8 @@ import com.chain.exception.ChainException;
 import com.chain.exception.ConnectivityException;
 import com.chain.exception.HTTPException;
 import com.chain.http.Client;
+import com.chain.metrics.JmxReporter;
+import com.chain.metrics.MetricRegistry;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
 import java.beans.PropertyVetoException;
@@ -62,8 +64,24 @@ public class Application {
     //
     Importer importer = null;
     try {
+      // The importer's and its client's metrics are published over JMX.
+      MetricRegistry metrics = new MetricRegistry();
+      final JmxReporter jmx = new JmxReporter(metrics, "com.chain.analytics");
+      jmx.start();
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread() {
+                @Override
+                public void run() {
+                  jmx.close();
+                }
+              });
+
       Client.Builder clientBuilder =
-          new Client.Builder().addURL(chainUrl).setReadTimeout(120, TimeUnit.SECONDS);
+          new Client.Builder()
+              .addURL(chainUrl)
+              .setReadTimeout(120, TimeUnit.SECONDS)
+              .setMetricRegistry(metrics);
       if (chainToken != null && chainToken.length() > 0) {
         clientBuilder.setAccessToken(chainToken);
       }
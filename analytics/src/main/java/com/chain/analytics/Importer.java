@@ -5,8 +5,13 @@ import com.chain.api.PagedItems;
 import com.chain.api.Query;
 import com.chain.api.Transaction;
 import com.chain.api.Transaction.QueryBuilder;
+import com.chain.common.FlightEvents;
 import com.chain.exception.APIException;
 import com.chain.exception.ChainException;
+import com.chain.metrics.Counter;
+import com.chain.metrics.Gauge;
+import com.chain.metrics.Histogram;
+import com.chain.metrics.MetricRegistry;
 import com.google.gson.Gson;
 
 import java.io.ByteArrayInputStream;
@@ -21,6 +26,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 
 import org.apache.logging.log4j.Logger;
@@ -49,6 +55,9 @@ public class Importer {
   private Schema mTransactionsTbl;
   private Schema mTransactionInputsTbl;
   private Schema mTransactionOutputsTbl;
+  private Counter mRows;
+  private RowRate mRowRate;
+  private Histogram mCommitLatency;
 
   /**
    * connect initializes an Importer using the transaction feed specified
@@ -90,6 +99,16 @@ public class Importer {
     mConfig = config;
     mDataSource = ds;
     mFeed = feed;
+
+    // Record the importer's metrics alongside the client's, if it has any.
+    MetricRegistry registry = client.metricRegistry();
+    if (registry == null) {
+      registry = new MetricRegistry();
+    }
+    mRows = registry.counter("importer.rows");
+    mRowRate = new RowRate();
+    mCommitLatency = registry.histogram("importer.commit.latency");
+    registry.gauge("importer.rows-per-second", mRowRate);
   }
 
   void initializeSchema() throws SQLException {
@@ -366,13 +385,28 @@ public class Importer {
           }
 
           // Commit the entire blockchain transaction at once.
-          psTx.executeBatch();
-          psIn.executeBatch();
-          psOut.executeBatch();
-          if (spentOutput) {
-            psSpent.executeBatch();
+          FlightEvents.Span event = FlightEvents.begin(FlightEvents.Type.IMPORT_COMMIT);
+          try {
+            psTx.executeBatch();
+            psIn.executeBatch();
+            psOut.executeBatch();
+            if (spentOutput) {
+              psSpent.executeBatch();
+            }
+            long commitStart = System.nanoTime();
+            conn.commit();
+            mCommitLatency.record(System.nanoTime() - commitStart);
+            // One row for the transaction, and one for each of its
+            // inputs and outputs.
+            long rows = 1 + tx.inputs.size() + tx.outputs.size();
+            mRows.inc(rows);
+            mRowRate.mark(rows);
+          } finally {
+            if (event.recording()) {
+              event.set("transactionId", tx.id);
+              event.set("inputs", tx.inputs.size()).set("outputs", tx.outputs.size()).end();
+            }
           }
-          conn.commit();
         } catch (SQLException ex) {
           // We can hit a unique constraint violation (ORA-00001)
           // iff we already processed these transactions but have not
@@ -390,6 +424,39 @@ public class Importer {
     }
   }
 
+  // RowRate reports the rate at which rows were imported over the last
+  // complete interval. The interval is closed by the importer's thread as
+  // it commits, so reading the gauge never changes what it reports.
+  private static class RowRate implements Gauge {
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // Only the importer's thread reads and writes the current interval.
+    private long intervalStart = System.nanoTime();
+    private long intervalRows;
+
+    private volatile double rate;
+    private volatile long rateNanos = intervalStart;
+
+    void mark(long rows) {
+      intervalRows += rows;
+      long now = System.nanoTime();
+      long elapsed = now - intervalStart;
+      if (elapsed >= INTERVAL_NANOS) {
+        rate = intervalRows * 1e9 / elapsed;
+        rateNanos = now;
+        intervalStart = now;
+        intervalRows = 0;
+      }
+    }
+
+    @Override
+    public double value() {
+      // Once no interval has closed for a while, the importer has stopped
+      // committing rather than kept up its last rate.
+      return System.nanoTime() - rateNanos > 2 * INTERVAL_NANOS ? 0 : rate;
+    }
+  }
+
   private static InputStream asJsonBlob(final Object obj) {
     if (obj == null) return null;
     return new ByteArrayInputStream(gson.toJson(obj).getBytes(StandardCharsets.UTF_8));
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.chain.api.Transaction;
+import com.chain.common.Utils;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+// DateContention measures how fast 64 threads can decode pages of
+// transactions with the SDK's shared serializer, compared to a serializer
+// configured as it used to be, with GsonBuilder.setDateFormat. Gson guards
+// the SimpleDateFormat behind setDateFormat with a lock that every thread
+// takes for every date; the SDK's RFC3339 adapter takes none.
+//
+// Build the SDK, then run with it on the classpath:
+//
+//   cd sdk/java && mvn -q dependency:build-classpath -Dmdep.outputFile=/tmp/cp
+//   javac -cp target/classes:$(cat /tmp/cp) -d /tmp ../../perf/DateContention.java
+//   java -cp /tmp:target/classes:$(cat /tmp/cp) DateContention
+public class DateContention {
+  static final int threads = 64;
+  static final int txsPerPage = 100;
+  static final long seconds = 5;
+
+  public static void main(String[] args) throws Exception {
+    String page = page();
+    Gson dateFormat = new GsonBuilder().setDateFormat(Utils.rfc3339DateFormat).create();
+    for (int round = 0; round < 2; round++) {
+      report("setDateFormat", run(dateFormat, page));
+      report("Rfc3339DateAdapter", run(Utils.serializer, page));
+    }
+  }
+
+  // page builds a page of transactions, each with a timestamp, one input
+  // and two outputs, as list-transactions returns them.
+  static String page() {
+    StringBuilder b = new StringBuilder("{\"items\":[");
+    for (int i = 0; i < txsPerPage; i++) {
+      if (i > 0) {
+        b.append(',');
+      }
+      b.append("{\"id\":\"tx").append(i).append("\",")
+          .append("\"timestamp\":\"2017-03-08T21:53:")
+          .append(String.format("%02d", i % 60))
+          .append(".123Z\",\"block_id\":\"b\",\"block_height\":")
+          .append(1000 + i)
+          .append(",\"position\":0,\"reference_data\":{},\"is_local\":\"yes\",")
+          .append("\"inputs\":[{\"type\":\"spend\",\"asset_id\":\"a\",\"amount\":100,")
+          .append("\"account_id\":\"acc\",\"reference_data\":{}}],")
+          .append("\"outputs\":[{\"type\":\"control\",\"asset_id\":\"a\",\"amount\":60},")
+          .append("{\"type\":\"control\",\"asset_id\":\"a\",\"amount\":40}]}");
+    }
+    b.append("],\"next\":{\"filter\":\"\",\"after\":\"1000:0-9223372036854775807\"},");
+    b.append("\"last_page\":false}");
+    return b.toString();
+  }
+
+  static long run(final Gson gson, final String page) throws Exception {
+    final LongAdder pages = new LongAdder();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    final CountDownLatch done = new CountDownLatch(threads);
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread t =
+          new Thread(
+              () -> {
+                while (System.nanoTime() < deadline) {
+                  Transaction.Items items = gson.fromJson(page, Transaction.Items.class);
+                  if (items.list.size() != txsPerPage) {
+                    throw new AssertionError("decoded " + items.list.size() + " transactions");
+                  }
+                  pages.increment();
+                }
+                done.countDown();
+              });
+      workers.add(t);
+      t.start();
+    }
+    done.await();
+    return pages.sum();
+  }
+
+  static void report(String label, long pages) {
+    System.out.printf(
+        "%-20s %8.0f pages/s %10.0f dates/s%n",
+        label,
+        (double) pages / seconds,
+        (double) pages * txsPerPage / seconds);
+  }
+}
@@ -0,0 +1,111 @@
+import com.chain.http.Client;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// FailoverRecovery measures how long requests take to recover after the
+// leader core goes away, with and without failover probing. It runs three
+// mock cores: the leader is shut down, and one of the remaining two is
+// elected leader some time later. Time-to-recover is measured from the
+// election to the completion of the requests that were waiting out the
+// failover.
+//
+// Build the SDK, then run with the SDK and mockwebserver on the classpath:
+//
+//   cd sdk/java && mvn -q dependency:build-classpath -Dmdep.outputFile=/tmp/cp
+//   javac -cp target/classes:$(cat /tmp/cp) -d /tmp ../../perf/FailoverRecovery.java
+//   java -cp /tmp:target/classes:$(cat /tmp/cp) FailoverRecovery
+public class FailoverRecovery {
+  static final int trials = 10;
+  static final int waiters = 20;
+
+  public static void main(String[] args) throws Exception {
+    report("backoff only", run(false));
+    report("probing", run(true));
+    System.exit(0);
+  }
+
+  static List<Long> run(boolean probe) throws Exception {
+    List<Long> recoveries = new ArrayList<>();
+    for (int i = 0; i < trials; i++) {
+      recoveries.add(trial(probe, 500 + 250 * i));
+    }
+    return recoveries;
+  }
+
+  // trial returns the time in milliseconds from the election of a new
+  // leader until every waiting request has succeeded.
+  static long trial(boolean probe, long electionMillis) throws Exception {
+    MockWebServer leader = new MockWebServer();
+    Core follower = new Core();
+    Core candidate = new Core();
+    leader.start();
+    follower.server.start();
+    candidate.server.start();
+
+    Client.Builder builder =
+        new Client.Builder()
+            .addURL(leader.getUrl("/"))
+            .addURL(follower.server.getUrl("/"))
+            .addURL(candidate.server.getUrl("/"));
+    if (probe) {
+      builder.setFailoverProbe("info", 50, TimeUnit.MILLISECONDS);
+    }
+    Client client = builder.build();
+    leader.shutdown();
+
+    List<CompletableFuture<Object>> calls = new ArrayList<>();
+    for (int i = 0; i < waiters; i++) {
+      calls.add(client.requestAsync("list-assets", null, Object.class));
+    }
+    Thread.sleep(electionMillis);
+    long elected = System.nanoTime();
+    candidate.leader = true;
+    for (CompletableFuture<Object> call : calls) {
+      call.get(1, TimeUnit.MINUTES);
+    }
+    long recovery = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - elected);
+
+    follower.server.shutdown();
+    candidate.server.shutdown();
+    return recovery;
+  }
+
+  // Core is a mock core that is unavailable until it is elected leader.
+  static class Core {
+    final MockWebServer server = new MockWebServer();
+    volatile boolean leader;
+
+    Core() {
+      server.setDispatcher(
+          new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+              if (!leader) {
+                return new MockResponse().setResponseCode(503);
+              }
+              return new MockResponse().setHeader("Chain-Request-ID", "perf").setBody("{}");
+            }
+          });
+    }
+  }
+
+  static void report(String name, List<Long> recoveries) {
+    List<Long> sorted = new ArrayList<>(recoveries);
+    Collections.sort(sorted);
+    long total = 0;
+    for (long r : sorted) {
+      total += r;
+    }
+    System.out.printf(
+        "%-14s mean %5dms  p50 %5dms  max %5dms%n",
+        name, total / sorted.size(), sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1));
+  }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.chain.http.Client;
+import com.chain.http.TransportRegistry;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+// PrewarmLatency measures the latency of the first calls a freshly built
+// client makes, as on a new pod after a deploy, with and without connection
+// prewarming. The mock core charges 50ms for the first request on each new
+// connection, standing in for the TCP and TLS handshakes with a distant core
+// (set it with -DhandshakeMillis), and 2ms for every request.
+//
+// Build the SDK, then run with it on the classpath:
+//
+//   cd sdk/java && mvn -q dependency:build-classpath -Dmdep.outputFile=/tmp/cp
+//   javac -cp target/classes:$(cat /tmp/cp) -d /tmp ../../perf/PrewarmLatency.java
+//   java -cp /tmp:target/classes:$(cat /tmp/cp) PrewarmLatency
+public class PrewarmLatency {
+  static final int threads = 20;
+  static final int callsPerThread = 10;
+  static final long handshakeMillis = Long.getLong("handshakeMillis", 50);
+
+  public static class Message {
+    public String message;
+  }
+
+  public static void main(String[] args) throws Exception {
+    MockWebServer core = new MockWebServer();
+    core.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            Thread.sleep(request.getSequenceNumber() == 0 ? handshakeMillis : 2);
+            return new MockResponse()
+                .setHeader("Chain-Request-ID", "perf")
+                .setBody("{\"message\":\"ok\"}");
+          }
+        });
+    core.start();
+    try {
+      for (int round = 0; round < 2; round++) {
+        report("cold", run(core, false));
+        report("prewarmed", run(core, true));
+      }
+    } finally {
+      core.shutdown();
+    }
+    System.exit(0); // the clients' connection pools and dispatchers linger
+  }
+
+  static List<Long> run(MockWebServer core, boolean prewarm) throws Exception {
+    // A registry of its own gives each client a new, empty connection pool.
+    Client.Builder builder =
+        new Client.Builder().setURL(core.getUrl("/")).setTransportRegistry(new TransportRegistry());
+    if (prewarm) {
+      builder.setPrewarming("info", threads, 1, TimeUnit.MINUTES);
+    }
+    final Client client = builder.build();
+    client.prewarmed().get(10, TimeUnit.SECONDS);
+
+    final List<Long> micros = Collections.synchronizedList(new ArrayList<Long>());
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(
+              () -> {
+                try {
+                  for (int j = 0; j < callsPerThread; j++) {
+                    long start = System.nanoTime();
+                    client.<Message>request("build-transaction", null, Message.class);
+                    micros.add((System.nanoTime() - start) / 1000);
+                  }
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                } finally {
+                  done.countDown();
+                }
+              })
+          .start();
+    }
+    done.await();
+    Collections.sort(micros);
+    return micros;
+  }
+
+  static void report(String label, List<Long> micros) {
+    System.out.printf(
+        "%-10s first %d calls: p50 %5.1fms  p99 %5.1fms  max %5.1fms%n",
+        label,
+        micros.size(),
+        micros.get(micros.size() / 2) / 1000.0,
+        micros.get(micros.size() * 99 / 100) / 1000.0,
+        micros.get(micros.size() - 1) / 1000.0);
+  }
+}
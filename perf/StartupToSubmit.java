@@ -0,0 +1,111 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.chain.api.Transaction;
+import com.chain.http.Client;
+import com.sun.net.httpserver.HttpServer;
+
+// StartupToSubmit measures how long a short-lived process takes from launch
+// until its first Transaction.submit returns, against a mock core on
+// localhost. This is most of the runtime of a signing job or a CLI tool:
+// starting the JVM, loading the SDK and Gson, and the first request.
+//
+// Build the SDK, then run with it on the classpath:
+//
+//   cd sdk/java && mvn -q dependency:build-classpath -Dmdep.outputFile=/tmp/cp
+//   javac -cp target/classes:$(cat /tmp/cp) -d /tmp ../../perf/StartupToSubmit.java
+//   java -cp /tmp:target/classes:$(cat /tmp/cp) StartupToSubmit
+//
+// The driver starts the mock core, then launches a fresh JVM per run that
+// submits one transaction, and reports the time from launch to its exit. To
+// time a GraalVM native image instead, build one of the submitting process
+// with the SDK jar, whose native-image configuration is bundled, and give
+// its command after "--"; the core's URL is appended to the command:
+//
+//   mvn -q package -DskipTests
+//   native-image -cp /tmp:target/chain-sdk-java-1.1.3.jar StartupToSubmit /tmp/startup-to-submit
+//   java -cp /tmp:target/classes:$(cat /tmp/cp) StartupToSubmit -- /tmp/startup-to-submit submit
+public class StartupToSubmit {
+  static final int runs = 10;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 2 && args[0].equals("submit")) {
+      submit(args[1]);
+      return;
+    }
+
+    List<String> command = new ArrayList<>();
+    int sep = Arrays.asList(args).indexOf("--");
+    if (sep >= 0) {
+      command.addAll(Arrays.asList(args).subList(sep + 1, args.length));
+    } else {
+      String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      command.addAll(
+          Arrays.asList(
+              java, "-cp", System.getProperty("java.class.path"), "StartupToSubmit", "submit"));
+    }
+
+    HttpServer core = mockCore();
+    command.add("http://localhost:" + core.getAddress().getPort());
+    try {
+      List<Long> millis = new ArrayList<>();
+      for (int i = 0; i < runs; i++) {
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output;
+        try (BufferedReader out =
+            new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+          output = out.readLine();
+          while (out.readLine() != null) {}
+        }
+        if (p.waitFor() != 0 || output == null || !output.startsWith("submitted")) {
+          throw new AssertionError("submitting process failed: " + output);
+        }
+        millis.add((System.nanoTime() - start) / 1000000);
+      }
+      Collections.sort(millis);
+      System.out.printf(
+          "launch to first submit over %d runs: min %dms, median %dms, max %dms%n",
+          runs, millis.get(0), millis.get(runs / 2), millis.get(runs - 1));
+    } finally {
+      core.stop(0);
+    }
+  }
+
+  // submit is the short-lived process: it submits one transaction and exits.
+  static void submit(String url) throws Exception {
+    Client client = new Client.Builder().setURL(url).build();
+    Transaction.Template template = new Transaction.Template();
+    template.rawTransaction = "0701";
+    Transaction.SubmitResponse resp = Transaction.submit(client, template);
+    System.out.println("submitted " + resp.id);
+    System.exit(0);
+  }
+
+  // mockCore answers every request as a core answers submit-transaction.
+  static HttpServer mockCore() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          exchange.getRequestBody().close();
+          byte[] body = "[{\"id\":\"tx1\"}]".getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.getResponseHeaders().add("Chain-Request-ID", "req1");
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.start();
+    return server;
+  }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.chain.http.Client;
+import com.chain.http.Lane;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+// VirtualThreadCallers measures the throughput of blocking requests made
+// by 100,000 concurrent callers against a local mock core, first from a
+// fixed pool of platform threads, as in UtxoReservation, and then from one
+// virtual thread per caller. In both cases the client's default lane bounds
+// the requests in flight, so the core sees the same load; the difference is
+// in what it costs the application to keep the callers waiting.
+//
+// The mock core is the JDK's HTTP server rather than MockWebServer, whose
+// responses are held up by delayed ACKs for tens of milliseconds each.
+//
+// Requires Java 21. Build the SDK, then run with it on the classpath:
+//
+//   cd sdk/java && mvn -q dependency:build-classpath -Dmdep.outputFile=/tmp/cp
+//   javac -cp target/classes:$(cat /tmp/cp) -d /tmp ../../perf/VirtualThreadCallers.java
+//   java -Dsun.net.httpserver.nodelay=true \
+//     -cp /tmp:target/classes:$(cat /tmp/cp) VirtualThreadCallers
+public class VirtualThreadCallers {
+  static final int callers = 100000;
+  static final int inFlight = 200;
+  static final int platformThreads = 2 * inFlight;
+  static final long latencyMillis = 5;
+
+  public static void main(String[] args) throws Exception {
+    HttpServer core = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1000);
+    core.createContext(
+        "/",
+        new HttpHandler() {
+          public void handle(HttpExchange exchange) throws IOException {
+            exchange.getRequestBody().readAllBytes();
+            try {
+              Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+            }
+            byte[] body = "{\"items\":[],\"last_page\":true}".getBytes();
+            exchange.getResponseHeaders().set("Chain-Request-ID", "perf");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+          }
+        });
+    core.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    core.start();
+
+    Client client =
+        new Client.Builder()
+            .setURL("http://127.0.0.1:" + core.getAddress().getPort())
+            .setLane(Lane.DEFAULT, inFlight)
+            .setConnectionPool(inFlight, 2, TimeUnit.MINUTES)
+            .useVirtualThreads()
+            .build();
+
+    // Warm up the connections and the JIT.
+    run(client, Executors.newFixedThreadPool(platformThreads), callers / 10);
+
+    report("platform", run(client, Executors.newFixedThreadPool(platformThreads), callers));
+    report("virtual", run(client, Executors.newVirtualThreadPerTaskExecutor(), callers));
+
+    core.stop(0);
+    System.exit(0);
+  }
+
+  // run makes n blocking requests, each submitted to the executor as a
+  // task of its own, and returns the elapsed time in nanoseconds.
+  static long run(final Client client, ExecutorService executor, int n) throws Exception {
+    long start = System.nanoTime();
+    List<Future<Object>> calls = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      calls.add(executor.submit(() -> client.request("list-assets", null, Object.class)));
+    }
+    for (Future<Object> call : calls) {
+      call.get();
+    }
+    long elapsed = System.nanoTime() - start;
+    executor.shutdown();
+    return elapsed;
+  }
+
+  static void report(String name, long elapsedNanos) {
+    System.out.printf(
+        "%-9s %6d calls/s  %5dms total  peak threads %d%n",
+        name,
+        (long) (callers / (elapsedNanos / 1e9)),
+        TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+        ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+  }
+}
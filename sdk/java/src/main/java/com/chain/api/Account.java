@@ -109,7 +109,7 @@ public class Account {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Items getPage() throws ChainException {
-      Items items = this.client.request("list-accounts", this.next, Items.class);
+      Items items = this.client.hedgedRequest("list-accounts", this.next, Items.class);
       items.setClient(this.client);
       return items;
     }
@@ -192,8 +192,8 @@ public class Account {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Account create(Client client) throws ChainException {
-      return client.singletonBatchRequest(
-          "create-account", Arrays.asList(this), Account.class, APIException.class);
+      return client.coalescedBatchRequest(
+          "create-account", this, Account.class, APIException.class);
     }
 
     /**
@@ -390,8 +390,8 @@ public class Account {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Receiver create(Client client) throws ChainException {
-      return client.singletonBatchRequest(
-          "create-account-receiver", Arrays.asList(this), Receiver.class, APIException.class);
+      return client.coalescedBatchRequest(
+          "create-account-receiver", this, Receiver.class, APIException.class);
     }
   }
 
@@ -138,7 +138,7 @@ public class Asset {
      */
     @Override
     public Items getPage() throws ChainException {
-      Items items = this.client.request("list-assets", this.next, Items.class);
+      Items items = this.client.hedgedRequest("list-assets", this.next, Items.class);
       items.setClient(this.client);
       return items;
     }
@@ -227,8 +227,7 @@ public class Asset {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Asset create(Client client) throws ChainException {
-      return client.singletonBatchRequest(
-          "create-asset", Arrays.asList(this), Asset.class, APIException.class);
+      return client.coalescedBatchRequest("create-asset", this, Asset.class, APIException.class);
     }
 
     /**
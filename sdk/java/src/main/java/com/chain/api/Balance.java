@@ -43,7 +43,7 @@ public class Balance {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Items getPage() throws ChainException {
-      Items items = this.client.request("list-balances", this.next, Items.class);
+      Items items = this.client.hedgedRequest("list-balances", this.next, Items.class);
       items.setClient(this.client);
       return items;
     }
@@ -21,6 +21,9 @@ import java.util.Map;
 public class MockHsm {
   /**
    * Returns a new client that knows how to make requests to the mock HSM.
+   * The new client has the same transport, TLS and authentication settings
+   * as the given client, and shares its connections and TLS sessions, but
+   * none of its other behavior, such as prewarming, hedging or listeners.
    * @param client client object that makes request to the core
    * @return new client object
    * @throws BadURLException
@@ -28,10 +31,7 @@ public class MockHsm {
   public static Client getSignerClient(Client client) throws BadURLException {
     try {
       URL signerUrl = new URL(client.url().toString() + "/mockhsm");
-      if (client.hasAccessToken()) {
-        return new Client(signerUrl, client.accessToken());
-      }
-      return new Client(signerUrl);
+      return client.newConnectionBuilder().setURL(signerUrl).build();
     } catch (MalformedURLException e) {
       throw new BadURLException(e.getMessage());
     }
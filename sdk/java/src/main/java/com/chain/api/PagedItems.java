@@ -15,9 +15,10 @@ import java.util.List;
  */
 public abstract class PagedItems<T> implements Iterator<T> {
   /**
-   * Client object that makes the query requests.
+   * Client object that makes the query requests. It is transient so that
+   * Gson doesn't reflect on the client's internals when decoding a page.
    */
-  protected Client client;
+  protected transient Client client;
 
   /**
    * Pointer to the current item in the results list.
@@ -1,10 +1,13 @@
 package com.chain.api;
 
+import com.chain.common.FlightEvents;
 import com.chain.exception.*;
 import com.chain.http.*;
+import com.chain.metrics.MetricRegistry;
 import com.google.gson.annotations.SerializedName;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -65,6 +68,9 @@ public class Transaction {
    * Paged results of a transaction query.
    */
   public static class Items extends PagedItems<Transaction> {
+    // The time allowed for a long poll beyond the core's own timeout.
+    private static final long LONG_POLL_MARGIN_MILLIS = 10000;
+
     /**
      * Returns a new page of transactions based on the underlying query.
      * @return a page of transactions
@@ -75,7 +81,24 @@ public class Transaction {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Items getPage() throws ChainException {
-      Items items = this.client.request("list-transactions", this.next, Items.class);
+      Items items;
+      if (this.next.ascendingWithLongPoll) {
+        // A long poll is meant to be slow; hedging it would only add load.
+        // It is given as long as the core's own timeout, plus a margin,
+        // rather than the client's read timeout, and is sent in its own
+        // lane so that it doesn't hold connections other requests need.
+        long timeout = this.next.timeout > 0 ? this.next.timeout + LONG_POLL_MARGIN_MILLIS : 0;
+        items =
+            this.client.request(
+                "list-transactions",
+                this.next,
+                Items.class,
+                new RequestOptions()
+                    .setAttemptTimeout(timeout, TimeUnit.MILLISECONDS)
+                    .setLane(Lane.LONG_POLL));
+      } else {
+        items = this.client.hedgedRequest("list-transactions", this.next, Items.class);
+      }
       items.setClient(this.client);
       return items;
     }
@@ -493,6 +516,19 @@ public class Transaction {
     return client.batchRequest("build-transaction", builders, Template.class, BuildException.class);
   }
 
+  /**
+   * Builds a batch of transaction templates without blocking the calling thread.
+   * @param client client object which makes server requests
+   * @param builders list of transaction builders
+   * @return a future holding a list of transaction templates. The future completes
+   *     exceptionally with a ChainException if the request itself fails.
+   */
+  public static CompletableFuture<BatchResponse<Template>> buildBatchAsync(
+      Client client, List<Transaction.Builder> builders) {
+    return client.batchRequestAsync(
+        "build-transaction", builders, Template.class, BuildException.class);
+  }
+
   /**
    * Submits a batch of signed transaction templates for inclusion into a block.
    * @param client client object which makes server requests
@@ -533,6 +569,40 @@ public class Transaction {
         "submit-transaction", body, SubmitResponse.class, APIException.class);
   }
 
+  /**
+   * Submits a batch of signed transaction templates for inclusion into a block,
+   * without blocking the calling thread.
+   * @param client client object which makes server requests
+   * @param templates list of transaction templates
+   * @return a future holding a list of submit responses. The future completes
+   *     exceptionally with a ChainException if the request itself fails.
+   */
+  public static CompletableFuture<BatchResponse<SubmitResponse>> submitBatchAsync(
+      Client client, List<Template> templates) {
+    HashMap<String, Object> body = new HashMap<>();
+    body.put("transactions", templates);
+    return client.batchRequestAsync(
+        "submit-transaction", body, SubmitResponse.class, APIException.class);
+  }
+
+  /**
+   * Submits a batch of signed transaction templates for inclusion into a block,
+   * without blocking the calling thread.
+   * @param client client object which makes server requests
+   * @param templates list of transaction templates
+   * @param waitUntil when the server should wait until responding - none, confirmed, processed
+   * @return a future holding a list of submit responses. The future completes
+   *     exceptionally with a ChainException if the request itself fails.
+   */
+  public static CompletableFuture<BatchResponse<SubmitResponse>> submitBatchAsync(
+      Client client, List<Template> templates, String waitUntil) {
+    HashMap<String, Object> body = new HashMap<>();
+    body.put("transactions", templates);
+    body.put("wait_until", waitUntil);
+    return client.batchRequestAsync(
+        "submit-transaction", body, SubmitResponse.class, APIException.class);
+  }
+
   /**
    * Submits signed transaction template for inclusion into a block.
    * @param client client object which makes server requests
@@ -545,10 +615,13 @@ public class Transaction {
    * @throws JSONException This exception is raised due to malformed json requests or responses.
    */
   public static SubmitResponse submit(Client client, Template template) throws ChainException {
-    HashMap<String, Object> body = new HashMap<>();
-    body.put("transactions", Arrays.asList(template));
-    return client.singletonBatchRequest(
-        "submit-transaction", body, SubmitResponse.class, APIException.class);
+    return client.coalescedBatchRequest(
+        "submit-transaction",
+        "transactions",
+        null,
+        template,
+        SubmitResponse.class,
+        APIException.class);
   }
 
   /**
@@ -565,10 +638,70 @@ public class Transaction {
    */
   public static SubmitResponse submit(Client client, Template template, String waitUntil)
       throws ChainException {
+    HashMap<String, Object> params = new HashMap<>();
+    params.put("wait_until", waitUntil);
+    return client.coalescedBatchRequest(
+        "submit-transaction",
+        "transactions",
+        params,
+        template,
+        SubmitResponse.class,
+        APIException.class);
+  }
+
+  /**
+   * Submits signed transaction template for inclusion into a block, with the
+   * given options overriding the client's timeouts and retry policy. The
+   * template is sent in a request of its own, even if auto-batching is
+   * enabled on the client.
+   * @param client client object which makes server requests
+   * @param template transaction template
+   * @param options options for the request, such as a deadline
+   * @return submit responses
+   * @throws APIException This exception is raised if the api returns errors while submitting a transaction.
+   * @throws BadURLException This exception wraps java.net.MalformedURLException.
+   * @throws ConnectivityException This exception is raised if there are connectivity issues with the server.
+   * @throws HTTPException This exception is raised when errors occur making http requests.
+   * @throws JSONException This exception is raised due to malformed json requests or responses.
+   */
+  public static SubmitResponse submit(Client client, Template template, RequestOptions options)
+      throws ChainException {
     HashMap<String, Object> body = new HashMap<>();
     body.put("transactions", Arrays.asList(template));
-    body.put("wait_until", waitUntil);
     return client.singletonBatchRequest(
+        "submit-transaction", body, SubmitResponse.class, APIException.class, options);
+  }
+
+  /**
+   * Submits signed transaction template for inclusion into a block, without
+   * blocking the calling thread.
+   * @param client client object which makes server requests
+   * @param template transaction template
+   * @return a future holding the submit response. The future completes
+   *     exceptionally with an APIException if the transaction is rejected.
+   */
+  public static CompletableFuture<SubmitResponse> submitAsync(Client client, Template template) {
+    HashMap<String, Object> body = new HashMap<>();
+    body.put("transactions", Arrays.asList(template));
+    return client.singletonBatchRequestAsync(
+        "submit-transaction", body, SubmitResponse.class, APIException.class);
+  }
+
+  /**
+   * Submits signed transaction template for inclusion into a block, without
+   * blocking the calling thread.
+   * @param client client object which makes server requests
+   * @param template transaction template
+   * @param waitUntil when the server should wait until responding - none, confirmed, processed
+   * @return a future holding the submit response. The future completes
+   *     exceptionally with an APIException if the transaction is rejected.
+   */
+  public static CompletableFuture<SubmitResponse> submitAsync(
+      Client client, Template template, String waitUntil) {
+    HashMap<String, Object> body = new HashMap<>();
+    body.put("transactions", Arrays.asList(template));
+    body.put("wait_until", waitUntil);
+    return client.singletonBatchRequestAsync(
         "submit-transaction", body, SubmitResponse.class, APIException.class);
   }
 
@@ -1027,7 +1160,18 @@ public class Transaction {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Template build(Client client) throws ChainException {
-      return client.singletonBatchRequest(
+      return client.coalescedBatchRequest(
+          "build-transaction", this, Template.class, BuildException.class);
+    }
+
+    /**
+     * Builds a single transaction template without blocking the calling thread.
+     * @param client client object which makes requests to the server
+     * @return a future holding the transaction template. The future completes
+     *     exceptionally with a BuildException if the transaction can't be built.
+     */
+    public CompletableFuture<Template> buildAsync(Client client) {
+      return client.singletonBatchRequestAsync(
           "build-transaction", Arrays.asList(this), Template.class, BuildException.class);
     }
 
@@ -1156,9 +1300,12 @@ public class Transaction {
      * Retrieves the next transaction matching the feed's filter criteria.
      * If no such transaction is available, this method will block until a
      * matching transaction arrives in the blockchain, or if the specified
-     * timeout is reached. To avoid client-side timeouts, be sure to call
-     * {@link Client#setReadTimeout(long, TimeUnit)} (long, TimeUnit)} with appropriate
-     * parameters.
+     * timeout is reached. The client's read timeout doesn't apply to the
+     * wait.
+     * <br>
+     * If the client records metrics, each poll of the core is recorded in
+     * the histograms {@code feed.poll.latency}, in nanoseconds, and
+     * {@code feed.poll.items}.
      *
      * @param client client object that makes requests to core
      * @param timeout number of milliseconds before the server-side long-poll should time out
@@ -1167,15 +1314,30 @@ public class Transaction {
      */
     public Transaction next(Client client, long timeout) throws ChainException {
       if (txIter == null || !txIter.hasNext()) {
-        txIter =
-            new QueryBuilder()
-                .setFilter(filter)
-                .setAfter(after)
-                .setTimeout(timeout)
-                .setAscendingWithLongPoll()
-                .execute(client)
-                .list
-                .listIterator();
+        long start = System.nanoTime();
+        FlightEvents.Span event = FlightEvents.begin(FlightEvents.Type.FEED_POLL);
+        List<Transaction> page = null;
+        try {
+          page =
+              new QueryBuilder()
+                  .setFilter(filter)
+                  .setAfter(after)
+                  .setTimeout(timeout)
+                  .setAscendingWithLongPoll()
+                  .execute(client)
+                  .list;
+        } finally {
+          if (event.recording()) {
+            event.set("feedId", id).set("timeoutMillis", timeout);
+            event.set("items", page != null ? page.size() : 0).end();
+          }
+        }
+        MetricRegistry registry = client.metricRegistry();
+        if (registry != null) {
+          registry.histogram("feed.poll.latency").record(System.nanoTime() - start);
+          registry.histogram("feed.poll.items").record(page.size());
+        }
+        txIter = page.listIterator();
       }
 
       lastTx = txIter.next();
@@ -1185,9 +1347,8 @@ public class Transaction {
     /**
      * Retrieves the next transaction matching the feed's filter criteria.
      * If no such transaction is available, this method will block until a
-     * matching transaction arrives in the blockchain. To avoid client-side
-     * timeouts, be sure to call {@link Client#setReadTimeout(long, TimeUnit)}
-     * with appropriate parameters.
+     * matching transaction arrives in the blockchain. The client's read
+     * timeout doesn't apply to the wait.
      *
      * @param client client object that makes requests to core
      * @return a transaction object
@@ -1220,7 +1381,14 @@ public class Transaction {
       req.put("id", this.id);
       req.put("previous_after", this.after);
       req.put("after", newAfter);
-      client.request("update-transaction-feed", req, Feed.class);
+      FlightEvents.Span event = FlightEvents.begin(FlightEvents.Type.FEED_ACK);
+      try {
+        client.request("update-transaction-feed", req, Feed.class);
+      } finally {
+        if (event.recording()) {
+          event.set("feedId", id).set("after", newAfter).end();
+        }
+      }
 
       this.after = newAfter;
     }
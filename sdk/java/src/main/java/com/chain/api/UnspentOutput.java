@@ -130,7 +130,7 @@ public class UnspentOutput {
      * @throws JSONException This exception is raised due to malformed json requests or responses.
      */
     public Items getPage() throws ChainException {
-      Items items = this.client.request("list-unspent-outputs", this.next, Items.class);
+      Items items = this.client.hedgedRequest("list-unspent-outputs", this.next, Items.class);
       items.setClient(this.client);
       return items;
     }
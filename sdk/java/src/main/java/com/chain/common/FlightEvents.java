@@ -0,0 +1,182 @@
+package com.chain.common;
+
+/**
+ * FlightEvents emits Java Flight Recorder events from the SDK's hot paths,
+ * so that a stall seen by an application can be lined up with the GC,
+ * lock and I/O events of the same recording. The events, in the "Chain"
+ * category, are described by {@link Type}.
+ * <br>
+ * JFR's API is only used by the Java 11 version of the SDK's multi-release
+ * jar, so its implementation is loaded by name. On older JVMs, and while no
+ * recording has the event enabled, {@link #begin(Type)} returns a span that
+ * ignores its fields, and an event costs a method call and a flag check.
+ * Callers that compute a field's value should first check
+ * {@link Span#recording()}.
+ */
+public class FlightEvents {
+  private static final FlightEvents INSTANCE = load();
+
+  private static FlightEvents load() {
+    try {
+      Class<?> c = Class.forName("com.chain.common.JfrFlightEvents");
+      return (FlightEvents) c.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError ex) {
+      // Not running on Java 11 or later, or JFR isn't available.
+      return new FlightEvents();
+    }
+  }
+
+  protected FlightEvents() {}
+
+  /**
+   * Starts timing an event of the given type.
+   * @param type the type of event
+   * @return the event's span, which must be ended to commit the event
+   */
+  public static Span begin(Type type) {
+    return INSTANCE.start(type);
+  }
+
+  /**
+   * Returns whether events are emitted to JFR in this JVM.
+   * @return false if the JVM is older than Java 11 or lacks JFR
+   */
+  public static boolean supported() {
+    return INSTANCE.getClass() != FlightEvents.class;
+  }
+
+  protected Span start(Type type) {
+    return Span.NONE;
+  }
+
+  /**
+   * Type is a type of event, with the fields it records.
+   */
+  public enum Type {
+    /**
+     * One attempt of a client's call, from sending the request until its
+     * response is handled or it fails.
+     */
+    ATTEMPT(
+        "com.chain.Attempt",
+        "Request Attempt",
+        "action",
+        "url",
+        "attempt:long",
+        "statusCode:long",
+        "requestId",
+        "failure"),
+
+    /**
+     * The wait before retrying a failed call.
+     */
+    BACKOFF("com.chain.Backoff", "Retry Backoff", "action", "attempt:long", "delayMillis:long"),
+
+    /**
+     * Decoding the items of a batch response.
+     */
+    BATCH_DECODE("com.chain.BatchDecode", "Batch Decode", "items:long", "errors:long"),
+
+    /**
+     * One HSM's round of {@link com.chain.signing.HsmSigner#signBatch}.
+     */
+    SIGN_ROUND(
+        "com.chain.SignRound", "HSM Signing Round", "hsm", "templates:long", "signed:long"),
+
+    /**
+     * A transaction feed's long-poll of the core for more transactions.
+     */
+    FEED_POLL("com.chain.FeedPoll", "Feed Poll", "feedId", "timeoutMillis:long", "items:long"),
+
+    /**
+     * A transaction feed's acknowledgement of the transactions consumed.
+     */
+    FEED_ACK("com.chain.FeedAck", "Feed Ack", "feedId", "after"),
+
+    /**
+     * The database commit of one imported transaction, for importers such
+     * as Chain Analytics.
+     */
+    IMPORT_COMMIT(
+        "com.chain.ImportCommit", "Import Commit", "transactionId", "inputs:long", "outputs:long");
+
+    private final String eventName;
+    private final String label;
+    private final String[] fields;
+
+    Type(String eventName, String label, String... fields) {
+      this.eventName = eventName;
+      this.label = label;
+      this.fields = fields;
+    }
+
+    /**
+     * Returns the event's name in JFR, such as com.chain.Attempt.
+     * @return the name
+     */
+    public String eventName() {
+      return eventName;
+    }
+
+    /**
+     * Returns the event's label in JFR.
+     * @return the label
+     */
+    public String label() {
+      return label;
+    }
+
+    /**
+     * Returns the event's fields, in order. A field is a string unless its
+     * name ends with ":long".
+     * @return a copy of the fields
+     */
+    public String[] fields() {
+      return fields.clone();
+    }
+  }
+
+  /**
+   * Span is an event being timed. Its fields are set as they become known,
+   * and the event is committed when the span ends.
+   */
+  public static class Span {
+    static final Span NONE = new Span();
+
+    protected Span() {}
+
+    /**
+     * Returns whether the event will be recorded. Spans that aren't
+     * recorded ignore their fields.
+     * @return true if a recording has the event enabled
+     */
+    public boolean recording() {
+      return false;
+    }
+
+    /**
+     * Sets a string field.
+     * @param field the field's name
+     * @param value the value
+     * @return this span
+     */
+    public Span set(String field, String value) {
+      return this;
+    }
+
+    /**
+     * Sets a numeric field.
+     * @param field the field's name
+     * @param value the value
+     * @return this span
+     */
+    public Span set(String field, long value) {
+      return this;
+    }
+
+    /**
+     * Ends the span and commits its event.
+     */
+    public void end() {}
+  }
+}
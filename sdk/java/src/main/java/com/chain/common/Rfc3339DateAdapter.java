@@ -0,0 +1,202 @@
+package com.chain.common;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoField;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+
+/**
+ * Rfc3339DateAdapter reads and writes dates as RFC3339 timestamps, such as
+ * 2017-03-08T21:53:07.123Z. Gson's own date format adapter shares one
+ * SimpleDateFormat, which it locks for every date it reads or writes; this
+ * adapter keeps no mutable state, so threads decoding responses at the same
+ * time don't contend with each other.
+ * <br>
+ * Fractions of a second of any length are read, truncated to milliseconds.
+ * Dates are written with milliseconds and the offset of the adapter's time
+ * zone, as {@link Utils#rfc3339DateFormat} writes them.
+ */
+public class Rfc3339DateAdapter extends TypeAdapter<Date> {
+  private final ZoneRules rules;
+  private final ZoneOffset fixedOffset; // null if the zone's offset changes
+
+  /**
+   * Creates an adapter that writes dates in the JVM's default time zone.
+   */
+  public Rfc3339DateAdapter() {
+    this(ZoneId.systemDefault());
+  }
+
+  /**
+   * Creates an adapter that writes dates in the given time zone.
+   * @param zone the time zone
+   */
+  public Rfc3339DateAdapter(ZoneId zone) {
+    this.rules = zone.getRules();
+    this.fixedOffset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : null;
+  }
+
+  @Override
+  public void write(JsonWriter out, Date value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.value(format(value.getTime()));
+  }
+
+  @Override
+  public Date read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String s = in.nextString();
+    try {
+      return new Date(parse(s));
+    } catch (DateTimeException ex) {
+      throw new JsonSyntaxException("invalid RFC3339 timestamp: " + s, ex);
+    }
+  }
+
+  /**
+   * Formats a time, in milliseconds since the epoch, as an RFC3339
+   * timestamp.
+   * @param millis the time
+   * @return the timestamp
+   */
+  public String format(long millis) {
+    ZoneOffset offset =
+        fixedOffset != null ? fixedOffset : rules.getOffset(Instant.ofEpochMilli(millis));
+    long local = Math.floorDiv(millis, 1000L) + offset.getTotalSeconds();
+    int secondOfDay = (int) Math.floorMod(local, 86400L);
+    LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(local, 86400L));
+
+    StringBuilder b = new StringBuilder(29);
+    pad(b, date.getYear(), 4).append('-');
+    pad(b, date.getMonthValue(), 2).append('-');
+    pad(b, date.getDayOfMonth(), 2).append('T');
+    pad(b, secondOfDay / 3600, 2).append(':');
+    pad(b, secondOfDay / 60 % 60, 2).append(':');
+    pad(b, secondOfDay % 60, 2).append('.');
+    pad(b, (int) Math.floorMod(millis, 1000L), 3);
+    int offsetMinutes = offset.getTotalSeconds() / 60;
+    if (offsetMinutes == 0) {
+      b.append('Z');
+    } else {
+      b.append(offsetMinutes < 0 ? '-' : '+');
+      offsetMinutes = Math.abs(offsetMinutes);
+      pad(b, offsetMinutes / 60, 2).append(':');
+      pad(b, offsetMinutes % 60, 2);
+    }
+    return b.toString();
+  }
+
+  /**
+   * Parses an RFC3339 timestamp, such as 2017-03-08T21:53:07.123Z or
+   * 2017-03-08T13:53:07-08:00.
+   * @param s the timestamp
+   * @return the time in milliseconds since the epoch
+   * @throws DateTimeException if s isn't a valid RFC3339 timestamp
+   */
+  public static long parse(String s) {
+    int len = s.length();
+    if (len < 20
+        || s.charAt(4) != '-'
+        || s.charAt(7) != '-'
+        || (s.charAt(10) != 'T' && s.charAt(10) != 't' && s.charAt(10) != ' ')
+        || s.charAt(13) != ':'
+        || s.charAt(16) != ':') {
+      throw invalid(s);
+    }
+    int year = digits(s, 0, 4);
+    int month = digits(s, 5, 2);
+    int day = digits(s, 8, 2);
+    int hour = digits(s, 11, 2);
+    int minute = digits(s, 14, 2);
+    int second = digits(s, 17, 2);
+
+    int i = 19;
+    int millis = 0;
+    if (s.charAt(i) == '.') {
+      int start = ++i;
+      for (; i < len && isDigit(s.charAt(i)); i++) {
+        if (i - start < 3) {
+          millis = millis * 10 + (s.charAt(i) - '0');
+        }
+      }
+      if (i == start) {
+        throw invalid(s);
+      }
+      for (int n = i - start; n < 3; n++) {
+        millis *= 10;
+      }
+    }
+
+    int offsetSeconds;
+    char c = i < len ? s.charAt(i) : 0;
+    if (c == 'Z' || c == 'z') {
+      offsetSeconds = 0;
+      i++;
+    } else if ((c == '+' || c == '-') && len - i == 6 && s.charAt(i + 3) == ':') {
+      offsetSeconds = digits(s, i + 1, 2) * 3600 + digits(s, i + 4, 2) * 60;
+      if (c == '-') {
+        offsetSeconds = -offsetSeconds;
+      }
+      i += 6;
+    } else {
+      throw invalid(s);
+    }
+    if (i != len) {
+      throw invalid(s);
+    }
+
+    // java.time checks the fields' ranges, such as the days in the month.
+    long epochDay = LocalDate.of(year, month, day).toEpochDay();
+    ChronoField.HOUR_OF_DAY.checkValidValue(hour);
+    ChronoField.MINUTE_OF_HOUR.checkValidValue(minute);
+    ChronoField.SECOND_OF_MINUTE.checkValidValue(second);
+    long seconds = epochDay * 86400 + hour * 3600 + minute * 60 + second - offsetSeconds;
+    return seconds * 1000 + millis;
+  }
+
+  private static int digits(String s, int from, int count) {
+    int n = 0;
+    for (int i = from; i < from + count; i++) {
+      char c = s.charAt(i);
+      if (!isDigit(c)) {
+        throw invalid(s);
+      }
+      n = n * 10 + (c - '0');
+    }
+    return n;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static DateTimeException invalid(String s) {
+    return new DateTimeException("invalid RFC3339 timestamp: " + s);
+  }
+
+  private static StringBuilder pad(StringBuilder b, int n, int width) {
+    for (int limit = 10, w = 1; w < width; w++, limit *= 10) {
+      if (n < limit) {
+        b.append('0');
+      }
+    }
+    return b.append(n);
+  }
+}
@@ -2,7 +2,13 @@ package com.chain.common;
 
 import com.google.gson.*;
 
+import java.util.Date;
+
 public class Utils {
   public static String rfc3339DateFormat = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
-  public static final Gson serializer = new GsonBuilder().setDateFormat(rfc3339DateFormat).create();
+
+  // Dates are read and written in rfc3339DateFormat, without the lock Gson
+  // takes around its SimpleDateFormat.
+  public static final Gson serializer =
+      new GsonBuilder().registerTypeAdapter(Date.class, new Rfc3339DateAdapter()).create();
 }
@@ -0,0 +1,15 @@
+package com.chain.exception;
+
+/**
+ * CircuitOpenException is thrown when a request can't be sent because the
+ * circuit breakers of all of the client's URLs are open.
+ */
+public class CircuitOpenException extends HTTPException {
+  /**
+   * Initializes exception with its message attribute.
+   * @param message error message
+   */
+  public CircuitOpenException(String message) {
+    super(message);
+  }
+}
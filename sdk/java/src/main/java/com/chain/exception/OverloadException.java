@@ -0,0 +1,16 @@
+package com.chain.exception;
+
+/**
+ * OverloadException is thrown when a request is shed by the client, because
+ * the URL it would be sent to already has as many requests in flight as its
+ * concurrency limit allows, and no room became available in time.
+ */
+public class OverloadException extends ChainException {
+  /**
+   * Initializes exception with its message attribute.
+   * @param message error message
+   */
+  public OverloadException(String message) {
+    super(message);
+  }
+}
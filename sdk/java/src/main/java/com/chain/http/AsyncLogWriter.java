@@ -0,0 +1,57 @@
+package com.chain.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * AsyncLogWriter writes log entries to an output stream on a thread of its
+ * own, so that requests don't wait for the stream. Entries wait in a
+ * bounded queue; an entry that arrives while the queue is full is dropped
+ * rather than holding up its request.
+ */
+class AsyncLogWriter implements Runnable {
+  private final OutputStream out;
+  private final ArrayBlockingQueue<LoggingInterceptor.Entry> queue;
+  private final LogStats stats;
+
+  AsyncLogWriter(OutputStream out, int capacity, LogStats stats) {
+    this.out = out;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.stats = stats;
+    Thread t = new Thread(this, "chain-sdk-logger");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+   * Queues an entry to be written, or drops it if the queue is full.
+   */
+  void write(LoggingInterceptor.Entry entry) {
+    if (!queue.offer(entry)) {
+      stats.recordDropped();
+    }
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      LoggingInterceptor.Entry entry;
+      try {
+        entry = queue.take();
+      } catch (InterruptedException ex) {
+        return;
+      }
+      try {
+        out.write(entry.format());
+        // Flush once the queue is drained, rather than after every entry.
+        if (queue.isEmpty()) {
+          out.flush();
+        }
+        stats.recordLogged();
+      } catch (IOException ex) {
+        stats.recordDropped();
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.chain.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AutoBatchStats records the batch sizes achieved by a client's auto-batching
+ * layer for a single API action. See
+ * {@link Client.Builder#setAutoBatching(long, java.util.concurrent.TimeUnit, int)}.
+ */
+public class AutoBatchStats {
+  private final String action;
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong items = new AtomicLong();
+  private final AtomicLong maxBatchSize = new AtomicLong();
+
+  AutoBatchStats(String action) {
+    this.action = action;
+  }
+
+  void record(int batchSize) {
+    batches.incrementAndGet();
+    items.addAndGet(batchSize);
+    long max = maxBatchSize.get();
+    while (batchSize > max && !maxBatchSize.compareAndSet(max, batchSize)) {
+      max = maxBatchSize.get();
+    }
+  }
+
+  /**
+   * Returns the API action these statistics describe.
+   * @return the action name
+   */
+  public String action() {
+    return action;
+  }
+
+  /**
+   * Returns the number of batch requests sent for the action.
+   * @return the number of batches
+   */
+  public long batches() {
+    return batches.get();
+  }
+
+  /**
+   * Returns the number of singleton calls carried by those batch requests.
+   * @return the number of items
+   */
+  public long items() {
+    return items.get();
+  }
+
+  /**
+   * Returns the largest batch sent for the action.
+   * @return the maximum batch size
+   */
+  public long maxBatchSize() {
+    return maxBatchSize.get();
+  }
+
+  /**
+   * Returns the average number of singleton calls per batch request.
+   * @return the mean batch size, or 0 if no batches have been sent
+   */
+  public double meanBatchSize() {
+    long b = batches.get();
+    return b == 0 ? 0 : (double) items.get() / b;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: batches=%d items=%d mean=%.2f max=%d",
+        action,
+        batches(),
+        items(),
+        meanBatchSize(),
+        maxBatchSize());
+  }
+}
@@ -0,0 +1,197 @@
+package com.chain.http;
+
+import com.chain.common.Utils;
+import com.chain.exception.APIException;
+import com.chain.exception.ChainException;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * AutoBatcher coalesces concurrent singleton calls to a batch endpoint into a
+ * single batch request. Calls are grouped by action and by any parameters
+ * shared across the batch (such as wait_until for submit-transaction). A
+ * group is sent when its window elapses or when it reaches the maximum batch
+ * size, whichever happens first, and each entry of the resulting
+ * BatchResponse is handed back to the call that contributed it.
+ */
+class AutoBatcher {
+  private final Client client;
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final Map<String, Group> pending = new HashMap<>();
+  private final ConcurrentHashMap<String, AutoBatchStats> stats = new ConcurrentHashMap<>();
+
+  AutoBatcher(Client client, long windowNanos, int maxBatchSize) {
+    this.client = client;
+    this.windowNanos = windowNanos;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * A batch under construction. Items and futures are index-aligned.
+   */
+  private static class Group {
+    final String key;
+    final String action;
+    final String itemsKey;
+    final Map<String, Object> params;
+    final Type tClass;
+    final Type eClass;
+    final List<Object> items = new ArrayList<>();
+    final List<CompletableFuture<Object>> futures = new ArrayList<>();
+
+    Group(
+        String key,
+        String action,
+        String itemsKey,
+        Map<String, Object> params,
+        Type tClass,
+        Type eClass) {
+      this.key = key;
+      this.action = action;
+      this.itemsKey = itemsKey;
+      this.params = params;
+      this.tClass = tClass;
+      this.eClass = eClass;
+    }
+  }
+
+  /**
+   * Adds a single item to the pending batch for its action and parameters.
+   * @return a future that completes with the item's entry in the batch response
+   */
+  <T> CompletableFuture<T> add(
+      String action,
+      String itemsKey,
+      Map<String, Object> params,
+      Object item,
+      Type tClass,
+      Type eClass) {
+    String key = params == null ? action : action + Utils.serializer.toJson(params);
+    CompletableFuture<Object> future = new CompletableFuture<>();
+
+    Group full = null;
+    synchronized (pending) {
+      Group group = pending.get(key);
+      if (group == null) {
+        group = new Group(key, action, itemsKey, params, tClass, eClass);
+        pending.put(key, group);
+        final Group scheduled = group;
+        Client.timer()
+            .schedule(
+                new Runnable() {
+                  public void run() {
+                    flush(scheduled);
+                  }
+                },
+                windowNanos,
+                TimeUnit.NANOSECONDS);
+      }
+      group.items.add(item);
+      group.futures.add(future);
+      if (group.items.size() >= maxBatchSize) {
+        full = group;
+      }
+    }
+    if (full != null) {
+      flush(full);
+    }
+
+    @SuppressWarnings("unchecked")
+    CompletableFuture<T> result = (CompletableFuture<T>) future;
+    return result;
+  }
+
+  /**
+   * Returns the batch size statistics for each action that has been batched.
+   */
+  Map<String, AutoBatchStats> stats() {
+    return new TreeMap<>(stats);
+  }
+
+  private void flush(final Group group) {
+    // The window timer and the size trigger may both try to send a group;
+    // only the first one to remove it from the pending map does.
+    synchronized (pending) {
+      if (pending.get(group.key) != group) {
+        return;
+      }
+      pending.remove(group.key);
+    }
+
+    AutoBatchStats s = stats.get(group.action);
+    if (s == null) {
+      stats.putIfAbsent(group.action, new AutoBatchStats(group.action));
+      s = stats.get(group.action);
+    }
+    s.record(group.items.size());
+
+    client
+        .<Object>batchRequestAsync(
+            group.action,
+            Client.batchBody(group.itemsKey, group.params, group.items),
+            group.tClass,
+            group.eClass)
+        .whenComplete(
+            new BiConsumer<BatchResponse<Object>, Throwable>() {
+              public void accept(BatchResponse<Object> batch, Throwable err) {
+                if (err != null) {
+                  for (CompletableFuture<Object> f : group.futures) {
+                    f.completeExceptionally(err);
+                  }
+                  return;
+                }
+                fanOut(group, batch);
+              }
+            });
+  }
+
+  private void fanOut(Group group, BatchResponse<Object> batch) {
+    for (int i = 0; i < group.futures.size(); i++) {
+      CompletableFuture<Object> f = group.futures.get(i);
+      if (batch.isSuccess(i)) {
+        f.complete(batch.success(i));
+      } else if (batch.isError(i)) {
+        APIException err = batch.error(i);
+        if (err.temporary) {
+          // A singleton call would have retried a temporary error, so
+          // resend this item on its own rather than failing it.
+          retry(group, group.items.get(i), f);
+        } else {
+          f.completeExceptionally(err);
+        }
+      } else {
+        f.completeExceptionally(
+            new ChainException(
+                "Invalid batch response, missing item "
+                    + i
+                    + ", request ID "
+                    + batch.response().headers().get("Chain-Request-ID")));
+      }
+    }
+  }
+
+  private void retry(Group group, Object item, final CompletableFuture<Object> f) {
+    client
+        .singletonBatchRequestAsync(
+            group.action,
+            Client.batchBody(group.itemsKey, group.params, Arrays.asList(item)),
+            group.tClass,
+            group.eClass)
+        .whenComplete(
+            new BiConsumer<Object, Throwable>() {
+              public void accept(Object result, Throwable err) {
+                if (err != null) {
+                  f.completeExceptionally(err);
+                } else {
+                  f.complete(result);
+                }
+              }
+            });
+  }
+}
@@ -5,9 +5,14 @@ import java.lang.IllegalStateException;
 import java.lang.reflect.Type;
 import java.util.*;
 
+import com.chain.common.FlightEvents;
 import com.chain.exception.*;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
 import com.squareup.okhttp.Response;
 
@@ -18,33 +23,99 @@ import com.squareup.okhttp.Response;
  */
 public class BatchResponse<T> {
   private Response response;
-  private Map<Integer, T> successesByIndex = new LinkedHashMap<>();
-  private Map<Integer, APIException> errorsByIndex = new LinkedHashMap<>();
+
+  // Results are addressed by the index of the request item that produced
+  // them. Exactly one of the two bits is set for each index in the response.
+  private List<T> successes = new ArrayList<>();
+  private List<APIException> errors = new ArrayList<>();
+  private BitSet successBits = new BitSet();
+  private BitSet errorBits = new BitSet();
+  private int successCount;
+  private int errorCount;
+
+  // Keyed views of the results, built on first use.
+  private Map<Integer, T> successesByIndex;
+  private Map<Integer, APIException> errorsByIndex;
+
+  /**
+   * ItemHandler receives each item of a batch response as soon as it has been
+   * decoded, while the rest of the response body is still being read.
+   * Handlers are invoked on the thread decoding the response, in index order.
+   * If the request is retried after a partial read, the handler may be
+   * invoked again for indexes it has already seen.
+   * @param <T> the type of successful response items
+   */
+  public interface ItemHandler<T> {
+    /**
+     * Called when the request item at the given index produced a success.
+     * @param index the index of the request item
+     * @param item the decoded response item
+     */
+    void onSuccess(int index, T item);
+
+    /**
+     * Called when the request item at the given index produced an error.
+     * @param index the index of the request item
+     * @param error the decoded error
+     */
+    void onError(int index, APIException error);
+  }
 
   /**
    * This constructor is used when deserializing a response from an API call.
    */
   public BatchResponse(Response response, Gson serializer, Type tClass, Type eClass)
       throws ChainException, IOException {
+    this(response, serializer, tClass, eClass, null);
+  }
+
+  /**
+   * This constructor is used when deserializing a response from an API call.
+   * The response body is decoded as a stream, one item at a time, and each
+   * item is passed to the handler (if not null) as soon as it is decoded.
+   */
+  public BatchResponse(
+      Response response, Gson serializer, Type tClass, Type eClass, ItemHandler<T> handler)
+      throws ChainException, IOException {
     this.response = response;
 
+    FlightEvents.Span event = FlightEvents.begin(FlightEvents.Type.BATCH_DECODE);
     try {
-      JsonArray root = new JsonParser().parse(response.body().charStream()).getAsJsonArray();
-      for (int i = 0; i < root.size(); i++) {
-        JsonElement elem = root.get(i);
-
-        // Test for interleaved errors
-        APIException err = serializer.fromJson(elem, eClass);
-        if (err.code != null) {
-          errorsByIndex.put(i, err);
+      JsonReader reader = new JsonReader(response.body().charStream());
+      ItemBuffer buffer = new ItemBuffer();
+      reader.beginArray();
+      for (int i = 0; reader.hasNext(); i++) {
+        // Each item is copied into a buffer reused across items, which
+        // notes whether it has a non-null "code" wherever that field is,
+        // and is then bound once, as either an error or a success.
+        if (buffer.copyItem(reader)) {
+          APIException err = serializer.fromJson(buffer.reader(), eClass);
+          putError(i, err);
+          if (handler != null) {
+            handler.onError(i, err);
+          }
           continue;
         }
 
-        successesByIndex.put(i, (T) serializer.fromJson(elem, tClass));
+        T item = serializer.fromJson(buffer.reader(), tClass);
+        putSuccess(i, item);
+        if (handler != null) {
+          handler.onSuccess(i, item);
+        }
       }
-    } catch (IllegalStateException e) {
+      reader.endArray();
+    } catch (MalformedJsonException
+        | EOFException
+        | JsonParseException
+        | IllegalStateException e) {
+      // Other I/O errors, such as timeouts, are left for the client to
+      // retry.
       throw new JSONException(
           "Unable to read body: " + e.getMessage(), response.headers().get("Chain-Request-ID"));
+    } finally {
+      if (event.recording()) {
+        event.set("items", size()).set("errors", errorCount).end();
+      }
     }
   }
 
@@ -54,17 +125,33 @@ public class BatchResponse<T> {
    * the successes and errors are stored in an order-preserving fashion.
    */
   public BatchResponse(Map<Integer, T> successes, Map<Integer, APIException> errors) {
-    List<Integer> successIndexes = new ArrayList<>();
-    Iterator<Integer> successIter = successes.keySet().iterator();
-    while (successIter.hasNext()) successIndexes.add(successIter.next());
-    Collections.sort(successIndexes);
-    for (int i : successIndexes) successesByIndex.put(i, successes.get(i));
+    for (Map.Entry<Integer, T> entry : successes.entrySet()) {
+      putSuccess(entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<Integer, APIException> entry : errors.entrySet()) {
+      putError(entry.getKey(), entry.getValue());
+    }
+  }
 
-    List<Integer> errorIndexes = new ArrayList<>();
-    Iterator<Integer> errorIter = errors.keySet().iterator();
-    while (errorIter.hasNext()) errorIndexes.add(errorIter.next());
-    Collections.sort(errorIndexes);
-    for (int i : errorIndexes) errorsByIndex.put(i, errors.get(i));
+  private void putSuccess(int index, T item) {
+    grow(index);
+    successes.set(index, item);
+    successBits.set(index);
+    successCount++;
+  }
+
+  private void putError(int index, APIException err) {
+    grow(index);
+    errors.set(index, err);
+    errorBits.set(index);
+    errorCount++;
+  }
+
+  private void grow(int index) {
+    while (successes.size() <= index) {
+      successes.add(null);
+      errors.add(null);
+    }
   }
 
   /**
@@ -79,7 +166,11 @@ public class BatchResponse<T> {
    * of request objects in the batch.
    */
   public int size() {
-    return successesByIndex.size() + errorsByIndex.size();
+    return successCount + errorCount;
+  }
+
+  int errorCount() {
+    return errorCount;
   }
 
   /**
@@ -87,7 +178,7 @@ public class BatchResponse<T> {
    * @param index the index of the request object
    */
   public boolean isSuccess(int index) {
-    return successesByIndex.containsKey(index);
+    return index >= 0 && successBits.get(index);
   }
 
   /**
@@ -95,7 +186,25 @@ public class BatchResponse<T> {
    * @param index the index of the request object
    */
   public boolean isError(int index) {
-    return errorsByIndex.containsKey(index);
+    return index >= 0 && errorBits.get(index);
+  }
+
+  /**
+   * Returns the success response produced by the request object at the given
+   * index, or null if it produced an error.
+   * @param index the index of the request object
+   */
+  public T success(int index) {
+    return isSuccess(index) ? successes.get(index) : null;
+  }
+
+  /**
+   * Returns the error produced by the request object at the given index, or
+   * null if it produced a success.
+   * @param index the index of the request object
+   */
+  public APIException error(int index) {
+    return isError(index) ? errors.get(index) : null;
   }
 
   /**
@@ -104,8 +213,10 @@ public class BatchResponse<T> {
    * successes.
    */
   public List<T> successes() {
-    List<T> res = new ArrayList<>();
-    res.addAll(successesByIndex.values());
+    List<T> res = new ArrayList<>(successCount);
+    for (int i = successBits.nextSetBit(0); i >= 0; i = successBits.nextSetBit(i + 1)) {
+      res.add(successes.get(i));
+    }
     return res;
   }
 
@@ -115,8 +226,10 @@ public class BatchResponse<T> {
    * errors.
    */
   public List<APIException> errors() {
-    List<APIException> res = new ArrayList<>();
-    res.addAll(errorsByIndex.values());
+    List<APIException> res = new ArrayList<>(errorCount);
+    for (int i = errorBits.nextSetBit(0); i >= 0; i = errorBits.nextSetBit(i + 1)) {
+      res.add(errors.get(i));
+    }
     return res;
   }
 
@@ -126,6 +239,13 @@ public class BatchResponse<T> {
    * exclusive of the keys returned by errorsByIndex.
    */
   public Map<Integer, T> successesByIndex() {
+    if (successesByIndex == null) {
+      Map<Integer, T> res = new LinkedHashMap<>();
+      for (int i = successBits.nextSetBit(0); i >= 0; i = successBits.nextSetBit(i + 1)) {
+        res.put(i, successes.get(i));
+      }
+      successesByIndex = res;
+    }
     return successesByIndex;
   }
 
@@ -135,6 +255,89 @@ public class BatchResponse<T> {
    * exclusive of the keys returned by successByIndex.
    */
   public Map<Integer, APIException> errorsByIndex() {
+    if (errorsByIndex == null) {
+      Map<Integer, APIException> res = new LinkedHashMap<>();
+      for (int i = errorBits.nextSetBit(0); i >= 0; i = errorBits.nextSetBit(i + 1)) {
+        res.put(i, errors.get(i));
+      }
+      errorsByIndex = res;
+    }
     return errorsByIndex;
   }
+
+  /**
+   * ItemBuffer holds one item of a batch response, copied token by token
+   * from the body, so that it can be classified before it is bound. Its
+   * storage is reused from one item to the next.
+   */
+  private static class ItemBuffer extends CharArrayWriter {
+    // The writer is lenient so that it accepts an item after the last.
+    private final JsonWriter writer = new JsonWriter(this);
+
+    ItemBuffer() {
+      writer.setLenient(true);
+    }
+
+    /**
+     * Replaces the buffer's contents with the next item, returning whether
+     * it is an error: an object with a non-null "code" field.
+     */
+    boolean copyItem(JsonReader in) throws IOException {
+      reset();
+      return copy(in, true);
+    }
+
+    /**
+     * Returns a reader of the item in the buffer.
+     */
+    JsonReader reader() {
+      return new JsonReader(new CharArrayReader(buf, 0, count));
+    }
+
+    private boolean copy(JsonReader in, boolean top) throws IOException {
+      boolean error = false;
+      switch (in.peek()) {
+        case BEGIN_ARRAY:
+          in.beginArray();
+          writer.beginArray();
+          while (in.hasNext()) {
+            copy(in, false);
+          }
+          in.endArray();
+          writer.endArray();
+          break;
+        case BEGIN_OBJECT:
+          in.beginObject();
+          writer.beginObject();
+          while (in.hasNext()) {
+            String name = in.nextName();
+            writer.name(name);
+            if (top && name.equals("code") && in.peek() != JsonToken.NULL) {
+              error = true;
+            }
+            copy(in, false);
+          }
+          in.endObject();
+          writer.endObject();
+          break;
+        case STRING:
+          writer.value(in.nextString());
+          break;
+        case NUMBER:
+          // The number's text is copied as is, so it loses no precision.
+          writer.jsonValue(in.nextString());
+          break;
+        case BOOLEAN:
+          writer.value(in.nextBoolean());
+          break;
+        case NULL:
+          in.nextNull();
+          writer.nullValue();
+          break;
+        default:
+          throw new IllegalStateException("Expected a value but was " + in.peek());
+      }
+      return error;
+    }
+  }
 }
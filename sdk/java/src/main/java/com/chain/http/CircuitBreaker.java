@@ -0,0 +1,243 @@
+package com.chain.http;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CircuitBreaker stops a client from sending requests to an endpoint that
+ * keeps failing. After a number of consecutive failures the breaker opens,
+ * and the endpoint is passed over for new requests. Once the breaker has
+ * been open for a while, a single request is let through as a probe: if it
+ * succeeds the breaker closes again, and if it fails the breaker reopens.
+ * Each of a client's endpoints has its own breaker, available from
+ * {@link Endpoint#circuitBreaker()}.
+ */
+public class CircuitBreaker {
+  /**
+   * The states of a circuit breaker.
+   */
+  public enum State {
+    /**
+     * Requests are sent to the endpoint as normal.
+     */
+    CLOSED,
+
+    /**
+     * The endpoint has failed repeatedly, and is passed over.
+     */
+    OPEN,
+
+    /**
+     * A single probe request is in flight to the endpoint.
+     */
+    HALF_OPEN,
+  }
+
+  /**
+   * A Listener is told about every change in the state of a client's
+   * circuit breakers. The changes of each breaker are delivered one at a
+   * time, in the order they happened, on a thread that changed that
+   * breaker's state. This may be one of the HTTP client's threads, so the
+   * listener should return quickly.
+   */
+  public interface Listener {
+    /**
+     * Called when a circuit breaker changes state.
+     * @param endpoint the endpoint the breaker belongs to
+     * @param from the previous state
+     * @param to the new state
+     */
+    void onStateChange(Endpoint endpoint, State from, State to);
+  }
+
+  private final Endpoint endpoint;
+  private final int failureThreshold;
+  private final long openNanos;
+  private final Listener listener;
+  // Changes of state are made while holding the breaker's monitor. The
+  // state and failure count are also volatile, so that the common case of
+  // a healthy endpoint is handled without taking it.
+  private volatile State state = State.CLOSED;
+  private volatile int consecutiveFailures;
+  private long openedAtNanos;
+  // Changes waiting to be delivered to the listener, queued in the order
+  // they were made. Only one thread delivers them at a time.
+  private final ArrayDeque<State[]> changes = new ArrayDeque<>();
+  private boolean notifying;
+
+  CircuitBreaker(Endpoint endpoint, int failureThreshold, long openNanos, Listener listener) {
+    this.endpoint = endpoint;
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openNanos;
+    this.listener = listener;
+  }
+
+  /**
+   * Returns the current state of the breaker.
+   * @return the state
+   */
+  public State state() {
+    return state;
+  }
+
+  /**
+   * Returns the number of consecutive failed requests to the endpoint.
+   * @return the number of failures since the last success
+   */
+  public int consecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  /**
+   * Returns whether a request could be sent to the endpoint now, either
+   * because the breaker is closed or because it is ready to be probed.
+   */
+  boolean isAvailable() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    synchronized (this) {
+      switch (state) {
+        case CLOSED:
+          return true;
+        case OPEN:
+          return System.nanoTime() - openedAtNanos >= openNanos;
+        default:
+          return false;
+      }
+    }
+  }
+
+  /**
+   * Asks to send a request to the endpoint. If the breaker is ready to be
+   * probed, the caller's request becomes the probe.
+   * @return false if the request must not be sent
+   */
+  boolean tryAcquire() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    synchronized (this) {
+      if (state == State.CLOSED) {
+        return true;
+      }
+      if (state == State.HALF_OPEN || System.nanoTime() - openedAtNanos < openNanos) {
+        return false;
+      }
+      changeState(State.HALF_OPEN);
+    }
+    notifyListener();
+    return true;
+  }
+
+  /**
+   * Records a request that the endpoint answered.
+   */
+  void onSuccess() {
+    if (state == State.CLOSED && consecutiveFailures == 0) {
+      return;
+    }
+    State from;
+    synchronized (this) {
+      consecutiveFailures = 0;
+      from = state;
+      if (from == State.CLOSED) {
+        return;
+      }
+      changeState(State.CLOSED);
+    }
+    notifyListener();
+  }
+
+  /**
+   * Records a request that failed because of the endpoint.
+   */
+  void onFailure() {
+    State from;
+    synchronized (this) {
+      consecutiveFailures++;
+      from = state;
+      if (from == State.OPEN) {
+        return; // A request sent before the breaker opened.
+      }
+      if (from == State.CLOSED
+          && (failureThreshold <= 0 || consecutiveFailures < failureThreshold)) {
+        return;
+      }
+      changeState(State.OPEN);
+      openedAtNanos = System.nanoTime();
+    }
+    notifyListener();
+  }
+
+  /**
+   * Records a request that ended without saying anything about the
+   * endpoint, such as one the caller cancelled. If it was the probe, the
+   * breaker is made ready to be probed again right away.
+   */
+  void release() {
+    synchronized (this) {
+      if (state != State.HALF_OPEN) {
+        return;
+      }
+      changeState(State.OPEN);
+      openedAtNanos = System.nanoTime() - openNanos;
+    }
+    notifyListener();
+  }
+
+  // Must be called while holding the monitor.
+  private void changeState(State to) {
+    if (listener != null) {
+      changes.add(new State[] {state, to});
+    }
+    state = to;
+  }
+
+  // Delivers queued changes to the listener outside the monitor. If another
+  // thread is already delivering them, it delivers ours too, so that the
+  // listener sees them in order.
+  private void notifyListener() {
+    if (listener == null) {
+      return;
+    }
+    synchronized (this) {
+      if (notifying) {
+        return;
+      }
+      notifying = true;
+    }
+    boolean drained = false;
+    try {
+      while (true) {
+        State[] change;
+        synchronized (this) {
+          change = changes.poll();
+          if (change == null) {
+            notifying = false;
+            drained = true;
+            return;
+          }
+        }
+        listener.onStateChange(endpoint, change[0], change[1]);
+      }
+    } finally {
+      if (!drained) {
+        // The listener threw; leave the remaining changes to the next
+        // thread to change the state.
+        synchronized (this) {
+          notifying = false;
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "%s failures=%d open=%dms",
+        state,
+        consecutiveFailures,
+        TimeUnit.NANOSECONDS.toMillis(openNanos));
+  }
+}
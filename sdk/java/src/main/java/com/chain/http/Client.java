@@ -2,8 +2,10 @@ package com.chain.http;
 
 import com.chain.exception.*;
 import com.chain.common.*;
+import com.chain.metrics.MetricRegistry;
 
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
 import java.net.*;
 import java.security.GeneralSecurityException;
@@ -11,19 +13,33 @@ import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
+import com.squareup.okhttp.Callback;
 import com.squareup.okhttp.CertificatePinner;
-import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.Credentials;
-import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
 import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import okio.Okio;
 
 import javax.net.ssl.*;
 
@@ -36,26 +52,41 @@ import javax.net.ssl.*;
  */
 public class Client {
 
-  private AtomicInteger urlIndex;
   private List<URL> urls;
+  private Map<String, Lane> lanes;
+  private Lane defaultLane;
+  private EndpointSelector selector;
+  private EndpointSelector readSelector;
+  private Map<String, Boolean> readActions;
   private String accessToken;
-  private OkHttpClient httpClient;
-  private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-  private static String version = "dev"; // updated in the static initializer
-
-  private static class BuildProperties {
-    public String version;
-  }
-
-  static {
-    InputStream in = Client.class.getClassLoader().getResourceAsStream("properties.json");
-    if (in != null) {
-      InputStreamReader inr = new InputStreamReader(in);
-      version = Utils.serializer.fromJson(inr, BuildProperties.class).version;
-    }
-  }
+  private String authorization;
+  private List<OkHttpClient> httpClients;
+  private Builder builder;
+  private int gzipThreshold;
+  private CompressionStats compressionStats = new CompressionStats();
+  private LogStats logStats = new LogStats();
+  private AsyncLogWriter logWriter;
+  private RequestListener requestListener;
+  private boolean timeBodies;
+  private MetricRegistry metricRegistry;
+  private ClientMetrics metrics;
+  private AutoBatcher autoBatcher;
+  private Hedger hedger;
+  private SingleFlight singleFlight;
+  private FailoverProbe failover;
+  private Prewarmer prewarmer;
 
   public Client(Builder builder) {
+    this.builder = builder.copy();
+    if (builder.prewarmConnections > 0 && builder.transport == null && !builder.http2) {
+      // Connections beyond OkHttp's limits would wait for one another, or be
+      // closed as soon as they were opened.
+      int limit = Math.min(builder.poolMaxIdle, builder.maxAsyncRequestsPerHost);
+      if (builder.prewarmConnections > limit) {
+        throw new IllegalArgumentException(
+            "cannot prewarm more than " + limit + " connections to each URL");
+      }
+    }
     List<URL> urls = new ArrayList<URL>(builder.urls);
     if (urls.isEmpty()) {
       try {
@@ -65,10 +96,93 @@ public class Client {
       }
     }
 
-    this.urlIndex = new AtomicInteger(0);
     this.urls = urls;
+    this.selector =
+        builder.selector != null ? builder.selector : new EndpointSelector.Sticky();
+    this.readSelector = builder.readSelector;
+    this.readActions = builder.readActions;
     this.accessToken = builder.accessToken;
-    this.httpClient = buildHttpClient(builder);
+    if (hasAccessToken()) {
+      this.authorization = buildCredentials();
+    }
+
+    // Clients trusting the same certificates share a TLS context, and with
+    // it their TLS sessions.
+    TransportRegistry registry = builder.registry;
+    SSLContext sslContext = null;
+    if (builder.sslContext != null) {
+      sslContext = registry.sslContext(builder.trustedCerts, builder.sslContext);
+    }
+
+    // Metrics are recorded from the same per-call timing that is reported to
+    // the application's listener, but only that listener needs the response
+    // bodies buffered to time deserialization.
+    this.requestListener = builder.requestListener;
+    this.timeBodies = builder.requestListener != null;
+    if (builder.metricRegistry != null) {
+      this.metricRegistry = builder.metricRegistry;
+      this.metrics = new ClientMetrics(builder.metricRegistry, builder.requestListener);
+      this.requestListener = this.metrics;
+    }
+    if (builder.logger != null && builder.asyncLogCapacity > 0) {
+      this.logWriter = new AsyncLogWriter(builder.logger, builder.asyncLogCapacity, logStats);
+    }
+
+    Transport shared = null;
+    if (builder.transport != null) {
+      shared = builder.transport;
+    } else if (builder.http2) {
+      shared = buildJdkHttpTransport(builder, registry, sslContext);
+    }
+    Map<String, Lane> lanes = new LinkedHashMap<>();
+    List<OkHttpClient> httpClients = new ArrayList<>();
+    for (Map.Entry<String, Integer> entry : builder.lanes.entrySet()) {
+      String name = entry.getKey();
+      Transport transport = shared;
+      if (transport == null) {
+        // Each lane has its own connection pool and dispatcher, so that one
+        // lane's requests can't hold all of the connections.
+        OkHttpClient httpClient = buildHttpClient(builder, name, registry, sslContext);
+        httpClients.add(httpClient);
+        transport = new OkHttpTransport(httpClient);
+      }
+      lanes.put(
+          name, new Lane(name, entry.getValue(), buildEndpoints(builder, name), transport));
+    }
+    this.lanes = lanes;
+    this.defaultLane = lanes.get(Lane.DEFAULT);
+    this.httpClients = httpClients;
+    this.gzipThreshold = builder.gzipThreshold;
+    if (builder.hedgePercentile > 0 && urls.size() > 1) {
+      this.hedger = new Hedger(this, builder.hedgePercentile, builder.hedgeRatio);
+    }
+    if (builder.failoverAction != null) {
+      this.failover =
+          new FailoverProbe(
+              this,
+              builder.failoverAction,
+              builder.failoverIntervalUnit.toNanos(builder.failoverInterval));
+    }
+    if (!builder.singleFlightActions.isEmpty()) {
+      this.singleFlight = new SingleFlight(this, new HashSet<>(builder.singleFlightActions));
+    }
+    if (builder.autoBatchMaxSize > 1) {
+      this.autoBatcher =
+          new AutoBatcher(
+              this,
+              builder.autoBatchWindowUnit.toNanos(builder.autoBatchWindow),
+              builder.autoBatchMaxSize);
+    }
+    // Prewarming starts last, once the client is otherwise ready for use.
+    if (builder.prewarmConnections > 0) {
+      this.prewarmer =
+          new Prewarmer(
+              this,
+              builder.prewarmAction,
+              builder.prewarmConnections,
+              builder.prewarmIntervalUnit.toNanos(builder.prewarmInterval));
+      this.prewarmer.start();
+    }
   }
 
   /**
@@ -126,13 +240,103 @@ public class Client {
    * @throws ChainException
    */
   public <T> T request(String action, Object body, final Type tClass) throws ChainException {
-    ResponseCreator<T> rc =
-        new ResponseCreator<T>() {
-          public T create(Response response, Gson deserializer) throws IOException {
-            return deserializer.fromJson(response.body().charStream(), tClass);
-          }
-        };
-    return post(action, body, rc);
+    if (this.singleFlight != null && this.singleFlight.handles(action)) {
+      return this.singleFlight.<T>request(action, body, false, tClass);
+    }
+    return post(action, body, this.<T>requestCreator(tClass), null);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with the given options overriding the client's timeouts and retry policy.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param options Options for this request
+   * @return the result of the post request
+   * @throws ChainException
+   */
+  public <T> T request(String action, Object body, final Type tClass, RequestOptions options)
+      throws ChainException {
+    return post(action, body, this.<T>requestCreator(tClass), options);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * without blocking the calling thread. Retries are scheduled on a shared
+   * timer rather than sleeping on the caller's thread.
+   * <br>
+   * A body larger than the client's compression threshold is serialized on
+   * the HTTP client's threads as each attempt is sent, so it must not be
+   * changed until the returned future completes. Smaller bodies are
+   * serialized before this method returns.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @return a future that completes with the result of the post request, or
+   *     exceptionally with a ChainException
+   */
+  public <T> CompletableFuture<T> requestAsync(String action, Object body, final Type tClass) {
+    if (this.singleFlight != null && this.singleFlight.handles(action)) {
+      return this.singleFlight.requestAsync(action, body, false, tClass);
+    }
+    return postAsync(action, body, this.<T>requestCreator(tClass), null);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * without blocking the calling thread, with the given options overriding
+   * the client's timeouts and retry policy.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param options Options for this request
+   * @return a future that completes with the result of the post request, or
+   *     exceptionally with a ChainException
+   */
+  public <T> CompletableFuture<T> requestAsync(
+      String action, Object body, final Type tClass, RequestOptions options) {
+    return postAsync(action, body, this.<T>requestCreator(tClass), options);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a read-only
+   * action. The action must be idempotent: if hedging is enabled on the
+   * client, the request may be sent to more than one URL, and the first
+   * response to arrive is used.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @return the result of the post request
+   * @throws ChainException
+   * @see Builder#setHedging(double, double)
+   */
+  public <T> T hedgedRequest(String action, Object body, final Type tClass)
+      throws ChainException {
+    if (this.singleFlight != null && this.singleFlight.handles(action)) {
+      return this.singleFlight.<T>request(action, body, true, tClass);
+    }
+    if (this.hedger == null) {
+      return request(action, body, tClass);
+    }
+    RequestBody requestBody = jsonBody(body);
+    return await(this.hedger.request(action, requestBody, this.<T>requestCreator(tClass)));
+  }
+
+  /**
+   * Sends a read-only request without blocking, hedging it if hedged is
+   * true and hedging is enabled.
+   */
+  <T> CompletableFuture<T> readAsync(
+      String action, RequestBody body, ResponseCreator<T> respCreator, boolean hedged) {
+    if (hedged && this.hedger != null) {
+      return this.hedger.request(action, body, respCreator);
+    }
+    return postAsync(action, body, respCreator, null, null);
   }
 
   /**
@@ -150,14 +354,110 @@ public class Client {
    */
   public <T> BatchResponse<T> batchRequest(
       String action, Object body, final Type tClass, final Type eClass) throws ChainException {
-    ResponseCreator<BatchResponse<T>> rc =
-        new ResponseCreator<BatchResponse<T>>() {
-          public BatchResponse<T> create(Response response, Gson deserializer)
-              throws ChainException, IOException {
-            return new BatchResponse<>(response, deserializer, tClass, eClass);
-          }
-        };
-    return post(action, body, rc);
+    return post(action, body, this.<T>batchCreator(action, tClass, eClass, null), null);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with batch semantics, and with the given options overriding the client's
+   * timeouts and retry policy.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @param options Options for this request
+   * @return the result of the post request
+   * @throws ChainException
+   */
+  public <T> BatchResponse<T> batchRequest(
+      String action, Object body, final Type tClass, final Type eClass, RequestOptions options)
+      throws ChainException {
+    return post(action, body, this.<T>batchCreator(action, tClass, eClass, null), options);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with batch semantics. Each item of the response is passed to the handler
+   * as soon as it has been decoded, while the rest of the response is still
+   * being read.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @param handler Receives each item of the response as it is decoded
+   * @return the result of the post request
+   * @throws ChainException
+   */
+  public <T> BatchResponse<T> batchRequest(
+      String action,
+      Object body,
+      final Type tClass,
+      final Type eClass,
+      BatchResponse.ItemHandler<T> handler)
+      throws ChainException {
+    return post(action, body, this.<T>batchCreator(action, tClass, eClass, handler), null);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with batch semantics, without blocking the calling thread. As with
+   * {@link #requestAsync(String, Object, Type)}, a large body must not be
+   * changed until the returned future completes.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @return a future that completes with the batch response, or exceptionally
+   *     with a ChainException
+   * @see #batchRequest(String, Object, Type, Type)
+   */
+  public <T> CompletableFuture<BatchResponse<T>> batchRequestAsync(
+      String action, Object body, final Type tClass, final Type eClass) {
+    return postAsync(action, body, this.<T>batchCreator(action, tClass, eClass, null), null);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with batch semantics, without blocking the calling thread, and with the
+   * given options overriding the client's timeouts and retry policy.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @param options Options for this request
+   * @return a future that completes with the batch response, or exceptionally
+   *     with a ChainException
+   */
+  public <T> CompletableFuture<BatchResponse<T>> batchRequestAsync(
+      String action, Object body, final Type tClass, final Type eClass, RequestOptions options) {
+    return postAsync(action, body, this.<T>batchCreator(action, tClass, eClass, null), options);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with batch semantics, without blocking the calling thread. Each item of
+   * the response is passed to the handler as soon as it has been decoded.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @param handler Receives each item of the response as it is decoded
+   * @return a future that completes with the batch response, or exceptionally
+   *     with a ChainException
+   * @see #batchRequest(String, Object, Type, Type, BatchResponse.ItemHandler)
+   */
+  public <T> CompletableFuture<BatchResponse<T>> batchRequestAsync(
+      String action,
+      Object body,
+      final Type tClass,
+      final Type eClass,
+      BatchResponse.ItemHandler<T> handler) {
+    return postAsync(action, body, this.<T>batchCreator(action, tClass, eClass, handler), null);
   }
 
   /**
@@ -178,31 +478,274 @@ public class Client {
    */
   public <T> T singletonBatchRequest(
       String action, Object body, final Type tClass, final Type eClass) throws ChainException {
-    ResponseCreator<T> rc =
-        new ResponseCreator<T>() {
-          public T create(Response response, Gson deserializer) throws ChainException, IOException {
-            BatchResponse<T> batch = new BatchResponse<>(response, deserializer, tClass, eClass);
-
-            List<APIException> errors = batch.errors();
-            if (errors.size() == 1) {
-              // This throw must occur within this lambda in order for APIClient's
-              // retry logic to take effect.
-              throw errors.get(0);
-            }
+    return post(action, body, this.<T>singletonCreator(action, tClass, eClass), null);
+  }
 
-            List<T> successes = batch.successes();
-            if (successes.size() == 1) {
-              return successes.get(0);
-            }
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with single-item semantics, and with the given options overriding the
+   * client's timeouts and retry policy.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @param options Options for this request
+   * @return the result of the post request
+   * @throws ChainException
+   * @see #singletonBatchRequest(String, Object, Type, Type)
+   */
+  public <T> T singletonBatchRequest(
+      String action, Object body, final Type tClass, final Type eClass, RequestOptions options)
+      throws ChainException {
+    return post(action, body, this.<T>singletonCreator(action, tClass, eClass), options);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with single-item semantics, without blocking the calling thread. If the
+   * single item produces an error, the future completes exceptionally with
+   * that error.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @return a future that completes with the result of the post request
+   * @see #singletonBatchRequest(String, Object, Type, Type)
+   */
+  public <T> CompletableFuture<T> singletonBatchRequestAsync(
+      String action, Object body, final Type tClass, final Type eClass) {
+    return postAsync(action, body, this.<T>singletonCreator(action, tClass, eClass), null);
+  }
+
+  /**
+   * Perform a single HTTP POST request against the API for a specific action,
+   * with single-item semantics, without blocking the calling thread, and
+   * with the given options overriding the client's timeouts and retry policy.
+   *
+   * @param action The requested API action
+   * @param body Body payload sent to the API as JSON
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @param options Options for this request
+   * @return a future that completes with the result of the post request
+   * @see #singletonBatchRequestAsync(String, Object, Type, Type)
+   */
+  public <T> CompletableFuture<T> singletonBatchRequestAsync(
+      String action, Object body, final Type tClass, final Type eClass, RequestOptions options) {
+    return postAsync(action, body, this.<T>singletonCreator(action, tClass, eClass), options);
+  }
+
+  /**
+   * Perform a single-item request against a batch endpoint whose request body
+   * is a JSON array of items, such as build-transaction or create-account.
+   * If auto-batching is enabled on the client, the item may be sent in one
+   * batch request together with concurrent calls for the same action.
+   *
+   * @param action The requested API action
+   * @param item The single request item, sent as a member of the batch
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @return the result of the request
+   * @throws ChainException
+   * @see Builder#setAutoBatching(long, TimeUnit, int)
+   */
+  public <T> T coalescedBatchRequest(
+      String action, Object item, final Type tClass, final Type eClass) throws ChainException {
+    return coalescedBatchRequest(action, null, null, item, tClass, eClass);
+  }
+
+  /**
+   * Perform a single-item request against a batch endpoint whose request body
+   * is a JSON object, holding the array of items under itemsKey alongside
+   * parameters that apply to the whole batch, such as submit-transaction.
+   * If auto-batching is enabled on the client, the item may be sent in one
+   * batch request together with concurrent calls that share the same action
+   * and parameters.
+   *
+   * @param action The requested API action
+   * @param itemsKey The request body field holding the array of items
+   * @param params Other request body fields, shared by the whole batch (possibly null)
+   * @param item The single request item, sent as a member of the batch
+   * @param tClass Type of object to be deserialized from the response JSON
+   * @param eClass Type of error object to be deserialized from the response JSON
+   * @return the result of the request
+   * @throws ChainException
+   * @see Builder#setAutoBatching(long, TimeUnit, int)
+   */
+  public <T> T coalescedBatchRequest(
+      String action,
+      String itemsKey,
+      Map<String, Object> params,
+      Object item,
+      final Type tClass,
+      final Type eClass)
+      throws ChainException {
+    if (this.autoBatcher == null) {
+      return singletonBatchRequest(
+          action, batchBody(itemsKey, params, Arrays.asList(item)), tClass, eClass);
+    }
+    return await(this.autoBatcher.<T>add(action, itemsKey, params, item, tClass, eClass));
+  }
+
+  /**
+   * Returns the batch sizes achieved by auto-batching, keyed by action. The
+   * map is empty if auto-batching is disabled.
+   * @return a map of action names to batch statistics
+   */
+  public Map<String, AutoBatchStats> autoBatchStats() {
+    if (this.autoBatcher == null) {
+      return new TreeMap<>();
+    }
+    return this.autoBatcher.stats();
+  }
+
+  /**
+   * Returns how often identical concurrent reads were served by a single
+   * request, keyed by action. The map is empty if no actions are collapsed.
+   * @return a map of action names to statistics
+   * @see Builder#setSingleFlight(String...)
+   */
+  public Map<String, SingleFlightStats> singleFlightStats() {
+    if (this.singleFlight == null) {
+      return new TreeMap<>();
+    }
+    return this.singleFlight.stats();
+  }
+
+  /**
+   * Returns the savings and costs of gzip compression of request and
+   * response bodies.
+   * @return the client's compression statistics
+   * @see Builder#setGzipThreshold(int)
+   */
+  public CompressionStats compressionStats() {
+    return this.compressionStats;
+  }
+
+  /**
+   * Returns how many requests the client's logger has logged, and how many
+   * it has dropped, sampled out or truncated.
+   * @return the client's logging statistics
+   * @see Builder#setLogger(OutputStream)
+   */
+  public LogStats logStats() {
+    return this.logStats;
+  }
+
+  /**
+   * Returns the registry the client records its metrics in.
+   * @return the metric registry, or null if the client doesn't record metrics
+   * @see Builder#setMetricRegistry(MetricRegistry)
+   */
+  public MetricRegistry metricRegistry() {
+    return this.metricRegistry;
+  }
+
+  /**
+   * Builds the request body for a batch endpoint. If itemsKey is null, the
+   * body is the array of items itself.
+   */
+  static Object batchBody(String itemsKey, Map<String, Object> params, List<?> items) {
+    if (itemsKey == null) {
+      return items;
+    }
+    Map<String, Object> body = new HashMap<>();
+    if (params != null) {
+      body.putAll(params);
+    }
+    body.put(itemsKey, items);
+    return body;
+  }
+
+  /**
+   * Waits for a future produced by one of the asynchronous request paths,
+   * rethrowing its failure as it would have been thrown by the blocking path.
+   */
+  static <T> T await(CompletableFuture<T> future) throws ChainException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ChainException("Interrupted while waiting for response", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof ChainException) {
+        throw (ChainException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ChainException(cause.getMessage(), cause);
+    }
+  }
 
-            // We should never get here, unless there is a bug in either the SDK or
-            // API code, causing a non-singleton response.
-            throw new ChainException(
-                "Invalid singleton response, request ID "
-                    + batch.response().headers().get("Chain-Request-ID"));
+  private <T> ResponseCreator<T> requestCreator(final Type tClass) {
+    return new ResponseCreator<T>() {
+      public T create(Response response, Gson deserializer) throws IOException {
+        try {
+          return deserializer.fromJson(response.body().charStream(), tClass);
+        } catch (JsonParseException ex) {
+          // Gson wraps failures to read the body, such as timeouts, which
+          // should be retried like any other I/O error.
+          if (ex.getCause() instanceof IOException
+              && !(ex.getCause() instanceof MalformedJsonException)) {
+            throw (IOException) ex.getCause();
           }
-        };
-    return post(action, body, rc);
+          throw ex;
+        }
+      }
+    };
+  }
+
+  private <T> ResponseCreator<BatchResponse<T>> batchCreator(
+      final String action,
+      final Type tClass,
+      final Type eClass,
+      final BatchResponse.ItemHandler<T> handler) {
+    return new ResponseCreator<BatchResponse<T>>() {
+      public BatchResponse<T> create(Response response, Gson deserializer)
+          throws ChainException, IOException {
+        BatchResponse<T> batch =
+            new BatchResponse<>(response, deserializer, tClass, eClass, handler);
+        if (metrics != null) {
+          metrics.recordBatch(action, batch);
+        }
+        return batch;
+      }
+    };
+  }
+
+  private <T> ResponseCreator<T> singletonCreator(
+      final String action, final Type tClass, final Type eClass) {
+    return new ResponseCreator<T>() {
+      public T create(Response response, Gson deserializer) throws ChainException, IOException {
+        BatchResponse<T> batch = new BatchResponse<>(response, deserializer, tClass, eClass);
+        if (metrics != null) {
+          metrics.recordBatch(action, batch);
+        }
+
+        List<APIException> errors = batch.errors();
+        if (errors.size() == 1) {
+          // This throw must occur within this lambda in order for APIClient's
+          // retry logic to take effect.
+          throw errors.get(0);
+        }
+
+        List<T> successes = batch.successes();
+        if (successes.size() == 1) {
+          return successes.get(0);
+        }
+
+        // We should never get here, unless there is a bug in either the SDK or
+        // API code, causing a non-singleton response.
+        throw new ChainException(
+            "Invalid singleton response, request ID "
+                + batch.response().headers().get("Chain-Request-ID"));
+      }
+    };
   }
 
   /**
@@ -221,6 +764,76 @@ public class Client {
     return new ArrayList<>(this.urls);
   }
 
+  /**
+   * Returns the client's endpoints, one for each base URL, along with the
+   * statistics the client has observed for them in the default lane.
+   * @return the client's endpoints
+   * @see Lane#endpoints()
+   */
+  public List<Endpoint> endpoints() {
+    return this.defaultLane.endpoints();
+  }
+
+  /**
+   * Returns a future that completes once the client has opened its
+   * prewarmed connections to every one of its URLs, for health checks that
+   * should wait for them. It never completes exceptionally: a URL that
+   * can't be reached is tried again at the prewarming interval.
+   * @return the future, already completed if prewarming is disabled
+   * @see Builder#setPrewarming(String, int, long, TimeUnit)
+   */
+  public CompletableFuture<Void> prewarmed() {
+    if (this.prewarmer == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return this.prewarmer.ready();
+  }
+
+  /**
+   * Returns the client's lanes, along with their statistics.
+   * @return the client's lanes
+   */
+  public List<Lane> lanes() {
+    return new ArrayList<>(this.lanes.values());
+  }
+
+  /**
+   * Returns one of the client's lanes.
+   * @param name the name of the lane
+   * @return the lane, or null if the client has no lane with that name
+   */
+  public Lane lane(String name) {
+    return this.lanes.get(name);
+  }
+
+  /**
+   * Returns a builder with the settings this client was built with, for
+   * creating a client derived from this one, such as a client for another
+   * URL or access token. A client built from it shares this client's
+   * connections and TLS sessions, as long as their settings for them
+   * remain the same. Settings changed on this client after it was built,
+   * such as with {@link #setReadTimeout(long, TimeUnit)}, are not included.
+   * @return a new builder
+   */
+  public Builder newBuilder() {
+    return this.builder.copy();
+  }
+
+  /**
+   * Returns a builder with only this client's transport, TLS and
+   * authentication settings, for creating a client that talks to a
+   * different service over the same connections, such as a mock HSM. A
+   * client built from it shares this client's connections and TLS
+   * sessions, but none of its other behavior: prewarming, failover
+   * probing, hedging, auto-batching, single-flight reads, endpoint
+   * selection, circuit breaking, concurrency limits, custom lanes,
+   * logging, listeners and metrics are all left at their defaults.
+   * @return a new builder
+   */
+  public Builder newConnectionBuilder() {
+    return this.builder.connectionSettings();
+  }
+
   /**
    * Returns true if a client access token stored in the client.
    * @return a boolean
@@ -237,50 +850,91 @@ public class Client {
     return accessToken;
   }
 
+  /**
+   * Returns the OkHttp clients used by the default transport, one for each
+   * lane.
+   * @throws UnsupportedOperationException if the client uses another transport
+   */
+  private List<OkHttpClient> okHttpClients() {
+    if (this.httpClients.isEmpty()) {
+      throw new UnsupportedOperationException(
+          "this setting is only supported by the default OkHttp transport");
+    }
+    return this.httpClients;
+  }
+
+  /**
+   * Passes settings changed on the OkHttp clients on to their transports.
+   */
+  private void okHttpSettingsChanged() {
+    for (Lane lane : this.lanes.values()) {
+      ((OkHttpTransport) lane.transport()).settingsChanged();
+    }
+  }
+
   /**
    * Pins a public key to the HTTP client.
    * @param provider certificate provider
    * @param subjPubKeyInfoHash public key hash
+   * @throws UnsupportedOperationException if the client doesn't use the OkHttp transport
    */
   public void pinCertificate(String provider, String subjPubKeyInfoHash) {
     CertificatePinner cp =
         new CertificatePinner.Builder().add(provider, subjPubKeyInfoHash).build();
-    this.httpClient.setCertificatePinner(cp);
+    for (OkHttpClient httpClient : this.okHttpClients()) {
+      httpClient.setCertificatePinner(cp);
+    }
+    this.okHttpSettingsChanged();
   }
 
   /**
    * Sets the default connect timeout for new connections. A value of 0 means no timeout.
    * @param timeout the number of time units for the default timeout
    * @param unit the unit of time
+   * @throws UnsupportedOperationException if the client doesn't use the OkHttp transport
    */
   public void setConnectTimeout(long timeout, TimeUnit unit) {
-    this.httpClient.setConnectTimeout(timeout, unit);
+    for (OkHttpClient httpClient : this.okHttpClients()) {
+      httpClient.setConnectTimeout(timeout, unit);
+    }
+    this.okHttpSettingsChanged();
   }
 
   /**
    * Sets the default read timeout for new connections. A value of 0 means no timeout.
    * @param timeout the number of time units for the default timeout
    * @param unit the unit of time
+   * @throws UnsupportedOperationException if the client doesn't use the OkHttp transport
    */
   public void setReadTimeout(long timeout, TimeUnit unit) {
-    this.httpClient.setReadTimeout(timeout, unit);
+    for (OkHttpClient httpClient : this.okHttpClients()) {
+      httpClient.setReadTimeout(timeout, unit);
+    }
   }
 
   /**
    * Sets the default write timeout for new connections. A value of 0 means no timeout.
    * @param timeout the number of time units for the default timeout
    * @param unit the unit of time
+   * @throws UnsupportedOperationException if the client doesn't use the OkHttp transport
    */
   public void setWriteTimeout(long timeout, TimeUnit unit) {
-    this.httpClient.setWriteTimeout(timeout, unit);
+    for (OkHttpClient httpClient : this.okHttpClients()) {
+      httpClient.setWriteTimeout(timeout, unit);
+    }
+    this.okHttpSettingsChanged();
   }
 
   /**
    * Sets the proxy information for the HTTP client.
    * @param proxy proxy object
+   * @throws UnsupportedOperationException if the client doesn't use the OkHttp transport
    */
   public void setProxy(Proxy proxy) {
-    this.httpClient.setProxy(proxy);
+    for (OkHttpClient httpClient : this.okHttpClients()) {
+      httpClient.setProxy(proxy);
+    }
+    this.okHttpSettingsChanged();
   }
 
   /**
@@ -304,85 +958,703 @@ public class Client {
    * @param path the path to the endpoint
    * @param body the request body
    * @param respCreator object specifying the response structure
+   * @param options options for the request, or null for the client's defaults
    * @return a response deserialized into type T
    * @throws ChainException
    */
-  private <T> T post(String path, Object body, ResponseCreator<T> respCreator)
+  private <T> T post(
+      String path, Object body, ResponseCreator<T> respCreator, RequestOptions options)
       throws ChainException {
-    RequestBody requestBody = RequestBody.create(this.JSON, Utils.serializer.toJson(body));
-    Request req;
-
-    ChainException exception = null;
-    for (int attempt = 1; attempt - 1 <= MAX_RETRIES; attempt++) {
-
-      int idx = this.urlIndex.get();
-      URL endpointURL;
-      try {
-        URI u = new URI(this.urls.get(idx % this.urls.size()).toString() + "/" + path);
-        u = u.normalize();
-        endpointURL = new URL(u.toString());
-      } catch (MalformedURLException ex) {
-        throw new BadURLException(ex.getMessage());
-      } catch (URISyntaxException ex) {
-        throw new BadURLException(ex.getMessage());
-      }
+    if (this.requestListener == null) {
+      return postAttempts(path, body, respCreator, CallLimits.of(options, null));
+    }
+    RequestTiming timing = new RequestTiming(path);
+    boolean succeeded = false;
+    try {
+      T result = postAttempts(path, body, respCreator, CallLimits.of(options, timing));
+      succeeded = true;
+      return result;
+    } finally {
+      report(timing, succeeded);
+    }
+  }
 
-      Request.Builder builder =
-          new Request.Builder()
-              .header("User-Agent", "chain-sdk-java/" + version)
-              .url(endpointURL)
-              .method("POST", requestBody);
-      if (hasAccessToken()) {
-        builder = builder.header("Authorization", buildCredentials());
-      }
-      req = builder.build();
+  private <T> T postAttempts(
+      String path, Object body, ResponseCreator<T> respCreator, CallLimits limits)
+      throws ChainException {
+    // Large bodies are serialized straight into the connection on each
+    // attempt.
+    RequestBody requestBody = jsonBody(body);
+    Lane lane = this.lane(limits);
 
+    ChainException exception = null;
+    for (int attempt = 1; attempt - 1 <= limits.maxRetries; attempt++) {
       // Wait between retrys. The first attempt will not wait at all.
       if (attempt > 1) {
         int delayMillis = retryDelayMillis(attempt - 1);
+        if (!limits.hasTimeAfter(delayMillis)) {
+          throw exception;
+        }
+        FlightEvents.Span backoff = FlightEvents.begin(FlightEvents.Type.BACKOFF);
         try {
-          TimeUnit.MILLISECONDS.sleep(delayMillis);
+          waitToRetry(delayMillis);
         } catch (InterruptedException e) {
+        } finally {
+          endBackoff(backoff, path, attempt, delayMillis);
         }
       }
 
+      RequestTiming.Attempt timed = limits.timing != null ? limits.timing.startAttempt() : null;
+
+      awaitLane(lane, limits);
       try {
-        Response resp = this.checkError(this.httpClient.newCall(req).execute());
-        return respCreator.create(resp, Utils.serializer);
-      } catch (IOException ex) {
-        // This URL's process might be unhealthy; move to the next.
-        this.nextURL(idx);
-
-        // The OkHttp library already performs retries for some
-        // I/O-related errors, but we've hit this case in a leader
-        // failover, so do our own retries too.
-        exception = new HTTPException(ex.getMessage());
-      } catch (ConnectivityException ex) {
-        // This URL's process might be unhealthy; move to the next.
-        this.nextURL(idx);
-
-        // ConnectivityExceptions are always retriable.
-        exception = ex;
-      } catch (APIException ex) {
-        // Check if this error is retriable (either it's a status code that's
-        // always retriable or the error is explicitly marked as temporary.
-        if (!isRetriableStatusCode(ex.statusCode) && !ex.temporary) {
+        Endpoint endpoint = this.selectEndpoint(lane, path, null);
+        if (endpoint == null) {
+          exception = circuitOpen();
+          failed(timed, exception);
+          continue;
+        }
+        Request req;
+        try {
+          req = buildRequest(endpoint, path, requestBody);
+        } catch (BadURLException ex) {
+          endpoint.circuitBreaker().release();
+          throw ex;
+        }
+        awaitPermit(endpoint, limits.priority);
+        if (timed != null) {
+          req = timed.tag(req);
+          timed.sent(endpoint.url());
+        }
+
+        long timeout = limits.attemptTimeoutNanos();
+        long start = endpoint.start();
+        FlightEvents.Span event = FlightEvents.begin(FlightEvents.Type.ATTEMPT);
+        Response raw = null;
+        Exception failure = null;
+        try {
+          raw =
+              timeout < 0
+                  ? lane.transport().execute(req)
+                  : lane.transport().execute(req, timeout);
+          if (timed != null) {
+            timed.received(raw);
+          }
+          Response resp = this.checkError(this.decode(endpoint, raw));
+          T result = create(respCreator, resp, timeBodies ? timed : null);
+          endpoint.finish(start, true);
+          return result;
+        } catch (IOException ex) {
+          failure = ex;
+          failed(timed, ex);
+          exception = retriableException(ex, lane, endpoint, start);
+        } catch (ChainException ex) {
+          failure = ex;
+          failed(timed, ex);
+          exception = retriableException(ex, lane, endpoint, start);
+        } catch (RuntimeException ex) {
+          failure = ex;
+          endpoint.finish(start, true);
           throw ex;
+        } finally {
+          closeQuietly(raw);
+          endAttempt(event, path, endpoint, attempt, raw, failure);
         }
+      } finally {
+        lane.release();
+      }
+    }
+    throw exception;
+  }
+
+  /**
+   * Builds and executes an HTTP Post request without blocking the calling
+   * thread. Each attempt runs on the HTTP client's dispatcher, and the wait
+   * between attempts is scheduled on a shared timer.
+   * @param path the path to the endpoint
+   * @param body the request body
+   * @param respCreator object specifying the response structure
+   * @param options options for the request, or null for the client's defaults
+   * @return a future holding the response deserialized into type T
+   */
+  private <T> CompletableFuture<T> postAsync(
+      String path, Object body, ResponseCreator<T> respCreator, RequestOptions options) {
+    return postAsync(path, jsonBody(body), respCreator, options, null);
+  }
+
+  /**
+   * Builds and executes an HTTP Post request without blocking the calling
+   * thread, sending the first attempt to the given endpoint. Cancelling the
+   * returned future cancels the attempt in flight.
+   * @param path the path to the endpoint
+   * @param requestBody the serialized request body
+   * @param respCreator object specifying the response structure
+   * @param options options for the request, or null for the client's defaults
+   * @param first the endpoint for the first attempt, or null to use the selector
+   * @return a future holding the response deserialized into type T
+   */
+  <T> CompletableFuture<T> postAsync(
+      String path,
+      RequestBody requestBody,
+      ResponseCreator<T> respCreator,
+      RequestOptions options,
+      Endpoint first) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    RequestTiming timing = null;
+    if (this.requestListener != null) {
+      final RequestTiming t = timing = new RequestTiming(path);
+      future.whenComplete(
+          new BiConsumer<T, Throwable>() {
+            public void accept(T result, Throwable err) {
+              report(t, err == null);
+            }
+          });
+    }
+    attemptAsync(
+        path, requestBody, respCreator, CallLimits.of(options, timing), 1, first, future);
+    return future;
+  }
+
+  private <T> void attemptAsync(
+      final String path,
+      final RequestBody requestBody,
+      final ResponseCreator<T> respCreator,
+      final CallLimits limits,
+      final int attempt,
+      final Endpoint first,
+      final CompletableFuture<T> future) {
+    // The caller may have cancelled the future while we were waiting.
+    if (future.isDone()) {
+      if (first != null) {
+        first.circuitBreaker().release();
+      }
+      return;
+    }
+
+    if (limits.timing != null) {
+      limits.timing.startAttempt();
+    }
+    final Lane lane;
+    try {
+      lane = this.lane(limits);
+    } catch (IllegalArgumentException ex) {
+      if (first != null) {
+        first.circuitBreaker().release();
+      }
+      future.completeExceptionally(ex);
+      return;
+    }
+    lane.acquire(this.laneTimeoutNanos(limits))
+        .whenComplete(
+            new BiConsumer<Void, Throwable>() {
+              public void accept(Void v, Throwable err) {
+                if (err != null) {
+                  if (first != null) {
+                    first.circuitBreaker().release();
+                  }
+                  future.completeExceptionally(err);
+                } else if (future.isDone()) {
+                  // The caller gave up while the request was queued.
+                  lane.release();
+                  if (first != null) {
+                    first.circuitBreaker().release();
+                  }
+                } else {
+                  admitAsync(
+                      path, requestBody, respCreator, limits, attempt, lane, first, future);
+                }
+              }
+            });
+  }
+
+  /**
+   * Continues an attempt that has been given room in its lane, releasing
+   * the room on every path that doesn't send the request.
+   */
+  private <T> void admitAsync(
+      final String path,
+      final RequestBody requestBody,
+      final ResponseCreator<T> respCreator,
+      final CallLimits limits,
+      final int attempt,
+      final Lane lane,
+      Endpoint first,
+      final CompletableFuture<T> future) {
+    final Endpoint endpoint = first != null ? first : this.selectEndpoint(lane, path, null);
+    if (endpoint == null) {
+      lane.release();
+      ChainException exception = circuitOpen();
+      failed(limits.attempt(), exception);
+      retryAsync(path, requestBody, respCreator, limits, attempt, future, exception);
+      return;
+    }
+    final Request req;
+    try {
+      req = buildRequest(endpoint, path, requestBody);
+    } catch (BadURLException ex) {
+      lane.release();
+      endpoint.circuitBreaker().release();
+      future.completeExceptionally(ex);
+      return;
+    }
+
+    final ConcurrencyLimiter limiter = endpoint.concurrencyLimiter();
+    if (limiter == null) {
+      sendAsync(path, requestBody, respCreator, limits, attempt, lane, endpoint, req, future);
+      return;
+    }
+    limiter
+        .acquire(limits.priority)
+        .whenComplete(
+            new BiConsumer<Void, Throwable>() {
+              public void accept(Void v, Throwable err) {
+                if (err != null) {
+                  lane.release();
+                  endpoint.circuitBreaker().release();
+                  future.completeExceptionally(err);
+                } else if (future.isDone()) {
+                  // The caller gave up while the request was queued.
+                  lane.release();
+                  endpoint.circuitBreaker().release();
+                  limiter.release();
+                } else {
+                  sendAsync(
+                      path, requestBody, respCreator, limits, attempt, lane, endpoint, req, future);
+                }
+              }
+            });
+  }
+
+  private <T> void sendAsync(
+      final String path,
+      final RequestBody requestBody,
+      final ResponseCreator<T> respCreator,
+      final CallLimits limits,
+      final int attempt,
+      final Lane lane,
+      final Endpoint endpoint,
+      Request req,
+      final CompletableFuture<T> future) {
+    final RequestTiming.Attempt timed = limits.attempt();
+    if (timed != null) {
+      req = timed.tag(req);
+      timed.sent(endpoint.url());
+    }
+    long timeout = limits.attemptTimeoutNanos();
+    final long start = endpoint.start();
+    final FlightEvents.Span event = FlightEvents.begin(FlightEvents.Type.ATTEMPT);
+    Callback callback =
+        new Callback() {
+          public void onFailure(Request request, IOException ex) {
+            lane.release();
+            endAttempt(event, path, endpoint, attempt, null, ex);
+            fail(ex);
+          }
+
+          public void onResponse(Response response) {
+            Exception failure = null;
+            try {
+              if (future.isCancelled()) {
+                endpoint.abandon();
+                return;
+              }
+              if (timed != null) {
+                timed.received(response);
+              }
+              Response resp = checkError(decode(endpoint, response));
+              T result = create(respCreator, resp, timeBodies ? timed : null);
+              endpoint.finish(start, true);
+              future.complete(result);
+            } catch (IOException ex) {
+              failure = ex;
+              fail(ex);
+            } catch (ChainException ex) {
+              failure = ex;
+              fail(ex);
+            } catch (RuntimeException ex) {
+              failure = ex;
+              endpoint.finish(start, true);
+              future.completeExceptionally(ex);
+            } finally {
+              closeQuietly(response);
+              lane.release();
+              endAttempt(event, path, endpoint, attempt, response, failure);
+            }
+          }
+
+          private void fail(Exception ex) {
+            if (future.isCancelled()) {
+              // Our own cancellation says nothing about the endpoint, even
+              // if it interrupted reading the response.
+              endpoint.abandon();
+              return;
+            }
+            failed(timed, ex);
+            ChainException exception;
+            try {
+              exception = retriableException(ex, lane, endpoint, start);
+            } catch (ChainException fatal) {
+              future.completeExceptionally(fatal);
+              return;
+            }
+            retryAsync(path, requestBody, respCreator, limits, attempt, future, exception);
+          }
+        };
+    final Transport.Cancellable call =
+        timeout < 0
+            ? lane.transport().enqueue(req, callback)
+            : lane.transport().enqueue(req, timeout, callback);
+
+    // Cancelling the future abandons the attempt in flight.
+    future.whenComplete(
+        new BiConsumer<T, Throwable>() {
+          public void accept(T result, Throwable err) {
+            if (future.isCancelled()) {
+              call.cancel();
+            }
+          }
+        });
+  }
+
+  /**
+   * Schedules the next attempt of an asynchronous request after a failed
+   * one, or fails the request if it has no attempts left.
+   */
+  private <T> void retryAsync(
+      final String path,
+      final RequestBody requestBody,
+      final ResponseCreator<T> respCreator,
+      final CallLimits limits,
+      final int attempt,
+      final CompletableFuture<T> future,
+      ChainException exception) {
+    int delayMillis = retryDelayMillis(attempt);
+    if (attempt - 1 >= limits.maxRetries || !limits.hasTimeAfter(delayMillis)) {
+      future.completeExceptionally(exception);
+      return;
+    }
+
+    // The wait before the next attempt mirrors the blocking
+    // path, but doesn't park any thread while it elapses.
+    final AtomicBoolean retried = new AtomicBoolean();
+    final FlightEvents.Span backoff = FlightEvents.begin(FlightEvents.Type.BACKOFF);
+    Runnable retry =
+        new Runnable() {
+          public void run() {
+            if (retried.compareAndSet(false, true)) {
+              endBackoff(backoff, path, attempt + 1, delayMillis);
+              attemptAsync(path, requestBody, respCreator, limits, attempt + 1, null, future);
+            }
+          }
+        };
+    timer().schedule(retry, delayMillis, TimeUnit.MILLISECONDS);
+
+    // Failover probing may find a healthy URL before the wait is over.
+    CompletableFuture<Void> recovery = this.failover != null ? this.failover.recovery() : null;
+    if (recovery != null) {
+      recovery.thenRun(retry);
+    }
+  }
+
+  /**
+   * Waits before retrying a request, returning early if failover probing
+   * finds a healthy URL in the meantime.
+   */
+  private void waitToRetry(long delayMillis) throws InterruptedException {
+    CompletableFuture<Void> recovery = this.failover != null ? this.failover.recovery() : null;
+    if (recovery == null) {
+      TimeUnit.MILLISECONDS.sleep(delayMillis);
+      return;
+    }
+    try {
+      recovery.get(delayMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException | TimeoutException ex) {
+      // The wait is over either way.
+    }
+  }
+
+  /**
+   * Deserializes a response. If the attempt is being timed, the body is
+   * read in full before it is deserialized, so that reading and decoding
+   * can be timed separately.
+   */
+  private static <T> T create(
+      ResponseCreator<T> respCreator, Response resp, RequestTiming.Attempt timed)
+      throws ChainException, IOException {
+    if (timed == null) {
+      return respCreator.create(resp, Utils.serializer);
+    }
+    long start = System.nanoTime();
+    resp.body().source().request(Long.MAX_VALUE);
+    long read = System.nanoTime();
+    timed.bodyRead(read - start);
+    T result = respCreator.create(resp, Utils.serializer);
+    timed.decoded(System.nanoTime() - read);
+    return result;
+  }
+
+  /**
+   * Commits the flight recorder event of an attempt, if it is recorded.
+   */
+  private static void endAttempt(
+      FlightEvents.Span event,
+      String path,
+      Endpoint endpoint,
+      int attempt,
+      Response response,
+      Exception failure) {
+    if (!event.recording()) {
+      return;
+    }
+    event.set("action", path).set("url", endpoint.url().toString()).set("attempt", attempt);
+    if (response != null) {
+      event.set("statusCode", response.code());
+      event.set("requestId", response.header("Chain-Request-ID"));
+    }
+    if (failure != null) {
+      event.set("failure", failure.toString());
+    }
+    event.end();
+  }
+
+  /**
+   * Commits the flight recorder event of a wait before a retry, if it is
+   * recorded.
+   */
+  private static void endBackoff(
+      FlightEvents.Span event, String path, int attempt, long delayMillis) {
+    if (event.recording()) {
+      event.set("action", path).set("attempt", attempt).set("delayMillis", delayMillis).end();
+    }
+  }
+
+  private static void failed(RequestTiming.Attempt timed, Exception ex) {
+    if (timed != null) {
+      timed.failed(ex);
+    }
+  }
+
+  /**
+   * Reports a finished call to the request listener.
+   */
+  private void report(RequestTiming timing, boolean succeeded) {
+    timing.finish(succeeded);
+    try {
+      this.requestListener.onComplete(timing);
+    } catch (RuntimeException ex) {
+      // A failing listener mustn't fail the call it is told about.
+    }
+  }
+
+  /**
+   * Records that failover probing found an endpoint healthy: its URL's
+   * circuit breakers are closed in every lane, and the selector is told.
+   */
+  void recovered(Endpoint endpoint) {
+    for (Lane lane : this.lanes.values()) {
+      lane.endpoints().get(endpoint.position()).circuitBreaker().onSuccess();
+    }
+    this.selector.onRecovery(this.defaultLane.endpoints(), endpoint);
+    if (this.readSelector != null) {
+      this.readSelector.onRecovery(this.defaultLane.endpoints(), endpoint);
+    }
+  }
+
+  /**
+   * Returns a request body for the given object. A body no larger than the
+   * compression threshold is serialized now, on the caller's thread, so
+   * that it is sent with its length and as the object was when the call
+   * was made. Larger bodies are serialized as each attempt is sent.
+   */
+  JsonRequestBody jsonBody(Object body) {
+    JsonRequestBody requestBody = new JsonRequestBody(body);
+    requestBody.largerThan(this.gzipThreshold >= 0 ? this.gzipThreshold : SMALL_BODY_BYTES);
+    return requestBody;
+  }
+
+  /**
+   * Builds the HTTP request for a single attempt against the given endpoint.
+   */
+  Request buildRequest(Endpoint endpoint, String path, RequestBody requestBody)
+      throws BadURLException {
+    Request.Builder builder =
+        new Request.Builder()
+            .header("User-Agent", BuildInfo.USER_AGENT)
+            .header("Accept-Encoding", "gzip")
+            .url(endpoint.actionURL(path));
+    if (this.authorization != null) {
+      builder = builder.header("Authorization", this.authorization);
+    }
+
+    // Only compress bodies for endpoints that have said they can decode them.
+    if (this.gzipThreshold >= 0
+        && endpoint.acceptsGzip()
+        && requestBody instanceof JsonRequestBody
+        && ((JsonRequestBody) requestBody).largerThan(this.gzipThreshold)) {
+      requestBody = new GzipRequestBody(requestBody, this.compressionStats);
+      builder = builder.header("Content-Encoding", "gzip");
+    }
+    return builder.method("POST", requestBody).build();
+  }
+
+  /**
+   * Notes whether the endpoint accepts compressed requests, and decompresses
+   * the response body if it is compressed. The client asks for compressed
+   * responses itself, rather than leaving it to the transport, so that it
+   * can measure them.
+   */
+  private Response decode(Endpoint endpoint, Response response) throws IOException {
+    String accepts = response.header("Accept-Encoding");
+    if (accepts != null && accepts.contains("gzip")) {
+      endpoint.setAcceptsGzip();
+    }
+    if (!"gzip".equalsIgnoreCase(response.header("Content-Encoding"))) {
+      return response;
+    }
+
+    ResponseBody body = response.body();
+    return response
+        .newBuilder()
+        .removeHeader("Content-Encoding")
+        .removeHeader("Content-Length")
+        .body(
+            ResponseBody.create(
+                body.contentType(),
+                -1,
+                Okio.buffer(this.compressionStats.gunzip(body.source()))))
+        .build();
+  }
+
+  /**
+   * Classifies the failure of an attempt against the given endpoint of a
+   * lane, which started at the given time. Returns the exception to report
+   * if no further attempts succeed, or throws the failure if it should not
+   * be retried at all.
+   */
+  private ChainException retriableException(
+      Exception ex, Lane lane, Endpoint endpoint, long start) throws ChainException {
+    if (ex instanceof JsonRequestBody.SerializationException) {
+      endpoint.abandon();
+      throw new JSONException("Unable to serialize request body. " + ex.getMessage());
+    } else if (ex instanceof IOException) {
+      // This URL's process might be unhealthy; move to the next. A timeout
+      // suggests it is overloaded.
+      this.endpointFailed(lane, endpoint, start, ex instanceof SocketTimeoutException, true);
+
+      // The OkHttp library already performs retries for some
+      // I/O-related errors, but we've hit this case in a leader
+      // failover, so do our own retries too.
+      return new HTTPException(ex.getMessage());
+    } else if (ex instanceof ConnectivityException) {
+      // This URL's process might be unhealthy; move to the next.
+      this.endpointFailed(lane, endpoint, start, false, true);
+
+      // ConnectivityExceptions are always retriable.
+      return (ConnectivityException) ex;
+    } else if (ex instanceof APIException) {
+      APIException apiEx = (APIException) ex;
+
+      // Check if this error is retriable (either it's a status code that's
+      // always retriable or the error is explicitly marked as temporary.
+      if (!isRetriableStatusCode(apiEx.statusCode) && !apiEx.temporary) {
+        // The endpoint answered; the request itself was at fault.
+        endpoint.finish(start, true);
+        throw apiEx;
+      }
+
+      // This URL's process might be unhealthy; move to the next. A 429 or
+      // 503 means it is overloaded.
+      this.endpointFailed(
+          lane, endpoint, start, apiEx.statusCode == 429 || apiEx.statusCode == 503, false);
+      return apiEx;
+    }
+    endpoint.finish(start, true);
+    throw (ChainException) ex;
+  }
+
+  /**
+   * Returns the JDK HTTP client transport for the builder's settings,
+   * shared with other clients in the registry that have the same settings.
+   * It is only present in the Java 11 version of the SDK's multi-release
+   * jar, so it's loaded by name.
+   */
+  private static Transport buildJdkHttpTransport(
+      Builder builder, TransportRegistry registry, final SSLContext sslContext) {
+    if (builder.cp != null || builder.logger != null) {
+      throw new UnsupportedOperationException(
+          "certificate pinning and request logging require the OkHttp transport");
+    }
+    final long connectTimeoutMillis = builder.connectTimeoutUnit.toMillis(builder.connectTimeout);
+    final long readTimeoutMillis = builder.readTimeoutUnit.toMillis(builder.readTimeout);
+    final Proxy proxy = builder.proxy;
+    final boolean virtualThreads = builder.virtualThreads;
+    return registry.transport(
+        Arrays.<Object>asList(
+            "http2", connectTimeoutMillis, readTimeoutMillis, sslContext, proxy, virtualThreads),
+        new Callable<Transport>() {
+          public Transport call() {
+            Executor executor = virtualThreads ? VirtualThreads.newExecutor() : null;
+            try {
+              Class<?> c = Class.forName("com.chain.http.JdkHttpTransport");
+              return (Transport)
+                  c.getDeclaredConstructor(
+                          long.class, long.class, SSLContext.class, Proxy.class, Executor.class)
+                      .newInstance(
+                          connectTimeoutMillis, readTimeoutMillis, sslContext, proxy, executor);
+            } catch (ClassNotFoundException ex) {
+              throw new UnsupportedOperationException(
+                  "the HTTP/2 transport requires Java 11 or later");
+            } catch (InvocationTargetException ex) {
+              if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+              }
+              throw new RuntimeException("unable to create the HTTP/2 transport", ex);
+            } catch (ReflectiveOperationException ex) {
+              throw new RuntimeException("unable to create the HTTP/2 transport", ex);
+            }
+          }
+        });
+  }
 
-        // This URL's process might be unhealthy; move to the next.
-        this.nextURL(idx);
-        exception = ex;
+  /**
+   * Creates a lane's endpoints, one for each of the client's URLs.
+   */
+  private List<Endpoint> buildEndpoints(Builder builder, String lane) {
+    List<Endpoint> endpoints = new ArrayList<>(this.urls.size());
+    for (int i = 0; i < this.urls.size(); i++) {
+      endpoints.add(
+          new Endpoint(
+              this.urls.get(i),
+              i,
+              builder.breakerThreshold,
+              builder.breakerOpenUnit.toNanos(builder.breakerOpen),
+              builder.breakerListener));
+      // A long-poll's latency is the wait it asked for, not a sign of the
+      // core's load, so long-polls are bounded only by their lane's limit.
+      if (builder.maxConcurrency > 0 && !Lane.LONG_POLL.equals(lane)) {
+        endpoints
+            .get(i)
+            .limitConcurrency(
+                builder.initialConcurrency,
+                builder.maxConcurrency,
+                builder.concurrencyQueueTimeoutUnit.toNanos(builder.concurrencyQueueTimeout));
       }
     }
-    throw exception;
+    return Collections.unmodifiableList(endpoints);
   }
 
-  private OkHttpClient buildHttpClient(Builder builder) {
+  /**
+   * Creates the OkHttp client for one of the client's lanes. Each client
+   * has OkHttp clients of its own, so that their settings can be changed
+   * independently, but their connection pools and dispatchers come from
+   * the registry.
+   */
+  private OkHttpClient buildHttpClient(
+      Builder builder, String lane, TransportRegistry registry, SSLContext sslContext) {
     OkHttpClient httpClient = new OkHttpClient();
 
-    if (builder.sslSocketFactory != null) {
-      httpClient.setSslSocketFactory(builder.sslSocketFactory);
+    if (sslContext != null) {
+      httpClient.setSslSocketFactory(registry.socketFactory(sslContext));
     }
 
     httpClient.setFollowRedirects(false);
@@ -390,7 +1662,17 @@ public class Client {
     httpClient.setWriteTimeout(builder.writeTimeout, builder.writeTimeoutUnit);
     httpClient.setConnectTimeout(builder.connectTimeout, builder.connectTimeoutUnit);
 
-    httpClient.setConnectionPool(builder.pool);
+    httpClient.setConnectionPool(
+        registry.connectionPool(lane, builder.poolMaxIdle, builder.poolKeepAliveMillis));
+
+    // Asynchronous requests are bounded by the dispatcher rather than by
+    // the caller's threads, so size it to match the connection pool.
+    httpClient.setDispatcher(
+        registry.dispatcher(
+            lane,
+            builder.maxAsyncRequests,
+            builder.maxAsyncRequestsPerHost,
+            builder.virtualThreads));
 
     if (builder.proxy != null) {
       httpClient.setProxy(builder.proxy);
@@ -398,17 +1680,151 @@ public class Client {
     if (builder.cp != null) {
       httpClient.setCertificatePinner(builder.cp);
     }
+    if (builder.requestListener != null) {
+      httpClient.interceptors().add(TimingInterceptor.APPLICATION);
+      httpClient.networkInterceptors().add(TimingInterceptor.NETWORK);
+    }
     if (builder.logger != null) {
-      httpClient.interceptors().add(new LoggingInterceptor(builder.logger, builder.logLevel));
+      httpClient
+          .interceptors()
+          .add(
+              new LoggingInterceptor(
+                  builder.logger,
+                  builder.logLevel,
+                  builder.logBodyLimit,
+                  builder.logRequestSampleRate,
+                  builder.logErrorSampleRate,
+                  builder.slowRequestLogUnit.toNanos(builder.slowRequestLog),
+                  this.logWriter,
+                  this.logStats));
     }
 
     return httpClient;
   }
 
+  /**
+   * Lazily starts the timer shared by all clients for scheduling the wait
+   * between asynchronous retries and other deferred work.
+   */
+  private static class SharedTimer {
+    static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+              public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "chain-sdk-timer");
+                t.setDaemon(true);
+                return t;
+              }
+            });
+  }
+
+  static ScheduledExecutorService timer() {
+    return SharedTimer.INSTANCE;
+  }
+
+  /**
+   * Lazily reads the SDK's version from the properties.json bundled with it,
+   * when the first request is sent rather than when Client is loaded. The
+   * file is read with Gson's streaming reader, so that loading it neither
+   * builds the shared serializer nor needs reflection.
+   */
+  private static class BuildInfo {
+    static final String USER_AGENT = "chain-sdk-java/" + readVersion();
+
+    private static String readVersion() {
+      InputStream in = Client.class.getClassLoader().getResourceAsStream("properties.json");
+      if (in == null) {
+        return "dev";
+      }
+      try (JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"))) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          if (reader.nextName().equals("version")) {
+            return reader.nextString();
+          }
+          reader.skipValue();
+        }
+      } catch (IOException | IllegalStateException ex) {
+        // Fall through to the development version.
+      }
+      return "dev";
+    }
+  }
+
+  /**
+   * CallLimits holds the retry policy and deadline of one call, resolved
+   * from its RequestOptions when it starts.
+   */
+  private static class CallLimits {
+    private static final CallLimits DEFAULT = new CallLimits(null, null);
+
+    final int maxRetries;
+    final RequestOptions.Priority priority;
+    final String lane;
+    final RequestTiming timing; // null unless the client has a request listener
+    private final long attemptTimeoutNanos;
+    private final long deadlineNanos;
+
+    private CallLimits(RequestOptions options, RequestTiming timing) {
+      this.timing = timing;
+      if (options == null) {
+        this.maxRetries = MAX_RETRIES;
+        this.priority = RequestOptions.Priority.NORMAL;
+        this.lane = null;
+        this.attemptTimeoutNanos = -1;
+        this.deadlineNanos = 0;
+        return;
+      }
+      this.maxRetries = options.maxRetries() >= 0 ? options.maxRetries() : MAX_RETRIES;
+      this.priority = options.priority();
+      this.lane = options.lane();
+      this.attemptTimeoutNanos = options.attemptTimeoutNanos();
+      this.deadlineNanos =
+          options.deadlineNanos() > 0 ? System.nanoTime() + options.deadlineNanos() : 0;
+    }
+
+    static CallLimits of(RequestOptions options, RequestTiming timing) {
+      return options == null && timing == null ? DEFAULT : new CallLimits(options, timing);
+    }
+
+    /**
+     * Returns the timing of the attempt in progress, or null if the call
+     * isn't being timed.
+     */
+    RequestTiming.Attempt attempt() {
+      return timing != null ? timing.current() : null;
+    }
+
+    /**
+     * Returns whether there is time for another attempt after waiting the
+     * given delay.
+     */
+    boolean hasTimeAfter(long delayMillis) {
+      return deadlineNanos == 0
+          || deadlineNanos - System.nanoTime() > TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    }
+
+    /**
+     * Returns the timeout for the next attempt: -1 to use the transport's
+     * own timeouts, 0 for none, or a number of nanoseconds.
+     */
+    long attemptTimeoutNanos() {
+      if (deadlineNanos == 0) {
+        return attemptTimeoutNanos;
+      }
+      long remaining = Math.max(1, deadlineNanos - System.nanoTime());
+      return attemptTimeoutNanos > 0 ? Math.min(attemptTimeoutNanos, remaining) : remaining;
+    }
+  }
+
   private static final Random randomGenerator = new Random();
   private static final int MAX_RETRIES = 10;
   private static final int RETRY_BASE_DELAY_MILLIS = 40;
 
+  // The size up to which request bodies are serialized before they're sent
+  // by clients that never compress requests.
+  private static final int SMALL_BODY_BYTES = 4096;
+
   // the max amount of time cored leader election could take
   private static final int RETRY_MAX_DELAY_MILLIS = 15000;
 
@@ -466,15 +1882,172 @@ public class Client {
     return response;
   }
 
-  private void nextURL(int failedIndex) {
-    if (this.urls.size() == 1) {
-      return; // No point contending on the CAS if there's only one URL.
+  /**
+   * Returns whether an action is routed as a read. Unless overridden with
+   * {@link Builder#setReadAction(String, boolean)}, the list actions and
+   * get-transaction-feed are reads, and every other action is a write.
+   */
+  boolean isRead(String action) {
+    Boolean read = this.readActions.get(action);
+    if (read != null) {
+      return read;
+    }
+    return action.startsWith("list-") || action.equals("get-transaction-feed");
+  }
+
+  /**
+   * Returns the selector that routes requests for an action.
+   */
+  private EndpointSelector selector(String action) {
+    if (this.readSelector != null && isRead(action)) {
+      return this.readSelector;
+    }
+    return this.selector;
+  }
+
+  /**
+   * Chooses an endpoint of the default lane.
+   * @see #selectEndpoint(Lane, String, Endpoint)
+   */
+  Endpoint selectEndpoint(String action, Endpoint avoid) {
+    return selectEndpoint(this.defaultLane, action, avoid);
+  }
+
+  /**
+   * Chooses one of a lane's endpoints with the action's selector, passing
+   * over endpoints whose circuit breakers are open, and passing over avoid
+   * if there is any other endpoint to choose. If the chosen endpoint's
+   * breaker is ready to be probed, the caller's request becomes the probe,
+   * and the caller must either send it or abandon it.
+   * @return an endpoint, or null if every endpoint's breaker is open
+   */
+  private Endpoint selectEndpoint(Lane lane, String action, Endpoint avoid) {
+    EndpointSelector selector = selector(action);
+    List<Endpoint> candidates = lane.endpoints();
+    for (int i = 0; i < lane.endpoints().size(); i++) {
+      Endpoint e = selectAvailable(selector, candidates, avoid);
+      if (e == null || e.circuitBreaker().tryAcquire()) {
+        return e;
+      }
+
+      // Another request took the probe first; choose again without it.
+      candidates = new ArrayList<>(candidates);
+      candidates.remove(e);
+    }
+    return null;
+  }
+
+  private static Endpoint selectAvailable(
+      EndpointSelector selector, List<Endpoint> candidates, Endpoint avoid) {
+    boolean allAvailable = true;
+    for (int i = 0; i < candidates.size(); i++) {
+      if (!candidates.get(i).circuitBreaker().isAvailable()) {
+        allAvailable = false;
+        break;
+      }
+    }
+    if (allAvailable && avoid == null) {
+      return selector.select(candidates);
+    }
+
+    List<Endpoint> available = new ArrayList<>(candidates.size());
+    for (int i = 0; i < candidates.size(); i++) {
+      Endpoint e = candidates.get(i);
+      if (e.circuitBreaker().isAvailable()) {
+        available.add(e);
+      }
+    }
+    if (available.size() > 1) {
+      available.remove(avoid);
+    }
+    return available.isEmpty() ? null : selector.select(available);
+  }
+
+  /**
+   * Returns the lane a call is sent in.
+   * @throws IllegalArgumentException if the client has no such lane
+   */
+  private Lane lane(CallLimits limits) {
+    if (limits.lane == null) {
+      return this.defaultLane;
+    }
+    Lane lane = this.lanes.get(limits.lane);
+    if (lane == null) {
+      throw new IllegalArgumentException("no lane named " + limits.lane);
+    }
+    return lane;
+  }
+
+  /**
+   * Waits for room to send a request in its lane.
+   * @throws OverloadException if no room is made in time
+   */
+  private void awaitLane(Lane lane, CallLimits limits) throws OverloadException {
+    try {
+      lane.acquire(this.laneTimeoutNanos(limits)).join();
+    } catch (CompletionException ex) {
+      throw (OverloadException) ex.getCause();
+    }
+  }
+
+  /**
+   * Returns how long a request may wait for room in its lane: no longer
+   * than one of its attempts may take, which is the client's read timeout
+   * unless the call sets its own, or without bound if there is none.
+   */
+  private long laneTimeoutNanos(CallLimits limits) {
+    long timeout = limits.attemptTimeoutNanos();
+    return timeout > 0 ? timeout : builder.readTimeoutUnit.toNanos(builder.readTimeout);
+  }
+
+  /**
+   * Waits for room to send a request to the endpoint under its concurrency
+   * limit, if it has one.
+   * @throws OverloadException if the request is shed
+   */
+  private static void awaitPermit(Endpoint endpoint, RequestOptions.Priority priority)
+      throws OverloadException {
+    ConcurrencyLimiter limiter = endpoint.concurrencyLimiter();
+    if (limiter == null) {
+      return;
+    }
+    try {
+      // The wait is bounded by the limiter's queue timeout.
+      limiter.acquire(priority).join();
+    } catch (CompletionException ex) {
+      endpoint.circuitBreaker().release();
+      throw (OverloadException) ex.getCause();
+    }
+  }
+
+  private static void closeQuietly(Response response) {
+    if (response != null) {
+      try {
+        response.body().close();
+      } catch (IOException ex) {
+      }
     }
+  }
+
+  private static CircuitOpenException circuitOpen() {
+    return new CircuitOpenException("all URLs are failing; their circuit breakers are open");
+  }
 
-    // A request to the url at failedIndex just failed. Move to the next
-    // URL in the list.
-    int nextIndex = failedIndex + 1;
-    this.urlIndex.compareAndSet(failedIndex, nextIndex);
+  /**
+   * Records a failed attempt against an endpoint. Failover probing is
+   * started only if the endpoint couldn't be reached or didn't answer in
+   * time; one that answered, even with an error, is still up.
+   */
+  private void endpointFailed(
+      Lane lane, Endpoint endpoint, long start, boolean congested, boolean unreachable) {
+    endpoint.finish(start, false, congested);
+    this.selector.onFailure(lane.endpoints(), endpoint);
+    if (this.readSelector != null) {
+      this.readSelector.onFailure(lane.endpoints(), endpoint);
+    }
+    if (unreachable && this.failover != null) {
+      this.failover.start();
+    }
   }
 
   private String buildCredentials() {
@@ -525,11 +2098,11 @@ public class Client {
   /**
    * A builder class for creating client objects
    */
-  public static class Builder {
+  public static class Builder implements Cloneable {
     private List<URL> urls;
     private String accessToken;
     private CertificatePinner cp;
-    private SSLSocketFactory sslSocketFactory;
+    private List<Certificate> trustedCerts;
     private long connectTimeout;
     private TimeUnit connectTimeoutUnit;
     private long readTimeout;
@@ -537,9 +2110,51 @@ public class Client {
     private long writeTimeout;
     private TimeUnit writeTimeoutUnit;
     private Proxy proxy;
-    private ConnectionPool pool;
+    private int poolMaxIdle;
+    private long poolKeepAliveMillis;
     private OutputStream logger;
     private LoggingInterceptor.Level logLevel = LoggingInterceptor.Level.ERRORS;
+    private int asyncLogCapacity;
+    private RequestListener requestListener;
+    private MetricRegistry metricRegistry;
+    private int logBodyLimit;
+    private double logRequestSampleRate = 1;
+    private double logErrorSampleRate = 1;
+    private long slowRequestLog;
+    private TimeUnit slowRequestLogUnit = TimeUnit.NANOSECONDS;
+    private int maxAsyncRequests;
+    private int maxAsyncRequestsPerHost;
+    private long autoBatchWindow;
+    private TimeUnit autoBatchWindowUnit;
+    private int autoBatchMaxSize;
+    private double hedgePercentile;
+    private double hedgeRatio;
+    private EndpointSelector selector;
+    private EndpointSelector readSelector;
+    private Map<String, Boolean> readActions = new HashMap<>();
+    private SSLContext sslContext;
+    private Transport transport;
+    private boolean http2;
+    private boolean virtualThreads;
+    private int gzipThreshold;
+    private int breakerThreshold;
+    private long breakerOpen;
+    private TimeUnit breakerOpenUnit;
+    private CircuitBreaker.Listener breakerListener;
+    private int initialConcurrency;
+    private int maxConcurrency;
+    private long concurrencyQueueTimeout;
+    private TimeUnit concurrencyQueueTimeoutUnit;
+    private Map<String, Integer> lanes = new LinkedHashMap<>();
+    private TransportRegistry registry;
+    private Set<String> singleFlightActions = new HashSet<>();
+    private String failoverAction;
+    private long failoverInterval;
+    private TimeUnit failoverIntervalUnit;
+    private String prewarmAction;
+    private int prewarmConnections;
+    private long prewarmInterval;
+    private TimeUnit prewarmIntervalUnit;
 
     public Builder() {
       this.urls = new ArrayList<URL>();
@@ -551,6 +2166,59 @@ public class Client {
       this.setWriteTimeout(30, TimeUnit.SECONDS);
       this.setConnectTimeout(30, TimeUnit.SECONDS);
       this.setConnectionPool(50, 2, TimeUnit.MINUTES);
+      this.setMaxAsyncRequests(200, 50);
+      this.setGzipThreshold(4096);
+      this.setCircuitBreaker(0, 5, TimeUnit.SECONDS);
+      this.setLane(Lane.DEFAULT, 0);
+      this.setLane(Lane.LONG_POLL, 0);
+      this.setTransportRegistry(TransportRegistry.shared());
+    }
+
+    /**
+     * Returns a copy of this builder, which can be changed without
+     * affecting it.
+     */
+    private Builder copy() {
+      try {
+        Builder b = (Builder) super.clone();
+        b.urls = new ArrayList<>(this.urls);
+        b.lanes = new LinkedHashMap<>(this.lanes);
+        b.singleFlightActions = new HashSet<>(this.singleFlightActions);
+        b.readActions = new HashMap<>(this.readActions);
+        return b;
+      } catch (CloneNotSupportedException ex) {
+        throw new AssertionError(ex);
+      }
+    }
+
+    /**
+     * Returns a new builder with this builder's URLs and its transport,
+     * TLS and authentication settings, and defaults for everything else.
+     */
+    private Builder connectionSettings() {
+      Builder b = new Builder();
+      b.urls = new ArrayList<>(this.urls);
+      b.accessToken = this.accessToken;
+      b.cp = this.cp;
+      b.trustedCerts = this.trustedCerts;
+      b.sslContext = this.sslContext;
+      b.connectTimeout = this.connectTimeout;
+      b.connectTimeoutUnit = this.connectTimeoutUnit;
+      b.readTimeout = this.readTimeout;
+      b.readTimeoutUnit = this.readTimeoutUnit;
+      b.writeTimeout = this.writeTimeout;
+      b.writeTimeoutUnit = this.writeTimeoutUnit;
+      b.proxy = this.proxy;
+      b.poolMaxIdle = this.poolMaxIdle;
+      b.poolKeepAliveMillis = this.poolKeepAliveMillis;
+      b.maxAsyncRequests = this.maxAsyncRequests;
+      b.maxAsyncRequestsPerHost = this.maxAsyncRequestsPerHost;
+      b.transport = this.transport;
+      b.http2 = this.http2;
+      b.virtualThreads = this.virtualThreads;
+      b.gzipThreshold = this.gzipThreshold;
+      b.registry = this.registry;
+      return b;
     }
 
     /**
@@ -653,7 +2321,8 @@ public class Client {
         // Finally, configure the socket factory.
         SSLContext sslContext = SSLContext.getInstance("TLS");
         sslContext.init(null, trustManagers, null);
-        sslSocketFactory = sslContext.getSocketFactory();
+        this.sslContext = sslContext;
+        this.trustedCerts = new ArrayList<>(certificates);
         return this;
       } catch (GeneralSecurityException | IOException ex) {
         throw new HTTPException("Unable to configure trusted CA certs", ex);
@@ -713,13 +2382,348 @@ public class Client {
     }
 
     /**
-     * Sets the connection pool for the client
+     * Sets the connection pool for the client. Each of the client's lanes
+     * has a pool of its own with these settings, which it shares with the
+     * same lane of other clients in its {@link TransportRegistry}.
      * @param maxIdle the maximum number of idle http connections in the pool
      * @param timeout the number of time units until an idle http connection in the pool is closed
      * @param unit the unit of time
      */
     public Builder setConnectionPool(int maxIdle, long timeout, TimeUnit unit) {
-      this.pool = new ConnectionPool(maxIdle, unit.toMillis(timeout));
+      this.poolMaxIdle = maxIdle;
+      this.poolKeepAliveMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous requests the client will have
+     * in flight at once in each lane. Further asynchronous requests are
+     * queued in memory until an in-flight request completes. The limits are
+     * shared by the clients in a {@link TransportRegistry} that have the
+     * same limits.
+     * @param maxRequests the maximum number of in-flight requests overall
+     * @param maxRequestsPerHost the maximum number of in-flight requests to each host
+     */
+    public Builder setMaxAsyncRequests(int maxRequests, int maxRequestsPerHost) {
+      this.maxAsyncRequests = maxRequests;
+      this.maxAsyncRequestsPerHost = maxRequestsPerHost;
+      return this;
+    }
+
+    /**
+     * Enables auto-batching of singleton calls to batch endpoints, such as
+     * {@code Transaction.Builder#build}, {@code Transaction#submit} and the
+     * create methods of the account, asset and receiver builders. Concurrent
+     * calls for the same action made within the window are sent as one batch
+     * request, and each caller receives its own entry of the response.
+     * Auto-batching is disabled by default.
+     * @param window how long to wait for more calls after the first call of a batch
+     * @param unit the unit of time
+     * @param maxBatchSize the batch size at which a batch is sent without waiting
+     *     for the window to elapse
+     */
+    public Builder setAutoBatching(long window, TimeUnit unit, int maxBatchSize) {
+      this.autoBatchWindow = window;
+      this.autoBatchWindowUnit = unit;
+      this.autoBatchMaxSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Enables failover probing. When one of the client's URLs can't be
+     * reached or times out, such as during a core leader election, the
+     * client probes all of its URLs at once with the given action, repeating
+     * at the given interval. The first URL to answer successfully becomes
+     * the one the client uses, and every request waiting to retry is
+     * retried at once, rather than after its usual backoff. Probing stops
+     * once a URL answers, or after 30 seconds. Probing is disabled by
+     * default.
+     * @param action a cheap read-only action, such as "info"
+     * @param interval how often each URL is probed
+     * @param unit the unit of time
+     */
+    public Builder setFailoverProbe(String action, long interval, TimeUnit unit) {
+      if (interval <= 0) {
+        throw new IllegalArgumentException("interval must be positive");
+      }
+      this.failoverAction = action;
+      this.failoverInterval = interval;
+      this.failoverIntervalUnit = unit;
+      return this;
+    }
+
+    /**
+     * Enables connection prewarming. As soon as the client is built, it
+     * opens the given number of connections to each of its URLs, including
+     * their TLS handshakes, by sending that many requests for the given
+     * action at once. It repeats them at the given interval to keep the
+     * connections from being closed as idle, so the interval should be
+     * shorter than the connection pool's idle timeout. Prewarming runs in
+     * the background; {@link Client#prewarmed()} completes once every URL
+     * has been warmed. The connections are opened in the default lane, and
+     * their number may not exceed the connection pool's idle limit or the
+     * asynchronous request limit per host. Prewarming is disabled by
+     * default.
+     * @param action a cheap read-only action, such as "info"
+     * @param connections the number of connections to open to each URL
+     * @param interval how often the connections are refreshed
+     * @param unit the unit of time
+     */
+    public Builder setPrewarming(String action, int connections, long interval, TimeUnit unit) {
+      if (connections <= 0) {
+        throw new IllegalArgumentException("connections must be positive");
+      }
+      if (interval <= 0) {
+        throw new IllegalArgumentException("interval must be positive");
+      }
+      this.prewarmAction = action;
+      this.prewarmConnections = connections;
+      this.prewarmInterval = interval;
+      this.prewarmIntervalUnit = unit;
+      return this;
+    }
+
+    /**
+     * Collapses identical concurrent reads of the given actions, such as
+     * list-assets or list-balances, into a single request. A call made while
+     * a call with the same action and request body is in flight shares its
+     * response, rather than sending a request of its own, though each call
+     * deserializes its own copy of the result. Calls made with
+     * {@link RequestOptions} are always sent on their own.
+     * <br>
+     * A call may receive the response to a request sent shortly before it
+     * was made, so only actions whose callers don't need to observe their
+     * own recent writes should be collapsed. No actions are collapsed by
+     * default.
+     * @param actions the actions to collapse
+     * @see Client#singleFlightStats()
+     */
+    public Builder setSingleFlight(String... actions) {
+      this.singleFlightActions = new HashSet<>(Arrays.asList(actions));
+      return this;
+    }
+
+    /**
+     * Enables hedging of read-only requests, such as the list queries. If a
+     * hedged request has not received a response after the given percentile
+     * of the recent latencies of its action, a duplicate is sent to another
+     * URL, and whichever response arrives first is used. The slower request
+     * is then cancelled.
+     * <br>
+     * Hedges are limited to the given ratio of requests, which must be at
+     * most 1, so hedging can never more than double the load on the cores.
+     * Hedging has no effect on a client with a single URL.
+     * @param percentile the latency percentile to wait for, e.g. 0.95
+     * @param maxHedgeRatio the maximum number of hedges per request, e.g. 0.1
+     */
+    public Builder setHedging(double percentile, double maxHedgeRatio) {
+      if (percentile <= 0 || percentile >= 1) {
+        throw new IllegalArgumentException("hedging percentile must be between 0 and 1");
+      }
+      if (maxHedgeRatio <= 0 || maxHedgeRatio > 1) {
+        throw new IllegalArgumentException("hedge ratio must be greater than 0 and at most 1");
+      }
+      this.hedgePercentile = percentile;
+      this.hedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    /**
+     * Sets the strategy used to choose which of the client's URLs each
+     * request is sent to. By default, the client sends every request to the
+     * same URL and moves to the next one only after a failure.
+     * @param selector the endpoint selector
+     * @see EndpointSelector.EwmaLatency
+     * @see EndpointSelector.LeastOutstanding
+     */
+    public Builder setEndpointSelector(EndpointSelector selector) {
+      this.selector = selector;
+      return this;
+    }
+
+    /**
+     * Routes reads separately from writes. Reads, such as list-assets, are
+     * sent to the URL chosen by the given selector, so that they can be
+     * spread across every URL, followers included. Writes, such as
+     * build-transaction or submit-transaction, continue to use the selector
+     * set with {@link #setEndpointSelector(EndpointSelector)}, which by
+     * default sticks to the URL that last succeeded.
+     * <br>
+     * A follower may lag behind the leader, so a read may not observe a
+     * write made just before it. Reads and writes share one selector by
+     * default.
+     * @param selector the endpoint selector for reads, such as
+     *   {@link EndpointSelector.LeastOutstanding}
+     * @see #setReadAction(String, boolean)
+     */
+    public Builder setReadSelector(EndpointSelector selector) {
+      this.readSelector = selector;
+      return this;
+    }
+
+    /**
+     * Overrides whether an action is routed as a read or as a write. By
+     * default, the list actions and get-transaction-feed are reads, and
+     * every other action is a write.
+     * @param action the action, such as list-balances
+     * @param read true to route the action as a read, false to route it as a write
+     * @see #setReadSelector(EndpointSelector)
+     */
+    public Builder setReadAction(String action, boolean read) {
+      this.readActions.put(action, read);
+      return this;
+    }
+
+    /**
+     * Configures the circuit breaker of each of the client's URLs. A URL's
+     * breaker opens after the given number of consecutive failures, and
+     * the URL is passed over until the breaker has been open for the given
+     * duration. Then a single request is sent to the URL as a probe, and
+     * the breaker closes again if it succeeds. The breakers are disabled by
+     * default.
+     * @param failureThreshold the number of consecutive failures, or 0 to disable the breakers
+     * @param openDuration how long a breaker stays open before it is probed
+     * @param unit the unit of time
+     */
+    public Builder setCircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+      this.breakerThreshold = failureThreshold;
+      this.breakerOpen = openDuration;
+      this.breakerOpenUnit = unit;
+      return this;
+    }
+
+    /**
+     * Sets a listener to be told whenever one of the client's circuit
+     * breakers changes state.
+     * @param listener the listener
+     */
+    public Builder setCircuitBreakerListener(CircuitBreaker.Listener listener) {
+      this.breakerListener = listener;
+      return this;
+    }
+
+    /**
+     * Limits the number of requests in flight to each of the client's URLs.
+     * The limit starts at initialLimit, grows while the URL's core keeps up,
+     * and shrinks when it shows signs of overload, such as 429 or 503
+     * responses, timeouts, or slowing responses. A request beyond the limit
+     * waits for up to queueTimeout for another request to finish, and then
+     * fails with {@link OverloadException} rather than adding to the load.
+     * By default, concurrency is not limited.
+     * @param initialLimit the starting limit for each URL
+     * @param maxLimit the largest the limit may grow
+     * @param queueTimeout how long a request may wait, or 0 to shed it immediately
+     * @param unit the unit of time
+     */
+    public Builder setConcurrencyLimit(
+        int initialLimit, int maxLimit, long queueTimeout, TimeUnit unit) {
+      if (initialLimit < 1 || maxLimit < initialLimit) {
+        throw new IllegalArgumentException(
+            "limits must be at least 1, and maxLimit at least initialLimit");
+      }
+      this.initialConcurrency = initialLimit;
+      this.maxConcurrency = maxLimit;
+      this.concurrencyQueueTimeout = queueTimeout;
+      this.concurrencyQueueTimeoutUnit = unit;
+      return this;
+    }
+
+    /**
+     * Adds a lane to the client, or changes the limit of an existing lane.
+     * Each lane has its own connections, its own limit on requests in
+     * flight, and its own circuit breaker and statistics for each URL, so
+     * requests in one lane can't delay the requests in another. Requests
+     * are sent in a lane with {@link RequestOptions#setLane(String)}.
+     * <br>
+     * By default, a client has a {@link Lane#DEFAULT} lane, and a
+     * {@link Lane#LONG_POLL} lane for feed queries, both unlimited. A limit
+     * on the long-poll lane also limits how many feeds can be consumed at
+     * once, since each feed holds a request in flight while it waits.
+     * A client with a custom or HTTP/2 transport shares the transport among
+     * its lanes, but each lane keeps its own limit and statistics.
+     * @param name the name of the lane
+     * @param maxRequests the limit on requests in flight in the lane, or 0 for no limit
+     */
+    public Builder setLane(String name, int maxRequests) {
+      if (maxRequests < 0) {
+        throw new IllegalArgumentException("maxRequests must not be negative");
+      }
+      this.lanes.put(name, maxRequests);
+      return this;
+    }
+
+    /**
+     * Sets the registry of connection pools, dispatchers and TLS contexts
+     * the client shares with other clients. By default, clients use
+     * {@link TransportRegistry#shared()}, so that clients of the same cores
+     * reuse one another's connections and TLS sessions.
+     * @param registry the registry
+     */
+    public Builder setTransportRegistry(TransportRegistry registry) {
+      if (registry == null) {
+        throw new IllegalArgumentException("registry must not be null");
+      }
+      this.registry = registry;
+      return this;
+    }
+
+    /**
+     * Sets the size above which request bodies are compressed with gzip.
+     * Bodies are only compressed for cores that have said they accept
+     * compressed requests. Responses are always requested compressed.
+     * @param bytes the threshold in bytes, or -1 to never compress requests
+     * @see Client#compressionStats()
+     */
+    public Builder setGzipThreshold(int bytes) {
+      this.gzipThreshold = bytes;
+      return this;
+    }
+
+    /**
+     * Sets the transport used to send requests. The transport is used as
+     * given: the timeout, proxy, TLS, connection pool and logging settings
+     * of this builder don't apply to it.
+     * @param transport the transport
+     */
+    public Builder setTransport(Transport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * Sends requests with the JDK's HTTP client, which multiplexes concurrent
+     * requests to each core over a single HTTP/2 connection, falling back to
+     * HTTP/1.1 if the core doesn't support HTTP/2. It requires Java 11 or
+     * later.
+     * <br>
+     * The connect and read timeouts, proxy and trusted certificates of this
+     * builder apply to the transport. Only HTTP proxies are supported; a
+     * client with any other kind fails to build with an
+     * {@link UnsupportedOperationException}. Certificate pinning and request
+     * logging are not supported, and the connection pool and asynchronous
+     * request limits have no effect.
+     */
+    public Builder useHttp2() {
+      this.http2 = true;
+      return this;
+    }
+
+    /**
+     * Prepares the client to be called from virtual threads, and to serve
+     * asynchronous requests without a platform thread each. The transport
+     * runs asynchronous requests and their callbacks on virtual threads
+     * instead of on a pool of platform threads. It requires Java 21 or
+     * later.
+     * <br>
+     * The blocking request methods, {@link com.chain.api.Transaction.Feed}
+     * and {@link com.chain.signing.HsmSigner} can be called from virtual
+     * threads without this setting, since the SDK's own code never blocks
+     * while holding a monitor: a virtual thread that waits for a response,
+     * for room in a lane, or for a retry releases its carrier thread.
+     * Transports set with {@link #setTransport(Transport)} are unaffected.
+     */
+    public Builder useVirtualThreads() {
+      this.virtualThreads = true;
       return this;
     }
 
@@ -741,6 +2745,97 @@ public class Client {
       return this;
     }
 
+    /**
+     * Writes log entries on a background thread, rather than on the thread
+     * of the request being logged. Entries wait to be written in a queue
+     * of the given capacity, and entries that arrive while it is full are
+     * dropped and counted in {@link Client#logStats()}, so a slow log never
+     * holds up requests. By default, entries are written synchronously.
+     * @param capacity the number of entries that may wait to be written
+     */
+    public Builder setAsyncLogging(int capacity) {
+      if (capacity <= 0) {
+        throw new IllegalArgumentException("capacity must be positive");
+      }
+      this.asyncLogCapacity = capacity;
+      return this;
+    }
+
+    /**
+     * Limits the logged request and response bodies to the given number of
+     * bytes each. Only that much of a response is read ahead to be logged,
+     * so large responses aren't held in memory for the log. By default,
+     * bodies are logged in full.
+     * @param maxBytes the limit on each logged body, or 0 for no limit
+     */
+    public Builder setLogBodyLimit(int maxBytes) {
+      if (maxBytes < 0) {
+        throw new IllegalArgumentException("maxBytes must not be negative");
+      }
+      this.logBodyLimit = maxBytes;
+      return this;
+    }
+
+    /**
+     * Logs only a random sample of the requests the log level selects. By
+     * default, every selected request is logged.
+     * @param requestRate the fraction of successful requests to log, from 0 to 1
+     * @param errorRate the fraction of failed requests to log, from 0 to 1
+     */
+    public Builder setLogSampling(double requestRate, double errorRate) {
+      if (requestRate < 0 || requestRate > 1 || errorRate < 0 || errorRate > 1) {
+        throw new IllegalArgumentException("sample rates must be between 0 and 1");
+      }
+      this.logRequestSampleRate = requestRate;
+      this.logErrorSampleRate = errorRate;
+      return this;
+    }
+
+    /**
+     * Logs successful requests only if they take at least the given time.
+     * Slow requests are logged at the {@link LoggingInterceptor.Level#ERRORS}
+     * level as well as at {@link LoggingInterceptor.Level#ALL}; failed
+     * requests are logged as usual.
+     * @param threshold the shortest request to log, or 0 to log requests however long they take
+     * @param unit the unit of time
+     */
+    public Builder setSlowRequestLogging(long threshold, TimeUnit unit) {
+      this.slowRequestLog = threshold;
+      this.slowRequestLogUnit = unit;
+      return this;
+    }
+
+    /**
+     * Sets a listener to be told, after every call, how the call's time
+     * was spent: waiting to be sent, connecting, waiting for the core,
+     * reading and deserializing the response, and backing off between
+     * attempts. Connect times are only reported by the default OkHttp
+     * transport.
+     * <br>
+     * While a listener is set, response bodies are read in full before
+     * they are deserialized, rather than deserialized as they arrive, so
+     * that the two can be timed separately.
+     * @param listener the listener, or null for none
+     */
+    public Builder setRequestListener(RequestListener listener) {
+      this.requestListener = listener;
+      return this;
+    }
+
+    /**
+     * Sets a registry in which to record the latency of calls by action,
+     * their retries and errors, the HTTP status codes returned, the number
+     * of retries sent to a different URL, and the size and error counts of
+     * batch responses. The registry can be shared with other clients, and
+     * published with a reporter such as
+     * {@link com.chain.metrics.JmxReporter}.
+     * @param registry the registry, or null to record no metrics
+     */
+    public Builder setMetricRegistry(MetricRegistry registry) {
+      this.metricRegistry = registry;
+      return this;
+    }
+
     /**
      * Builds a client with all of the provided parameters.
      */
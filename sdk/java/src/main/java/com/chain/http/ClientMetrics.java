@@ -0,0 +1,149 @@
+package com.chain.http;
+
+import com.chain.metrics.Counter;
+import com.chain.metrics.Gauge;
+import com.chain.metrics.Histogram;
+import com.chain.metrics.MetricRegistry;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ClientMetrics records a client's calls in a metric registry. It is told
+ * about each finished call as a request listener, ahead of the listener
+ * the application set, if any. The metrics it keeps are:
+ * <ul>
+ * <li>{@code client.<action>.latency}: a histogram of call times, in nanoseconds</li>
+ * <li>{@code client.<action>.calls} and {@code .errors}: counters of calls made and failed</li>
+ * <li>{@code client.<action>.retries}: a counter of attempts after the first</li>
+ * <li>{@code client.status.<code>}: a counter of responses by HTTP status code</li>
+ * <li>{@code client.endpoint-switches}: a counter of retries sent to a different URL</li>
+ * <li>{@code client.<action>.batch-size}: a histogram of batch response sizes</li>
+ * <li>{@code client.<action>.batch-items} and {@code .batch-errors}: counters of
+ * batch items returned and failed, and {@code .batch-error-ratio}, a gauge of
+ * their ratio</li>
+ * </ul>
+ */
+class ClientMetrics implements RequestListener {
+  private final MetricRegistry registry;
+  private final RequestListener next;
+  private final Counter endpointSwitches;
+  private final ConcurrentHashMap<String, Action> actions = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, Counter> statuses = new ConcurrentHashMap<>();
+
+  ClientMetrics(MetricRegistry registry, RequestListener next) {
+    this.registry = registry;
+    this.next = next;
+    this.endpointSwitches = registry.counter("client.endpoint-switches");
+  }
+
+  @Override
+  public void onComplete(RequestTiming timing) {
+    Action a = action(timing.action());
+    a.latency.record(timing.totalNanos());
+    a.calls.inc();
+    if (!timing.succeeded()) {
+      a.errors.inc();
+    }
+
+    List<RequestTiming.Attempt> attempts = timing.attempts();
+    if (attempts.size() > 1) {
+      a.retries.inc(attempts.size() - 1);
+    }
+    String previous = null;
+    for (RequestTiming.Attempt attempt : attempts) {
+      if (attempt.statusCode() > 0) {
+        status(attempt.statusCode()).inc();
+      }
+      URL url = attempt.url();
+      if (url != null) {
+        // Compare the URLs as strings: URL.equals resolves host names.
+        String s = url.toString();
+        if (previous != null && !previous.equals(s)) {
+          endpointSwitches.inc();
+        }
+        previous = s;
+      }
+    }
+
+    if (next != null) {
+      next.onComplete(timing);
+    }
+  }
+
+  /**
+   * Records the size and errors of a batch response.
+   */
+  void recordBatch(String action, BatchResponse<?> batch) {
+    Batch b = batches.get(action);
+    if (b == null) {
+      batches.putIfAbsent(action, new Batch(registry, "client." + action));
+      b = batches.get(action);
+    }
+    b.size.record(batch.size());
+    b.items.inc(batch.size());
+    b.errors.inc(batch.errorCount());
+  }
+
+  private Action action(String name) {
+    Action a = actions.get(name);
+    if (a == null) {
+      actions.putIfAbsent(name, new Action(registry, "client." + name));
+      a = actions.get(name);
+    }
+    return a;
+  }
+
+  private Counter status(int code) {
+    Counter c = statuses.get(code);
+    if (c == null) {
+      statuses.putIfAbsent(code, registry.counter("client.status." + code));
+      c = statuses.get(code);
+    }
+    return c;
+  }
+
+  /**
+   * Action holds the metrics of one action, so that recording a call
+   * doesn't build metric names.
+   */
+  private static class Action {
+    final Histogram latency;
+    final Counter calls;
+    final Counter errors;
+    final Counter retries;
+
+    Action(MetricRegistry registry, String prefix) {
+      latency = registry.histogram(prefix + ".latency");
+      calls = registry.counter(prefix + ".calls");
+      errors = registry.counter(prefix + ".errors");
+      retries = registry.counter(prefix + ".retries");
+    }
+  }
+
+  /**
+   * Batch holds the batch metrics of an action that returns batch
+   * responses.
+   */
+  private static class Batch {
+    final Histogram size;
+    final Counter items;
+    final Counter errors;
+
+    Batch(MetricRegistry registry, String prefix) {
+      size = registry.histogram(prefix + ".batch-size");
+      items = registry.counter(prefix + ".batch-items");
+      errors = registry.counter(prefix + ".batch-errors");
+      registry.gauge(
+          prefix + ".batch-error-ratio",
+          new Gauge() {
+            public double value() {
+              long n = items.count();
+              return n == 0 ? 0 : (double) errors.count() / n;
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,271 @@
+package com.chain.http;
+
+import com.squareup.okhttp.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSource;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+import okio.Timeout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CompressionStats records how much a client's gzip compression saves, and
+ * how long it takes, for request and response bodies. See
+ * {@link Client.Builder#setGzipThreshold(int)}.
+ */
+public class CompressionStats {
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong requestBytes = new AtomicLong();
+  private final AtomicLong requestWireBytes = new AtomicLong();
+  private final AtomicLong compressNanos = new AtomicLong();
+  private final AtomicLong responses = new AtomicLong();
+  private final AtomicLong responseBytes = new AtomicLong();
+  private final AtomicLong responseWireBytes = new AtomicLong();
+  private final AtomicLong decompressNanos = new AtomicLong();
+
+  /**
+   * Returns the number of request bodies sent compressed.
+   * @return the number of compressed requests
+   */
+  public long requests() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the size of the compressed request bodies before compression.
+   * @return a number of bytes
+   */
+  public long requestBytes() {
+    return requestBytes.get();
+  }
+
+  /**
+   * Returns the size of the compressed request bodies as sent.
+   * @return a number of bytes
+   */
+  public long requestWireBytes() {
+    return requestWireBytes.get();
+  }
+
+  /**
+   * Returns the ratio of the original to the compressed size of request
+   * bodies.
+   * @return the compression ratio, or 0 if no requests have been compressed
+   */
+  public double requestRatio() {
+    long wire = requestWireBytes.get();
+    return wire == 0 ? 0 : (double) requestBytes.get() / wire;
+  }
+
+  /**
+   * Returns the total time spent compressing request bodies.
+   * @return a number of milliseconds
+   */
+  public double compressMillis() {
+    return compressNanos.get() / 1e6;
+  }
+
+  /**
+   * Returns the number of compressed response bodies received.
+   * @return the number of compressed responses
+   */
+  public long responses() {
+    return responses.get();
+  }
+
+  /**
+   * Returns the size of the compressed response bodies after decompression.
+   * @return a number of bytes
+   */
+  public long responseBytes() {
+    return responseBytes.get();
+  }
+
+  /**
+   * Returns the size of the compressed response bodies as received.
+   * @return a number of bytes
+   */
+  public long responseWireBytes() {
+    return responseWireBytes.get();
+  }
+
+  /**
+   * Returns the ratio of the decompressed to the compressed size of
+   * response bodies.
+   * @return the compression ratio, or 0 if no responses have been compressed
+   */
+  public double responseRatio() {
+    long wire = responseWireBytes.get();
+    return wire == 0 ? 0 : (double) responseBytes.get() / wire;
+  }
+
+  /**
+   * Returns the total time spent decompressing response bodies, not
+   * counting time spent waiting for them to arrive.
+   * @return a number of milliseconds
+   */
+  public double decompressMillis() {
+    return decompressNanos.get() / 1e6;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "requests=%d ratio=%.2f compress=%.1fms responses=%d ratio=%.2f decompress=%.1fms",
+        requests(),
+        requestRatio(),
+        compressMillis(),
+        responses(),
+        responseRatio(),
+        decompressMillis());
+  }
+
+  /**
+   * Wraps a gzip-encoded response body in a source that decompresses it,
+   * recording its sizes and the time spent decompressing as it is read.
+   */
+  Source gunzip(Source compressed) {
+    responses.incrementAndGet();
+    final TimedSource wire = new TimedSource(compressed);
+    return new ForwardingSource(new GzipSource(wire)) {
+      @Override
+      public long read(Buffer sink, long byteCount) throws IOException {
+        long start = System.nanoTime();
+        long waited = wire.nanos;
+        long n = super.read(sink, byteCount);
+        // Time spent reading from the network isn't decompression.
+        decompressNanos.addAndGet(System.nanoTime() - start - (wire.nanos - waited));
+        if (n > 0) {
+          responseBytes.addAndGet(n);
+        }
+        return n;
+      }
+    };
+  }
+
+  /**
+   * Writes a request body to sink, gzip-compressed, recording its sizes and
+   * the time spent compressing.
+   */
+  void gzip(RequestBody body, BufferedSink sink) throws IOException {
+    TimedOutputStream wire = new TimedOutputStream(sink.outputStream());
+    GZIPOutputStream gz = new GZIPOutputStream(wire, 8192);
+    TimedSink plain = new TimedSink(Okio.sink(gz));
+    BufferedSink buffered = Okio.buffer(plain);
+    body.writeTo(buffered);
+    buffered.flush();
+    long start = System.nanoTime();
+    gz.finish(); // not close, which would close the connection's stream
+    long finish = System.nanoTime() - start;
+
+    requests.incrementAndGet();
+    requestBytes.addAndGet(plain.bytes);
+    requestWireBytes.addAndGet(wire.bytes);
+    // Time spent writing to the network isn't compression.
+    compressNanos.addAndGet(plain.nanos + finish - wire.nanos);
+  }
+
+  /**
+   * A source that records the time spent reading from it.
+   */
+  private class TimedSource extends ForwardingSource {
+    long nanos;
+
+    TimedSource(Source delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+      long start = System.nanoTime();
+      long n = super.read(sink, byteCount);
+      nanos += System.nanoTime() - start;
+      if (n > 0) {
+        responseWireBytes.addAndGet(n);
+      }
+      return n;
+    }
+  }
+
+  /**
+   * A sink that records the bytes written to it and the time spent writing.
+   */
+  private static class TimedSink implements Sink {
+    private final Sink delegate;
+    long bytes;
+    long nanos;
+
+    TimedSink(Sink delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(Buffer source, long byteCount) throws IOException {
+      long start = System.nanoTime();
+      delegate.write(source, byteCount);
+      nanos += System.nanoTime() - start;
+      bytes += byteCount;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      long start = System.nanoTime();
+      delegate.flush();
+      nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public Timeout timeout() {
+      return delegate.timeout();
+    }
+
+    @Override
+    public void close() throws IOException {
+      // The compressed stream is finished, not closed; see gzip.
+    }
+  }
+
+  /**
+   * An output stream that records the bytes written to it and the time
+   * spent writing, and leaves its delegate open when closed.
+   */
+  private static class TimedOutputStream extends OutputStream {
+    private final OutputStream delegate;
+    long bytes;
+    long nanos;
+
+    TimedOutputStream(OutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      delegate.write(b, off, len);
+      nanos += System.nanoTime() - start;
+      bytes += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      long start = System.nanoTime();
+      delegate.flush();
+      nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() throws IOException {}
+  }
+}
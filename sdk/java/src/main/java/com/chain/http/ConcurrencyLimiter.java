@@ -0,0 +1,237 @@
+package com.chain.http;
+
+import com.chain.exception.OverloadException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ConcurrencyLimiter bounds the number of requests a client has in flight
+ * to one endpoint, and adapts the bound to the endpoint's capacity. The
+ * limit grows by one for every limit's worth of timely responses, and is cut
+ * by a tenth whenever the endpoint shows signs of congestion: a 429 or 503
+ * response, a timeout, or a response much slower than the endpoint's usual
+ * latency. Requests beyond the limit wait in a queue until one of the
+ * requests in flight finishes, and are shed if they wait too long. Waiting
+ * requests are sent in order of their {@link RequestOptions.Priority}, and
+ * in the order they arrived within each priority.
+ */
+public class ConcurrencyLimiter {
+  // The factor the limit is multiplied by on congestion.
+  private static final double BACKOFF_RATIO = 0.9;
+
+  // A response slower than this multiple of the endpoint's usual latency is
+  // taken as a sign of congestion.
+  private static final double LATENCY_TOLERANCE = 3;
+
+  // Weight of each new latency sample in the usual latency.
+  private static final double BASELINE_ALPHA = 0.05;
+
+  private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+  private final Endpoint endpoint;
+  private final int maxLimit;
+  private final long queueTimeoutNanos;
+  private final ArrayDeque<CompletableFuture<Void>>[] waiters;
+  private int queued;
+  private double limit;
+  private int inFlight;
+  private double baselineNanos;
+  private long decreasedAtNanos;
+  private long shed;
+
+  ConcurrencyLimiter(Endpoint endpoint, int initialLimit, int maxLimit, long queueTimeoutNanos) {
+    this.endpoint = endpoint;
+    this.maxLimit = maxLimit;
+    this.queueTimeoutNanos = queueTimeoutNanos;
+    this.limit = Math.max(1, Math.min(initialLimit, maxLimit));
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ArrayDeque<CompletableFuture<Void>>[] w =
+        new ArrayDeque[RequestOptions.Priority.values().length];
+    for (int i = 0; i < w.length; i++) {
+      w[i] = new ArrayDeque<>();
+    }
+    this.waiters = w;
+  }
+
+  /**
+   * Returns the current limit on requests in flight to the endpoint.
+   * @return the limit
+   */
+  public synchronized int limit() {
+    return (int) limit;
+  }
+
+  /**
+   * Returns the number of requests in flight to the endpoint.
+   * @return the number of requests
+   */
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Returns the number of requests waiting for room under the limit.
+   * @return the number of requests
+   */
+  public synchronized int queued() {
+    return queued;
+  }
+
+  /**
+   * Returns the total number of requests shed because no room became
+   * available for them in time.
+   * @return the number of requests
+   */
+  public synchronized long shed() {
+    return shed;
+  }
+
+  /**
+   * Asks for room to send a request to the endpoint. The returned future
+   * completes once the request may be sent, or fails with an
+   * {@link OverloadException} if the request is shed. Once the request has
+   * been sent, its outcome must be reported with exactly one of
+   * {@link #onSuccess(long)}, {@link #onCongestion()} or {@link #release()}.
+   */
+  CompletableFuture<Void> acquire(RequestOptions.Priority priority) {
+    final CompletableFuture<Void> waiter;
+    final ArrayDeque<CompletableFuture<Void>> queue = waiters[priority.ordinal()];
+    synchronized (this) {
+      if (inFlight < (int) limit && queued == 0) {
+        inFlight++;
+        return ACQUIRED;
+      }
+      if (queueTimeoutNanos <= 0) {
+        shed++;
+        return overloaded();
+      }
+      waiter = new CompletableFuture<>();
+      queue.add(waiter);
+      queued++;
+    }
+
+    Client.timer()
+        .schedule(
+            new Runnable() {
+              public void run() {
+                synchronized (ConcurrencyLimiter.this) {
+                  if (!queue.remove(waiter)) {
+                    return; // It was given room in time.
+                  }
+                  queued--;
+                  shed++;
+                }
+                waiter.completeExceptionally(overloadException());
+              }
+            },
+            queueTimeoutNanos,
+            TimeUnit.NANOSECONDS);
+    return waiter;
+  }
+
+  /**
+   * Records a request that received a response after the given time.
+   */
+  void onSuccess(long latencyNanos) {
+    List<CompletableFuture<Void>> ready;
+    synchronized (this) {
+      if (baselineNanos > 0 && latencyNanos > LATENCY_TOLERANCE * baselineNanos) {
+        decrease();
+      } else if (inFlight * 2 >= limit) {
+        // Only grow the limit while it is being used, so that it stays
+        // close to the load the endpoint has actually been shown to handle.
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      baselineNanos =
+          baselineNanos == 0
+              ? latencyNanos
+              : baselineNanos + BASELINE_ALPHA * (latencyNanos - baselineNanos);
+      ready = releaseLocked();
+    }
+    grant(ready);
+  }
+
+  /**
+   * Records a request that the endpoint rejected or failed to answer
+   * because it was overloaded.
+   */
+  void onCongestion() {
+    List<CompletableFuture<Void>> ready;
+    synchronized (this) {
+      decrease();
+      ready = releaseLocked();
+    }
+    grant(ready);
+  }
+
+  /**
+   * Records a request whose outcome says nothing about the endpoint's load.
+   */
+  void release() {
+    List<CompletableFuture<Void>> ready;
+    synchronized (this) {
+      ready = releaseLocked();
+    }
+    grant(ready);
+  }
+
+  private void decrease() {
+    // Requests in flight when the limit was last cut are likely to report
+    // the same congestion, so the limit is cut at most once per round trip.
+    long now = System.nanoTime();
+    if (decreasedAtNanos != 0 && now - decreasedAtNanos < baselineNanos) {
+      return;
+    }
+    limit = Math.max(1, limit * BACKOFF_RATIO);
+    decreasedAtNanos = now;
+  }
+
+  private List<CompletableFuture<Void>> releaseLocked() {
+    inFlight--;
+    List<CompletableFuture<Void>> ready = null;
+    for (int i = 0; i < waiters.length; i++) {
+      while (inFlight < (int) limit && !waiters[i].isEmpty()) {
+        if (ready == null) {
+          ready = new ArrayList<>();
+        }
+        ready.add(waiters[i].poll());
+        queued--;
+        inFlight++;
+      }
+    }
+    return ready;
+  }
+
+  private void grant(List<CompletableFuture<Void>> ready) {
+    // Waiters are completed outside the lock, since completing them runs
+    // their requests.
+    if (ready != null) {
+      for (int i = 0; i < ready.size(); i++) {
+        if (!ready.get(i).complete(null)) {
+          release(); // The waiter gave up; pass the room on.
+        }
+      }
+    }
+  }
+
+  private CompletableFuture<Void> overloaded() {
+    CompletableFuture<Void> f = new CompletableFuture<>();
+    f.completeExceptionally(overloadException());
+    return f;
+  }
+
+  private OverloadException overloadException() {
+    return new OverloadException(
+        "too many requests in flight to " + endpoint.url() + "; request shed");
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "limit=%d inFlight=%d queued=%d shed=%d", (int) limit, inFlight, queued, shed);
+  }
+}
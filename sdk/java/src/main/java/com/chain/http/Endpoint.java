@@ -0,0 +1,303 @@
+package com.chain.http;
+
+import com.chain.exception.BadURLException;
+import com.squareup.okhttp.HttpUrl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An Endpoint is one of the base URLs a client sends requests to, together
+ * with the statistics the client has observed for it. Endpoint statistics are
+ * used by an {@link EndpointSelector} to choose where each request is sent,
+ * and are available from {@link Client#endpoints()}.
+ */
+public class Endpoint {
+  // Weight of each new latency sample in the moving average.
+  private static final double EWMA_ALPHA = 0.2;
+
+  // A failed request counts as a latency sample of at least this much, so
+  // that selectors steer away from failing endpoints.
+  private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  // An endpoint that hasn't been used in a while has its average decayed
+  // with this time constant, so that a penalized endpoint is retried
+  // eventually.
+  private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  // The smallest weight given to an endpoint that has just recovered.
+  private static final double MIN_SLOW_START_WEIGHT = 0.1;
+
+  private final URL url;
+  private final int position;
+  private final CircuitBreaker breaker;
+  private ConcurrencyLimiter limiter;
+  private final ConcurrentHashMap<String, HttpUrl> actionURLs = new ConcurrentHashMap<>();
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private volatile double ewmaNanos;
+  private volatile long updatedAtNanos;
+  private volatile boolean acceptsGzip;
+  private volatile boolean failing;
+  private volatile long failedAtNanos;
+  private volatile long recoveredAtNanos;
+
+  Endpoint(URL url, int position) {
+    this(url, position, 0, 0, null);
+  }
+
+  Endpoint(
+      URL url,
+      int position,
+      int failureThreshold,
+      long openNanos,
+      CircuitBreaker.Listener listener) {
+    this.url = url;
+    this.position = position;
+    this.breaker = new CircuitBreaker(this, failureThreshold, openNanos, listener);
+  }
+
+  /**
+   * Returns the base URL of the endpoint.
+   * @return the URL
+   */
+  public URL url() {
+    return url;
+  }
+
+  /**
+   * Returns the position of the endpoint in the client's list of URLs.
+   * @return the position
+   */
+  public int position() {
+    return position;
+  }
+
+  /**
+   * Returns the number of requests currently in flight to the endpoint.
+   * @return the number of outstanding requests
+   */
+  public int outstanding() {
+    return outstanding.get();
+  }
+
+  /**
+   * Returns the total number of requests sent to the endpoint.
+   * @return the number of requests
+   */
+  public long requests() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the total number of requests to the endpoint that failed in a
+   * way that caused them to be retried elsewhere.
+   * @return the number of failures
+   */
+  public long failures() {
+    return failures.get();
+  }
+
+  /**
+   * Returns the exponentially weighted moving average of the endpoint's
+   * response latency, decayed according to how long ago it was last updated.
+   * @return the average latency in milliseconds, or 0 if the endpoint hasn't been used
+   */
+  public double latencyMillis() {
+    return latencyNanos(System.nanoTime()) / 1e6;
+  }
+
+  /**
+   * Returns whether the most recent request to the endpoint failed.
+   * @return a boolean
+   */
+  public boolean isFailing() {
+    return failing;
+  }
+
+  /**
+   * Returns the endpoint's circuit breaker.
+   * @return the circuit breaker
+   */
+  public CircuitBreaker circuitBreaker() {
+    return breaker;
+  }
+
+  /**
+   * Returns the endpoint's concurrency limiter.
+   * @return the concurrency limiter, or null if the client doesn't limit concurrency
+   * @see Client.Builder#setConcurrencyLimit(int, int, long, TimeUnit)
+   */
+  public ConcurrencyLimiter concurrencyLimiter() {
+    return limiter;
+  }
+
+  /**
+   * Returns the share of its normal traffic an endpoint should receive while
+   * it is warming up after recovering from failures. The weight grows
+   * linearly from 0.1 to 1 over the slow-start window.
+   * @param slowStart the duration of the slow-start window
+   * @param unit the unit of time
+   * @return a weight between 0.1 and 1
+   */
+  public double slowStartWeight(long slowStart, TimeUnit unit) {
+    long recovered = recoveredAtNanos;
+    long window = unit.toNanos(slowStart);
+    if (recovered == 0 || window <= 0) {
+      return 1;
+    }
+    double elapsed = (double) (System.nanoTime() - recovered) / window;
+    if (elapsed >= 1) {
+      recoveredAtNanos = 0;
+      return 1;
+    }
+    return Math.max(MIN_SLOW_START_WEIGHT, elapsed);
+  }
+
+  /**
+   * Returns the URL of an API action on the endpoint. Each action's URL is
+   * resolved once and reused for later requests.
+   * @param path the path of the action, relative to the endpoint's base URL
+   * @return the action's URL
+   * @throws BadURLException if the resulting URL is invalid
+   */
+  HttpUrl actionURL(String path) throws BadURLException {
+    HttpUrl u = actionURLs.get(path);
+    if (u != null) {
+      return u;
+    }
+
+    try {
+      URI uri = new URI(url.toString() + "/" + path).normalize();
+      u = HttpUrl.parse(uri.toString());
+    } catch (URISyntaxException ex) {
+      throw new BadURLException(ex.getMessage());
+    }
+    if (u == null) {
+      throw new BadURLException("invalid URL: " + url + "/" + path);
+    }
+    actionURLs.putIfAbsent(path, u);
+    return u;
+  }
+
+  /**
+   * Returns whether the endpoint has said it accepts gzip-encoded request
+   * bodies, by sending an Accept-Encoding header in a response.
+   */
+  boolean acceptsGzip() {
+    return acceptsGzip;
+  }
+
+  void setAcceptsGzip() {
+    acceptsGzip = true;
+  }
+
+  void limitConcurrency(int initialLimit, int maxLimit, long queueTimeoutNanos) {
+    this.limiter = new ConcurrencyLimiter(this, initialLimit, maxLimit, queueTimeoutNanos);
+  }
+
+  long failedAtNanos() {
+    return failedAtNanos;
+  }
+
+  double latencyNanos(long now) {
+    double ewma = ewmaNanos;
+    long idle = now - updatedAtNanos;
+    if (ewma == 0 || idle <= 0) {
+      return ewma;
+    }
+    return ewma * Math.exp(-(double) idle / DECAY_NANOS);
+  }
+
+  /**
+   * Records the start of a request to the endpoint.
+   * @return the start time, to be passed to {@link #finish(long, boolean)}
+   */
+  long start() {
+    outstanding.incrementAndGet();
+    requests.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the end of a request to the endpoint.
+   * @param startNanos the value returned by {@link #start()}
+   * @param ok false if the request failed and should count against the endpoint
+   */
+  void finish(long startNanos, boolean ok) {
+    finish(startNanos, ok, false);
+  }
+
+  /**
+   * Records the end of a request to the endpoint.
+   * @param startNanos the value returned by {@link #start()}
+   * @param ok false if the request failed and should count against the endpoint
+   * @param congested true if the failure showed the endpoint to be overloaded
+   */
+  void finish(long startNanos, boolean ok, boolean congested) {
+    long now = System.nanoTime();
+    long sample = now - startNanos;
+    outstanding.decrementAndGet();
+    if (limiter != null) {
+      if (congested) {
+        limiter.onCongestion();
+      } else if (ok) {
+        limiter.onSuccess(sample);
+      } else {
+        limiter.release();
+      }
+    }
+
+    if (ok) {
+      breaker.onSuccess();
+      if (failing) {
+        failing = false;
+        recoveredAtNanos = now;
+      }
+    } else {
+      breaker.onFailure();
+      failures.incrementAndGet();
+      failing = true;
+      failedAtNanos = now;
+      recoveredAtNanos = 0;
+      sample = Math.max(sample, FAILURE_PENALTY_NANOS);
+    }
+
+    // Concurrent updates may occasionally drop a sample, which is harmless
+    // for a moving average.
+    double prev = latencyNanos(now);
+    ewmaNanos = prev == 0 ? sample : prev + EWMA_ALPHA * (sample - prev);
+    updatedAtNanos = now;
+  }
+
+  /**
+   * Records the end of a request to the endpoint that says nothing about the
+   * endpoint's health, such as one cancelled by the caller.
+   */
+  void abandon() {
+    outstanding.decrementAndGet();
+    breaker.release();
+    if (limiter != null) {
+      limiter.release();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: outstanding=%d requests=%d failures=%d latency=%.1fms breaker=%s%s",
+        url,
+        outstanding(),
+        requests(),
+        failures(),
+        latencyMillis(),
+        breaker.state(),
+        failing ? " failing" : "");
+  }
+}
@@ -0,0 +1,167 @@
+package com.chain.http;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An EndpointSelector chooses which of a client's endpoints each request
+ * attempt is sent to. A selector may keep state, so each client should be
+ * given its own selector instance.
+ */
+public interface EndpointSelector {
+  /**
+   * Chooses the endpoint for the next request attempt.
+   * @param endpoints the client's endpoints, in the order their URLs were added
+   * @return one of the endpoints
+   */
+  Endpoint select(List<Endpoint> endpoints);
+
+  /**
+   * Called when a request attempt to an endpoint fails in a way that will
+   * be retried. The failure has already been recorded in the endpoint's
+   * statistics.
+   * @param endpoints the client's endpoints
+   * @param failed the endpoint that failed
+   */
+  default void onFailure(List<Endpoint> endpoints, Endpoint failed) {}
+
+  /**
+   * Called when failover probing finds an endpoint healthy after a failure.
+   * Requests waiting to retry are retried as soon as this returns.
+   * @param endpoints the client's endpoints
+   * @param healthy the first endpoint found to be healthy
+   * @see Client.Builder#setFailoverProbe(String, long, java.util.concurrent.TimeUnit)
+   */
+  default void onRecovery(List<Endpoint> endpoints, Endpoint healthy) {}
+
+  /**
+   * Sticky sends every request to the same endpoint, and only moves to the
+   * next endpoint in the list after a failure. This is the default.
+   */
+  class Sticky implements EndpointSelector {
+    private final AtomicInteger index = new AtomicInteger();
+
+    @Override
+    public Endpoint select(List<Endpoint> endpoints) {
+      return endpoints.get(index.get() % endpoints.size());
+    }
+
+    @Override
+    public void onFailure(List<Endpoint> endpoints, Endpoint failed) {
+      if (endpoints.size() == 1) {
+        return; // No point contending on the CAS if there's only one URL.
+      }
+
+      // Move to the next URL in the list, unless another request has
+      // already moved away from the one that failed.
+      int current = index.get();
+      if (current % endpoints.size() == failed.position()) {
+        index.compareAndSet(current, current + 1);
+      }
+    }
+
+    @Override
+    public void onRecovery(List<Endpoint> endpoints, Endpoint healthy) {
+      index.set(healthy.position());
+    }
+  }
+
+  /**
+   * EwmaLatency prefers the endpoint with the lowest expected latency, taken
+   * as its moving average latency scaled by the number of requests already
+   * in flight to it. Endpoints recovering from failures are ramped up over a
+   * slow-start window.
+   */
+  class EwmaLatency implements EndpointSelector {
+    private final long slowStartNanos;
+
+    /**
+     * Creates a selector with a ten second slow-start window.
+     */
+    public EwmaLatency() {
+      this(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a selector with the given slow-start window.
+     * @param slowStart the duration of the slow-start window
+     * @param unit the unit of time
+     */
+    public EwmaLatency(long slowStart, TimeUnit unit) {
+      this.slowStartNanos = unit.toNanos(slowStart);
+    }
+
+    @Override
+    public Endpoint select(List<Endpoint> endpoints) {
+      long now = System.nanoTime();
+      Endpoint best = null;
+      double bestScore = Double.MAX_VALUE;
+      // Start at a random position so ties don't all land on one endpoint.
+      int offset = ThreadLocalRandom.current().nextInt(endpoints.size());
+      for (int i = 0; i < endpoints.size(); i++) {
+        Endpoint e = endpoints.get((i + offset) % endpoints.size());
+        double score =
+            e.latencyNanos(now)
+                * (e.outstanding() + 1)
+                / e.slowStartWeight(slowStartNanos, TimeUnit.NANOSECONDS);
+        if (score < bestScore) {
+          best = e;
+          bestScore = score;
+        }
+      }
+      return best;
+    }
+  }
+
+  /**
+   * LeastOutstanding prefers the endpoint with the fewest requests in flight.
+   * Endpoints recovering from failures are ramped up over a slow-start
+   * window.
+   */
+  class LeastOutstanding implements EndpointSelector {
+    // How long a failed endpoint is passed over before it is tried again.
+    private static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long slowStartNanos;
+
+    /**
+     * Creates a selector with a ten second slow-start window.
+     */
+    public LeastOutstanding() {
+      this(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a selector with the given slow-start window.
+     * @param slowStart the duration of the slow-start window
+     * @param unit the unit of time
+     */
+    public LeastOutstanding(long slowStart, TimeUnit unit) {
+      this.slowStartNanos = unit.toNanos(slowStart);
+    }
+
+    @Override
+    public Endpoint select(List<Endpoint> endpoints) {
+      long now = System.nanoTime();
+      Endpoint best = null;
+      double bestScore = Double.MAX_VALUE;
+      int offset = ThreadLocalRandom.current().nextInt(endpoints.size());
+      for (int i = 0; i < endpoints.size(); i++) {
+        Endpoint e = endpoints.get((i + offset) % endpoints.size());
+        double score =
+            (e.outstanding() + 1) / e.slowStartWeight(slowStartNanos, TimeUnit.NANOSECONDS);
+        if (e.isFailing() && now - e.failedAtNanos() < FAILURE_BACKOFF_NANOS) {
+          // Pass over an endpoint that just failed, unless they all have.
+          score += 1e9;
+        }
+        if (score < bestScore) {
+          best = e;
+          bestScore = score;
+        }
+      }
+      return best;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.chain.http;
+
+import com.chain.exception.BadURLException;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * FailoverProbe finds a healthy URL quickly after a request fails to reach
+ * its URL or times out, such as while the cores elect a new leader. Rather
+ * than leaving each request to walk the URL list with exponential backoff,
+ * it probes every URL at once with a cheap request, repeating at a short
+ * interval. As soon as one URL answers, its circuit breakers are closed,
+ * the endpoint selector is pointed at it, and every request waiting to
+ * retry is retried immediately.
+ */
+class FailoverProbe {
+  // How long a probe may take before its URL is probed again.
+  private static final long PROBE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+  // How long probing continues without finding a healthy URL. It outlasts
+  // the longest wait between retries, so that no waiting request is
+  // stranded.
+  private static final long MAX_ROUND_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  private final Client client;
+  private final String action;
+  private final long intervalNanos;
+  private Round round;
+
+  FailoverProbe(Client client, String action, long intervalNanos) {
+    this.client = client;
+    this.action = action;
+    this.intervalNanos = intervalNanos;
+  }
+
+  /**
+   * A period of probing, which ends when a URL answers or when it has
+   * lasted too long.
+   */
+  private class Round {
+    final CompletableFuture<Void> recovered = new CompletableFuture<>();
+    final long startedAtNanos = System.nanoTime();
+    final AtomicBoolean[] probing;
+
+    Round(int size) {
+      probing = new AtomicBoolean[size];
+      for (int i = 0; i < size; i++) {
+        probing[i] = new AtomicBoolean();
+      }
+    }
+  }
+
+  /**
+   * Starts probing after a connectivity failure or timeout, unless probing
+   * is already under way.
+   */
+  void start() {
+    Round r;
+    synchronized (this) {
+      if (round != null) {
+        return;
+      }
+      r = new Round(client.endpoints().size());
+      round = r;
+    }
+    tick(r);
+  }
+
+  /**
+   * Returns a future that completes when probing finds a healthy URL, or
+   * null if there is no probing under way.
+   */
+  synchronized CompletableFuture<Void> recovery() {
+    return round == null ? null : round.recovered;
+  }
+
+  private void tick(final Round r) {
+    if (r.recovered.isDone()) {
+      return;
+    }
+    if (System.nanoTime() - r.startedAtNanos > MAX_ROUND_NANOS) {
+      end(r);
+      return;
+    }
+    List<Endpoint> endpoints = client.endpoints();
+    for (int i = 0; i < endpoints.size(); i++) {
+      // A URL that hasn't answered the last probe isn't probed again.
+      if (r.probing[i].compareAndSet(false, true)) {
+        probe(r, endpoints.get(i));
+      }
+    }
+    Client.timer()
+        .schedule(
+            new Runnable() {
+              public void run() {
+                tick(r);
+              }
+            },
+            intervalNanos,
+            TimeUnit.NANOSECONDS);
+  }
+
+  private void probe(final Round r, final Endpoint endpoint) {
+    Request req;
+    try {
+      req = client.buildRequest(endpoint, action, client.jsonBody(new HashMap<>()));
+    } catch (BadURLException ex) {
+      return; // Leave the URL marked as probing, so it isn't tried again.
+    }
+    client
+        .lane(Lane.DEFAULT)
+        .transport()
+        .enqueue(
+            req,
+            PROBE_TIMEOUT_NANOS,
+            new Callback() {
+              public void onFailure(Request request, IOException ex) {
+                r.probing[endpoint.position()].set(false);
+              }
+
+              public void onResponse(Response response) throws IOException {
+                try {
+                  if (response.isSuccessful()) {
+                    recovered(r, endpoint);
+                  }
+                } finally {
+                  response.body().close();
+                  r.probing[endpoint.position()].set(false);
+                }
+              }
+            });
+  }
+
+  private void recovered(Round r, Endpoint endpoint) {
+    if (!end(r)) {
+      return; // Another URL answered first.
+    }
+    client.recovered(endpoint);
+    r.recovered.complete(null);
+  }
+
+  /**
+   * Ends a round, if it hasn't already ended.
+   * @return true if this call ended the round
+   */
+  private synchronized boolean end(Round r) {
+    if (round != r) {
+      return false;
+    }
+    round = null;
+    return true;
+  }
+}
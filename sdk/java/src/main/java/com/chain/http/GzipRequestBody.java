@@ -0,0 +1,38 @@
+package com.chain.http;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * GzipRequestBody compresses another request body with gzip as it is
+ * written. Requests carrying it must have a Content-Encoding of gzip.
+ */
+class GzipRequestBody extends RequestBody {
+  private final RequestBody delegate;
+  private final CompressionStats stats;
+
+  GzipRequestBody(RequestBody delegate, CompressionStats stats) {
+    this.delegate = delegate;
+    this.stats = stats;
+  }
+
+  /**
+   * Returns the uncompressed body.
+   */
+  RequestBody delegate() {
+    return delegate;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return delegate.contentType();
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    stats.gzip(delegate, sink);
+  }
+}
@@ -0,0 +1,199 @@
+package com.chain.http;
+
+import com.squareup.okhttp.RequestBody;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Hedger sends a duplicate of a slow idempotent request to a second URL, and
+ * keeps whichever response arrives first. A request is hedged once it has
+ * been outstanding for longer than a percentile of the recent latencies of
+ * its action. The number of hedges is limited by a budget, earned as a
+ * fraction of a hedge per request, so that hedging can at most double the
+ * load on the cores.
+ */
+class Hedger {
+  // The number of recent latencies kept for each action.
+  private static final int WINDOW = 256;
+
+  // The number of latencies observed for an action before it is hedged.
+  private static final int MIN_SAMPLES = 20;
+
+  // The number of new latencies after which the hedge delay is recomputed.
+  private static final int RECOMPUTE_INTERVAL = 16;
+
+  // The largest number of hedges that can be saved up in the budget.
+  private static final double MAX_BUDGET = 10;
+
+  private final Client client;
+  private final double percentile;
+  private final double ratio;
+  private final ConcurrentHashMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+  private double budget;
+
+  Hedger(Client client, double percentile, double ratio) {
+    this.client = client;
+    this.percentile = percentile;
+    this.ratio = ratio;
+  }
+
+  /**
+   * A window of recent latencies for one action, and the hedge delay
+   * derived from them.
+   */
+  private static class LatencyWindow {
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private long delayNanos = -1;
+
+    synchronized void record(long nanos, double percentile) {
+      samples[next] = nanos;
+      next = (next + 1) % WINDOW;
+      count = Math.min(count + 1, WINDOW);
+      sinceRecompute++;
+      if (count >= MIN_SAMPLES && (delayNanos < 0 || sinceRecompute >= RECOMPUTE_INTERVAL)) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int i = (int) Math.ceil(percentile * count) - 1;
+        delayNanos = sorted[Math.max(0, Math.min(i, count - 1))];
+        sinceRecompute = 0;
+      }
+    }
+
+    synchronized long delayNanos() {
+      return delayNanos;
+    }
+  }
+
+  /**
+   * Sends a request, and hedges it if it is still outstanding after the
+   * hedge delay for its action.
+   * @return a future that completes with the first successful response, or
+   *   with the failure of the last request to fail
+   */
+  <T> CompletableFuture<T> request(
+      final String action, final RequestBody body, final Client.ResponseCreator<T> respCreator) {
+    final LatencyWindow window = window(action);
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    final AtomicInteger inFlight = new AtomicInteger(1);
+    earn();
+
+    final Endpoint primary = client.selectEndpoint(action, null);
+    final CompletableFuture<T> first = send(action, body, respCreator, primary, window);
+    forward(first, result, inFlight);
+    cancelOnCompletion(result, first);
+
+    long delay = window.delayNanos();
+    if (delay < 0) {
+      return result;
+    }
+    Client.timer()
+        .schedule(
+            new Runnable() {
+              public void run() {
+                if (result.isDone()) {
+                  return;
+                }
+                Endpoint secondary = client.selectEndpoint(action, primary);
+                if (secondary == null) {
+                  return; // Every endpoint's circuit breaker is open.
+                }
+                if (secondary == primary || !spend()) {
+                  // A hedge to the same URL would only add to its load.
+                  secondary.circuitBreaker().release();
+                  return;
+                }
+                if (inFlight.incrementAndGet() == 1) {
+                  // The first request failed while we were checking.
+                  secondary.circuitBreaker().release();
+                  return;
+                }
+                CompletableFuture<T> hedge = send(action, body, respCreator, secondary, window);
+                forward(hedge, result, inFlight);
+                cancelOnCompletion(result, hedge);
+              }
+            },
+            delay,
+            TimeUnit.NANOSECONDS);
+    return result;
+  }
+
+  private LatencyWindow window(String action) {
+    LatencyWindow w = latencies.get(action);
+    if (w == null) {
+      latencies.putIfAbsent(action, new LatencyWindow());
+      w = latencies.get(action);
+    }
+    return w;
+  }
+
+  private synchronized void earn() {
+    budget = Math.min(MAX_BUDGET, budget + ratio);
+  }
+
+  private synchronized boolean spend() {
+    if (budget < 1) {
+      return false;
+    }
+    budget--;
+    return true;
+  }
+
+  private <T> CompletableFuture<T> send(
+      String action,
+      RequestBody body,
+      Client.ResponseCreator<T> respCreator,
+      Endpoint endpoint,
+      final LatencyWindow window) {
+    final long start = System.nanoTime();
+    CompletableFuture<T> future = client.postAsync(action, body, respCreator, null, endpoint);
+    future.whenComplete(
+        new BiConsumer<T, Throwable>() {
+          public void accept(T resp, Throwable err) {
+            if (err == null) {
+              window.record(System.nanoTime() - start, percentile);
+            }
+          }
+        });
+    return future;
+  }
+
+  /**
+   * Completes result with the outcome of one of the requests. A failure is
+   * only passed on once no other request remains in flight.
+   */
+  private static <T> void forward(
+      CompletableFuture<T> from, final CompletableFuture<T> result, final AtomicInteger inFlight) {
+    from.whenComplete(
+        new BiConsumer<T, Throwable>() {
+          public void accept(T resp, Throwable err) {
+            if (err == null) {
+              result.complete(resp);
+            } else if (inFlight.decrementAndGet() == 0) {
+              result.completeExceptionally(err);
+            }
+          }
+        });
+  }
+
+  /**
+   * Cancels a request once the overall result is known, so that the slower
+   * of a hedged pair doesn't hold a connection any longer than necessary.
+   */
+  private static <T> void cancelOnCompletion(
+      CompletableFuture<T> result, final CompletableFuture<T> request) {
+    result.whenComplete(
+        new BiConsumer<T, Throwable>() {
+          public void accept(T resp, Throwable err) {
+            request.cancel(false);
+          }
+        });
+  }
+}
@@ -0,0 +1,225 @@
+package com.chain.http;
+
+import com.chain.common.Utils;
+import com.google.gson.JsonIOException;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * JsonRequestBody is a request body that serializes an object as JSON
+ * directly into the connection's sink each time it is written, instead of
+ * holding the whole serialized body in memory. Such a body is sent with
+ * chunked transfer encoding, since its length isn't known in advance. The
+ * exception is a body found to be no larger than the client's compression
+ * threshold, which is serialized once, kept for every attempt, and sent
+ * with its length.
+ */
+class JsonRequestBody extends RequestBody {
+  static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+  private final Object body;
+
+  // The body's JSON, if it was serialized before the request was built.
+  private final Buffer serialized;
+
+  // The serialized body, if it's been found to be no larger than a
+  // compression threshold. Small bodies are kept rather than serialized
+  // again on every attempt.
+  private Buffer small;
+  private long checkedThreshold = -1;
+  private boolean large;
+
+  /**
+   * SerializationException reports a body that could not be serialized.
+   * Unlike other I/O errors while writing the body, it isn't retriable.
+   */
+  static class SerializationException extends IOException {
+    SerializationException(RuntimeException cause) {
+      super(cause.getMessage(), cause);
+    }
+  }
+
+  JsonRequestBody(Object body) {
+    this(body, null);
+  }
+
+  private JsonRequestBody(Object body, Buffer serialized) {
+    this.body = body;
+    this.serialized = serialized;
+  }
+
+  /**
+   * Returns a body that sends JSON already serialized by the caller.
+   */
+  static JsonRequestBody serialized(String json) {
+    return new JsonRequestBody(null, new Buffer().writeUtf8(json));
+  }
+
+  @Override
+  public MediaType contentType() {
+    return JSON;
+  }
+
+  /**
+   * Returns the length of the body if it has already been serialized, or -1
+   * if it is serialized as it's written.
+   */
+  @Override
+  public long contentLength() {
+    if (serialized != null) {
+      return serialized.size();
+    }
+    synchronized (this) {
+      return small != null ? small.size() : -1;
+    }
+  }
+
+  /**
+   * Returns whether the serialized body is larger than threshold bytes. At
+   * most threshold bytes of the body are serialized to find out. Once a body
+   * has been serialized, it is kept, so that its length stays known.
+   */
+  synchronized boolean largerThan(long threshold) {
+    if (serialized != null) {
+      return serialized.size() > threshold;
+    }
+    if (small != null) {
+      return small.size() > threshold;
+    }
+    if (checkedThreshold == threshold) {
+      return large;
+    }
+    Buffer buffer = new Buffer();
+    try {
+      write(new LimitedWriter(buffer, threshold));
+      small = buffer;
+      large = false;
+    } catch (LimitedWriter.LimitExceededException ex) {
+      large = true;
+    } catch (IOException ex) {
+      // The body can't be serialized; writeTo will report it.
+      large = false;
+    }
+    checkedThreshold = threshold;
+    return large;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    Buffer cached = serialized;
+    if (cached == null) {
+      synchronized (this) {
+        cached = small;
+      }
+    }
+    if (cached != null) {
+      sink.write(cached.clone(), cached.size());
+      return;
+    }
+    write(new SinkWriter(sink));
+  }
+
+  private void write(Writer writer) throws IOException {
+    try {
+      Utils.serializer.toJson(this.body, writer);
+    } catch (JsonIOException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new SerializationException(ex);
+    } catch (RuntimeException ex) {
+      // This is called from OkHttp's dispatcher for asynchronous requests,
+      // where an unchecked exception would never reach the caller.
+      throw new SerializationException(ex);
+    }
+  }
+
+  /**
+   * SinkWriter encodes characters as UTF-8 directly into a sink. Unlike an
+   * OutputStreamWriter, it needs no buffer of its own, since the sink is
+   * already buffered.
+   */
+  private static class SinkWriter extends Writer {
+    private final BufferedSink sink;
+
+    SinkWriter(BufferedSink sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      sink.writeUtf8CodePoint(c);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      sink.writeUtf8(str, off, off + len);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      sink.writeUtf8(new String(cbuf, off, len));
+    }
+
+    @Override
+    public void flush() throws IOException {}
+
+    @Override
+    public void close() throws IOException {}
+  }
+
+  /**
+   * LimitedWriter writes into a buffer until it holds more than a limit, and
+   * then gives up.
+   */
+  private static class LimitedWriter extends SinkWriter {
+    /**
+     * Signals that the limit was exceeded. It carries no stack trace, since
+     * it is thrown for every large body.
+     */
+    static class LimitExceededException extends IOException {
+      @Override
+      public synchronized Throwable fillInStackTrace() {
+        return this;
+      }
+    }
+
+    private final Buffer buffer;
+    private final long limit;
+
+    LimitedWriter(Buffer buffer, long limit) {
+      super(buffer);
+      this.buffer = buffer;
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      super.write(c);
+      check();
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      super.write(str, off, len);
+      check();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      super.write(cbuf, off, len);
+      check();
+    }
+
+    private void check() throws LimitExceededException {
+      if (buffer.size() > limit) {
+        throw new LimitExceededException();
+      }
+    }
+  }
+}
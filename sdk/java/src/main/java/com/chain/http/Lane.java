@@ -0,0 +1,212 @@
+package com.chain.http;
+
+import com.chain.exception.OverloadException;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Lane is a separate path through a client for one class of requests. Each
+ * lane has its own connections, its own limit on the requests it has in
+ * flight, and its own statistics and circuit breaker for each of the
+ * client's URLs, so requests in one lane can't tie up the capacity of
+ * another.
+ * <br>
+ * Every client has a {@link #DEFAULT} lane, and a {@link #LONG_POLL} lane
+ * used by transaction feeds, whose requests may each hold a connection for
+ * a minute or more. Other lanes can be added with
+ * {@link Client.Builder#setLane(String, int)}, and requests are sent in
+ * them with {@link RequestOptions#setLane(String)}.
+ * <br>
+ * Requests beyond a lane's limit wait in a queue until a request in the
+ * lane finishes, for no longer than their call's deadline or attempt
+ * timeout allows. The time they spend waiting is recorded, as a measure of
+ * whether the lane's limit is large enough for its load.
+ */
+public class Lane {
+  /**
+   * The name of the lane used by requests that don't specify one.
+   */
+  public static final String DEFAULT = "default";
+
+  /**
+   * The name of the lane used by long-polling feed queries.
+   */
+  public static final String LONG_POLL = "long-poll";
+
+  private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+  private final String name;
+  private final int maxRequests;
+  private final List<Endpoint> endpoints;
+  private final Transport transport;
+  private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+  private int inFlight;
+  private long requests;
+  private long waitNanos;
+  private long maxWaitNanos;
+
+  /**
+   * A request waiting for room in the lane.
+   */
+  private static class Waiter extends CompletableFuture<Void> {
+    final long queuedAtNanos = System.nanoTime();
+  }
+
+  Lane(String name, int maxRequests, List<Endpoint> endpoints, Transport transport) {
+    this.name = name;
+    this.maxRequests = maxRequests;
+    this.endpoints = endpoints;
+    this.transport = transport;
+  }
+
+  /**
+   * Returns the name of the lane.
+   * @return the name
+   */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Returns the limit on the number of requests in flight in the lane.
+   * @return the limit, or 0 if the lane is unlimited
+   */
+  public int maxRequests() {
+    return maxRequests;
+  }
+
+  /**
+   * Returns the lane's endpoints, one for each of the client's base URLs,
+   * along with the statistics observed for them by requests in the lane.
+   * @return the lane's endpoints
+   */
+  public List<Endpoint> endpoints() {
+    return endpoints;
+  }
+
+  /**
+   * Returns the number of requests in flight in the lane.
+   * @return the number of requests
+   */
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Returns the number of requests waiting for room in the lane.
+   * @return the number of requests
+   */
+  public synchronized int queued() {
+    return waiters.size();
+  }
+
+  /**
+   * Returns the total number of requests sent in the lane, counting each
+   * attempt of a retried request.
+   * @return the number of requests
+   */
+  public synchronized long requests() {
+    return requests;
+  }
+
+  /**
+   * Returns the total time requests in the lane have spent waiting for
+   * room. Divided by {@link #requests()}, it gives the average wait.
+   * @return a number of nanoseconds
+   */
+  public synchronized long waitNanos() {
+    return waitNanos;
+  }
+
+  /**
+   * Returns the longest time a request in the lane has waited for room.
+   * @return a number of nanoseconds
+   */
+  public synchronized long maxWaitNanos() {
+    return maxWaitNanos;
+  }
+
+  /**
+   * Returns the transport that sends the lane's requests.
+   */
+  Transport transport() {
+    return transport;
+  }
+
+  /**
+   * Asks for room to send a request in the lane. The returned future
+   * completes once the request may be sent, which may be immediately, or
+   * fails with an {@link OverloadException} if no room is made within the
+   * given time, or waits without bound if it is 0. Every request given room
+   * must later call {@link #release()}.
+   */
+  CompletableFuture<Void> acquire(long timeoutNanos) {
+    final Waiter waiter;
+    synchronized (this) {
+      requests++;
+      if (maxRequests <= 0 || (inFlight < maxRequests && waiters.isEmpty())) {
+        inFlight++;
+        return ACQUIRED;
+      }
+      waiter = new Waiter();
+      waiters.add(waiter);
+    }
+    if (timeoutNanos <= 0) {
+      return waiter;
+    }
+
+    Client.timer()
+        .schedule(
+            new Runnable() {
+              public void run() {
+                synchronized (Lane.this) {
+                  if (!waiters.remove(waiter)) {
+                    return; // It was given room in time.
+                  }
+                }
+                waiter.completeExceptionally(
+                    new OverloadException(
+                        "too many requests in flight in lane " + name + "; request shed"));
+              }
+            },
+            timeoutNanos,
+            TimeUnit.NANOSECONDS);
+    return waiter;
+  }
+
+  /**
+   * Records the end of a request, passing its room to the next waiting
+   * request, if there is one.
+   */
+  void release() {
+    Waiter next;
+    synchronized (this) {
+      next = waiters.poll();
+      if (next == null) {
+        inFlight--;
+        return;
+      }
+      long waited = System.nanoTime() - next.queuedAtNanos;
+      waitNanos += waited;
+      maxWaitNanos = Math.max(maxWaitNanos, waited);
+    }
+    // The waiter is completed outside the lock, since completing it may
+    // send its request.
+    next.complete(null);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "%s: inFlight=%d queued=%d requests=%d wait=%.1fms maxWait=%.1fms",
+        name,
+        inFlight,
+        waiters.size(),
+        requests,
+        waitNanos / 1e6,
+        maxWaitNanos / 1e6);
+  }
+}
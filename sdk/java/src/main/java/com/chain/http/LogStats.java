@@ -0,0 +1,78 @@
+package com.chain.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LogStats records what became of the requests a client's logger was asked
+ * to log. See {@link Client.Builder#setLogger(java.io.OutputStream)}.
+ */
+public class LogStats {
+  private final AtomicLong logged = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong sampledOut = new AtomicLong();
+  private final AtomicLong truncated = new AtomicLong();
+
+  /**
+   * Returns the number of requests written to the log.
+   * @return the number of log entries
+   */
+  public long logged() {
+    return logged.get();
+  }
+
+  /**
+   * Returns the number of log entries dropped because the asynchronous
+   * logging queue was full, or because they couldn't be written.
+   * @return the number of log entries
+   * @see Client.Builder#setAsyncLogging(int)
+   */
+  public long dropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Returns the number of requests that would have been logged, but were
+   * left out by sampling.
+   * @return the number of requests
+   * @see Client.Builder#setLogSampling(double, double)
+   */
+  public long sampledOut() {
+    return sampledOut.get();
+  }
+
+  /**
+   * Returns the number of log entries whose request or response body was
+   * cut short.
+   * @return the number of log entries
+   * @see Client.Builder#setLogBodyLimit(int)
+   */
+  public long truncated() {
+    return truncated.get();
+  }
+
+  void recordLogged() {
+    logged.incrementAndGet();
+  }
+
+  void recordDropped() {
+    dropped.incrementAndGet();
+  }
+
+  void recordSampledOut() {
+    sampledOut.incrementAndGet();
+  }
+
+  void recordTruncated() {
+    truncated.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "logged=%d dropped=%d sampledOut=%d truncated=%d",
+        logged(),
+        dropped(),
+        sampledOut(),
+        truncated());
+  }
+}
@@ -2,21 +2,39 @@ package com.chain.http;
 
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
-import okio.BufferedSink;
+import okio.Buffer;
 import okio.BufferedSource;
+import okio.GzipSource;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * The LoggingInterceptor object logs http requests given
  * an output stream.
+ * <br>
+ * By default every entry is written on the request's thread, with the
+ * complete request and response bodies. A client can instead limit the
+ * size of the logged bodies, sample the requests it logs, log only slow
+ * requests, and write entries on a background thread; see
+ * {@link Client.Builder#setAsyncLogging(int)} and the settings that
+ * follow it.
  */
 public class LoggingInterceptor implements Interceptor {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   private Level level;
   private OutputStream logger;
+  private int maxBodyBytes; // 0 for no limit
+  private double requestSampleRate = 1;
+  private double errorSampleRate = 1;
+  private long slowNanos; // 0 to log requests however long they take
+  private AsyncLogWriter writer; // null to write on the request's thread
+  private LogStats stats = new LogStats();
 
   public enum Level {
     ALL,
@@ -29,48 +47,178 @@ public class LoggingInterceptor implements Interceptor {
     this.level = logAllRequests;
   }
 
+  LoggingInterceptor(
+      OutputStream logger,
+      Level level,
+      int maxBodyBytes,
+      double requestSampleRate,
+      double errorSampleRate,
+      long slowNanos,
+      AsyncLogWriter writer,
+      LogStats stats) {
+    this(logger, level);
+    this.maxBodyBytes = maxBodyBytes;
+    this.requestSampleRate = requestSampleRate;
+    this.errorSampleRate = errorSampleRate;
+    this.slowNanos = slowNanos;
+    this.writer = writer;
+    this.stats = stats;
+  }
+
   @Override
   public Response intercept(Interceptor.Chain chain) throws IOException {
     Request request = chain.request();
+    long start = System.nanoTime();
     Response response = chain.proceed(request);
+    long elapsedNanos = System.nanoTime() - start;
 
     boolean isError = (response.code() / 100) == 5 || (response.code() / 100) == 4;
-    if ((isError && level == level.ERRORS) || level == level.ALL) {
-      logRequestData(request, response);
+    if (shouldLog(isError, elapsedNanos)) {
+      Entry entry = capture(request, response, elapsedNanos);
+      if (writer != null) {
+        writer.write(entry);
+      } else {
+        logger.write(entry.format());
+        stats.recordLogged();
+      }
     }
 
     return response;
   }
 
+  /**
+   * Decides whether to log a request. Errors are logged at the ERRORS and
+   * ALL levels, and other requests at the ALL level, unless a slow-request
+   * threshold is set: then other requests are logged at either level, but
+   * only if they were slow. Requests that pass are then sampled.
+   */
+  private boolean shouldLog(boolean isError, long elapsedNanos) {
+    if (level == Level.NONE) {
+      return false;
+    }
+    if (!isError) {
+      boolean wanted = slowNanos > 0 ? elapsedNanos >= slowNanos : level == Level.ALL;
+      if (!wanted) {
+        return false;
+      }
+    }
+    double rate = isError ? errorSampleRate : requestSampleRate;
+    if (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+      stats.recordSampledOut();
+      return false;
+    }
+    return true;
+  }
+
   public void logRequestData(Request request, Response response) throws IOException {
-    String reqid = response.header("Chain-Request-Id");
+    logger.write(capture(request, response, -1).format());
+    stats.recordLogged();
+  }
+
+  /**
+   * Copies what is logged about a request, up to the body size limit. The
+   * response body is peeked at, not consumed, so that the caller can still
+   * read it.
+   */
+  private Entry capture(Request request, Response response, long elapsedNanos) {
+    Entry entry = new Entry();
+    entry.reqid = response.header("Chain-Request-Id");
+    entry.url = request.urlString();
+    entry.code = response.code();
+    entry.elapsedNanos = elapsedNanos;
+    entry.label = response.code() / 100 == 5 ? "chain-error" : "chain-request";
 
-    String requestBody;
+    long limit = maxBodyBytes > 0 ? maxBodyBytes : Long.MAX_VALUE;
     try {
-      BufferedSink reqBodySink = new okio.Buffer();
-      request.body().writeTo(reqBodySink);
-      requestBody = new String(reqBodySink.buffer().readByteArray());
+      Buffer reqBody = new Buffer();
+      RequestBody body = request.body();
+      if (body instanceof GzipRequestBody) {
+        body = ((GzipRequestBody) body).delegate(); // log it uncompressed
+      }
+      body.writeTo(reqBody);
+      entry.request = readTruncated(reqBody, limit, entry);
     } catch (IOException e) {
-      requestBody = "Unable to read request body.";
+      entry.request = "Unable to read request body.";
     }
 
-    String label = "chain-request";
-    if (response.code() / 100 == 5) {
-      label = "chain-error";
+    try {
+      BufferedSource source = response.body().source();
+      // Buffer one byte past the limit, to learn whether there is more.
+      source.request(limit == Long.MAX_VALUE ? limit : limit + 1);
+      Buffer buffered = source.buffer();
+      Buffer respBody = new Buffer();
+      buffered.copyTo(respBody, 0, Math.min(buffered.size(), limit));
+      boolean cut = buffered.size() > limit;
+      if ("gzip".equalsIgnoreCase(response.header("Content-Encoding"))) {
+        respBody = gunzip(respBody, limit);
+      }
+      if (cut && respBody.size() <= limit) {
+        entry.truncated = true;
+      }
+      entry.response = readTruncated(respBody, limit, entry);
+    } catch (IOException e) {
+      entry.response = "Unable to read response body.";
     }
 
-    BufferedSource source = response.body().source();
-    source.request(Long.MAX_VALUE);
-
-    logger.write(
-        String.format(
-                "%s:\n\treqid=%s\n\turl=%s\n\tcode=%d\n\trequest=%s\n\tresponse=%s\n",
-                label,
-                reqid,
-                request.urlString(),
-                response.code(),
-                requestBody,
-                source.buffer().clone().readString(Charset.forName("UTF-8")))
-            .getBytes());
+    if (entry.truncated) {
+      stats.recordTruncated();
+    }
+    return entry;
+  }
+
+  /**
+   * Decompresses up to a little more than limit bytes of a gzipped body,
+   * which may itself have been cut short.
+   */
+  private static Buffer gunzip(Buffer compressed, long limit) {
+    Buffer out = new Buffer();
+    GzipSource source = new GzipSource(compressed);
+    try {
+      while (out.size() <= limit && source.read(out, 8192) != -1) {}
+    } catch (IOException e) {
+      // The compressed body was truncated; keep what was decompressed.
+    }
+    return out;
+  }
+
+  private static String readTruncated(Buffer body, long limit, Entry entry)
+      throws IOException {
+    if (body.size() <= limit) {
+      return body.readString(UTF_8);
+    }
+    entry.truncated = true;
+    return body.readString(limit, UTF_8);
+  }
+
+  /**
+   * Entry is what is logged about one request. It is captured on the
+   * request's thread, and formatted on whichever thread writes it.
+   */
+  static class Entry {
+    String label;
+    String reqid;
+    String url;
+    int code;
+    long elapsedNanos; // -1 if not measured
+    String request;
+    String response;
+    boolean truncated;
+
+    byte[] format() {
+      StringBuilder b = new StringBuilder(128 + request.length() + response.length());
+      b.append(label).append(":\n");
+      b.append("\treqid=").append(reqid).append('\n');
+      b.append("\turl=").append(url).append('\n');
+      b.append("\tcode=").append(code).append('\n');
+      if (elapsedNanos >= 0) {
+        b.append("\telapsed=").append(elapsedNanos / 1000000).append("ms\n");
+      }
+      b.append("\trequest=").append(request).append('\n');
+      b.append("\tresponse=").append(response).append('\n');
+      if (truncated) {
+        b.append("\ttruncated=true\n");
+      }
+      return b.toString().getBytes(UTF_8);
+    }
   }
 }
@@ -0,0 +1,143 @@
+package com.chain.http;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import com.squareup.okhttp.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OkHttpTransport sends requests with an OkHttp client, over a pool of
+ * HTTP/1.1 connections (or HTTP/2, where OkHttp negotiates it over TLS).
+ * It is the default transport.
+ */
+public class OkHttpTransport implements Transport {
+  private final OkHttpClient httpClient;
+  // A copy of httpClient without a read timeout, for requests bounded by a
+  // timeout of their own. It shares the client's connection pool and
+  // dispatcher.
+  private volatile OkHttpClient untimedClient;
+
+  /**
+   * Creates a transport that sends requests with the given OkHttp client.
+   * The client should be configured not to follow redirects.
+   * @param httpClient the OkHttp client
+   */
+  public OkHttpTransport(OkHttpClient httpClient) {
+    this.httpClient = httpClient;
+    this.untimedClient = untimed(httpClient);
+  }
+
+  /**
+   * Returns the underlying OkHttp client. Settings changed on it after the
+   * transport is created don't apply to requests sent with a timeout of
+   * their own.
+   * @return the OkHttp client
+   */
+  public OkHttpClient httpClient() {
+    return httpClient;
+  }
+
+  @Override
+  public Response execute(Request request) throws IOException {
+    return httpClient.newCall(request).execute();
+  }
+
+  @Override
+  public Cancellable enqueue(Request request, Callback callback) {
+    return enqueue(httpClient.newCall(request), callback);
+  }
+
+  @Override
+  public Response execute(Request request, long timeoutNanos) throws IOException {
+    final Call call = untimedClient.newCall(request);
+    if (timeoutNanos <= 0) {
+      return call.execute();
+    }
+
+    final AtomicBoolean timedOut = new AtomicBoolean();
+    final ScheduledFuture<?> timer =
+        Client.timer()
+            .schedule(
+                new Runnable() {
+                  public void run() {
+                    timedOut.set(true);
+                    call.cancel();
+                  }
+                },
+                timeoutNanos,
+                TimeUnit.NANOSECONDS);
+    Response response;
+    try {
+      response = call.execute();
+    } catch (IOException ex) {
+      timer.cancel(false);
+      throw timedOut.get() ? Timeouts.timeout(ex) : ex;
+    }
+
+    // The timer keeps running until the caller has read and closed the body.
+    ResponseBody body = response.body();
+    ForwardingSource source =
+        new ForwardingSource(body.source()) {
+          @Override
+          public long read(Buffer sink, long byteCount) throws IOException {
+            try {
+              return super.read(sink, byteCount);
+            } catch (IOException ex) {
+              throw timedOut.get() ? Timeouts.timeout(ex) : ex;
+            }
+          }
+
+          @Override
+          public void close() throws IOException {
+            timer.cancel(false);
+            super.close();
+          }
+        };
+    return response
+        .newBuilder()
+        .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+        .build();
+  }
+
+  @Override
+  public Cancellable enqueue(Request request, long timeoutNanos, Callback callback) {
+    Timeouts.TimeoutCallback timed = new Timeouts.TimeoutCallback(callback);
+    Cancellable call = enqueue(untimedClient.newCall(request), timed);
+    timed.start(call, timeoutNanos);
+    return call;
+  }
+
+  private static Cancellable enqueue(final Call call, Callback callback) {
+    call.enqueue(callback);
+    return new Cancellable() {
+      public void cancel() {
+        call.cancel();
+      }
+    };
+  }
+
+  /**
+   * Passes settings changed on the OkHttp client since the transport was
+   * created on to requests sent with a timeout of their own.
+   */
+  void settingsChanged() {
+    this.untimedClient = untimed(httpClient);
+  }
+
+  private static OkHttpClient untimed(OkHttpClient httpClient) {
+    OkHttpClient c = httpClient.clone();
+    c.setReadTimeout(0, TimeUnit.MILLISECONDS);
+    return c;
+  }
+}
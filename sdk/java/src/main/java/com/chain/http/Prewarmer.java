@@ -0,0 +1,128 @@
+package com.chain.http;
+
+import com.chain.exception.BadURLException;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prewarmer opens connections to each of a client's URLs as soon as the
+ * client is built, so that its first requests don't wait for TCP and TLS
+ * handshakes. For each URL it sends a number of requests for a cheap action
+ * at once, in the default lane; since none of them finds an idle connection
+ * in the pool, each opens one of its own, which the pool then keeps. The
+ * requests are repeated at an interval, before the pool closes the
+ * connections for being idle.
+ * <br>
+ * A URL is warm once every request of a round to it has been answered,
+ * whatever the response's status. The client is ready once all of its URLs
+ * are warm. A URL that doesn't answer is tried again in the next round.
+ */
+class Prewarmer {
+  private final Client client;
+  private final String action;
+  private final int connections;
+  private final long intervalNanos;
+  private final boolean[] warm;
+  private int warmCount;
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+  Prewarmer(Client client, String action, int connections, long intervalNanos) {
+    this.client = client;
+    this.action = action;
+    this.connections = connections;
+    this.intervalNanos = intervalNanos;
+    this.warm = new boolean[client.endpoints().size()];
+  }
+
+  /**
+   * Returns a future that completes when every URL is warm.
+   */
+  CompletableFuture<Void> ready() {
+    return ready;
+  }
+
+  /**
+   * Starts the first round, and schedules the rounds that follow for as
+   * long as the client is in use.
+   */
+  void start() {
+    round();
+    schedule(new WeakReference<>(this), intervalNanos);
+  }
+
+  /**
+   * Schedules the next round. The timer holds only a weak reference to the
+   * prewarmer, so that rounds stop once its client is no longer in use.
+   */
+  private static void schedule(final WeakReference<Prewarmer> ref, final long intervalNanos) {
+    Client.timer()
+        .schedule(
+            new Runnable() {
+              public void run() {
+                Prewarmer p = ref.get();
+                if (p != null) {
+                  p.round();
+                  schedule(ref, intervalNanos);
+                }
+              }
+            },
+            intervalNanos,
+            TimeUnit.NANOSECONDS);
+  }
+
+  private void round() {
+    List<Endpoint> endpoints = client.endpoints();
+    for (Endpoint endpoint : endpoints) {
+      warm(endpoint);
+    }
+  }
+
+  private void warm(final Endpoint endpoint) {
+    final AtomicInteger answered = new AtomicInteger();
+    Callback callback =
+        new Callback() {
+          public void onFailure(Request request, IOException ex) {
+            // The URL is tried again in the next round.
+          }
+
+          public void onResponse(Response response) throws IOException {
+            response.body().close();
+            if (answered.incrementAndGet() == connections) {
+              warmed(endpoint);
+            }
+          }
+        };
+    Transport transport = client.lane(Lane.DEFAULT).transport();
+    for (int i = 0; i < connections; i++) {
+      Request req;
+      try {
+        req = client.buildRequest(endpoint, action, client.jsonBody(new HashMap<>()));
+      } catch (BadURLException ex) {
+        return;
+      }
+      transport.enqueue(req, callback);
+    }
+  }
+
+  private void warmed(Endpoint endpoint) {
+    synchronized (this) {
+      if (warm[endpoint.position()]) {
+        return;
+      }
+      warm[endpoint.position()] = true;
+      if (++warmCount < warm.length) {
+        return;
+      }
+    }
+    ready.complete(null);
+  }
+}
@@ -0,0 +1,16 @@
+package com.chain.http;
+
+/**
+ * A RequestListener is told how the time of each of a client's calls was
+ * spent, once the call has finished. It is called on the thread that
+ * finished the call, which may be one of the HTTP client's threads, so it
+ * should return quickly. Exceptions it throws are ignored.
+ * @see Client.Builder#setRequestListener(RequestListener)
+ */
+public interface RequestListener {
+  /**
+   * Called when a call finishes, whether it succeeded or failed.
+   * @param timing the breakdown of the call's time
+   */
+  void onComplete(RequestTiming timing);
+}
@@ -0,0 +1,139 @@
+package com.chain.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestOptions adjusts how a single call is sent, overriding the client's
+ * timeouts and retry policy for that call alone. This lets latency-sensitive
+ * calls fail fast while long-polls on the same client wait for minutes:
+ * <pre>
+ * RequestOptions fast = new RequestOptions()
+ *   .setDeadline(2, TimeUnit.SECONDS)
+ *   .setAttemptTimeout(500, TimeUnit.MILLISECONDS)
+ *   .setPriority(RequestOptions.Priority.HIGH);
+ * Transaction.submit(client, signed, fast);
+ * </pre>
+ * Options are read when a call starts, so one RequestOptions object can be
+ * shared by many calls.
+ */
+public class RequestOptions {
+  /**
+   * The priority of a call, which decides the order in which calls waiting
+   * under a client's concurrency limit are sent.
+   * @see Client.Builder#setConcurrencyLimit(int, int, long, TimeUnit)
+   */
+  public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW,
+  }
+
+  private long deadlineNanos;
+  private long attemptTimeoutNanos = -1;
+  private int maxRetries = -1;
+  private Priority priority = Priority.NORMAL;
+  private String lane;
+
+  /**
+   * Sets the overall time allowed for the call, including all retries and
+   * the waits between them. Once the deadline has passed, no further
+   * attempts are made, and the call fails with the error of the last
+   * attempt. By default a call has no deadline.
+   * @param timeout the time allowed, or 0 for no deadline
+   * @param unit the unit of time
+   * @return this object
+   */
+  public RequestOptions setDeadline(long timeout, TimeUnit unit) {
+    this.deadlineNanos = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * Sets the time allowed for each attempt of the call, from sending the
+   * request to reading the response. It replaces the client's read timeout
+   * for the call, and may be longer. An attempt that times out is retried.
+   * By default each attempt is bounded by the client's read timeout, or by
+   * the remaining time before the deadline, if there is one.
+   * @param timeout the time allowed, or 0 for no limit
+   * @param unit the unit of time
+   * @return this object
+   */
+  public RequestOptions setAttemptTimeout(long timeout, TimeUnit unit) {
+    this.attemptTimeoutNanos = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * Sets the number of times a failed attempt may be retried. The default
+   * is the client's usual limit of 10.
+   * @param maxRetries the number of retries, or 0 to never retry
+   * @return this object
+   */
+  public RequestOptions setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  /**
+   * Sets the priority of the call. The default is NORMAL.
+   * @param priority the priority
+   * @return this object
+   */
+  public RequestOptions setPriority(Priority priority) {
+    this.priority = priority;
+    return this;
+  }
+
+  /**
+   * Sets the lane the call is sent in. By default calls are sent in the
+   * {@link Lane#DEFAULT} lane, except for long-polling feed queries, which
+   * are sent in the {@link Lane#LONG_POLL} lane.
+   * @param lane the name of one of the client's lanes
+   * @return this object
+   * @see Client.Builder#setLane(String, int)
+   */
+  public RequestOptions setLane(String lane) {
+    this.lane = lane;
+    return this;
+  }
+
+  /**
+   * Returns the overall time allowed for the call.
+   * @return a number of nanoseconds, or 0 if the call has no deadline
+   */
+  public long deadlineNanos() {
+    return deadlineNanos;
+  }
+
+  /**
+   * Returns the time allowed for each attempt.
+   * @return a number of nanoseconds, 0 for no limit, or -1 if not set
+   */
+  public long attemptTimeoutNanos() {
+    return attemptTimeoutNanos;
+  }
+
+  /**
+   * Returns the number of times a failed attempt may be retried.
+   * @return the number of retries, or -1 if not set
+   */
+  public int maxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Returns the priority of the call.
+   * @return the priority
+   */
+  public Priority priority() {
+    return priority;
+  }
+
+  /**
+   * Returns the lane the call is sent in.
+   * @return the name of the lane, or null for the default lane
+   */
+  public String lane() {
+    return lane;
+  }
+}
@@ -0,0 +1,299 @@
+package com.chain.http;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RequestTiming breaks down the time taken by one call to a client, such as
+ * a single {@code Transaction.submit}, into the phases of each of its
+ * attempts: waiting to be sent, connecting, waiting for the response,
+ * reading the response body, and decoding it. It also records the backoff
+ * before each retry, so that a slow call can be traced to the network, the
+ * core or deserialization, and to the core's own logs through the
+ * Chain-Request-ID of each attempt.
+ * <br>
+ * A phase that wasn't reached, or that the transport can't measure, is
+ * reported as -1.
+ * @see RequestListener
+ */
+public class RequestTiming {
+  private final String action;
+  private final long startedAtNanos = System.nanoTime();
+  private final List<Attempt> attempts = new ArrayList<>();
+  private volatile long totalNanos = -1;
+  private volatile boolean succeeded;
+
+  RequestTiming(String action) {
+    this.action = action;
+  }
+
+  /**
+   * Returns the action called, such as submit-transaction.
+   * @return the action
+   */
+  public String action() {
+    return action;
+  }
+
+  /**
+   * Returns the Chain-Request-ID of the last attempt the core answered.
+   * @return the request ID, or null if no attempt was answered
+   */
+  public String requestId() {
+    List<Attempt> a = attempts();
+    for (int i = a.size() - 1; i >= 0; i--) {
+      if (a.get(i).requestId != null) {
+        return a.get(i).requestId;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the call's attempts, in the order they were made.
+   * @return the attempts
+   */
+  public synchronized List<Attempt> attempts() {
+    return Collections.unmodifiableList(new ArrayList<>(attempts));
+  }
+
+  /**
+   * Returns the time from the start of the call until it finished.
+   * @return a number of nanoseconds
+   */
+  public long totalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * Returns whether the call succeeded.
+   * @return true if the call returned a result
+   */
+  public boolean succeeded() {
+    return succeeded;
+  }
+
+  /**
+   * Starts timing a new attempt, which may follow a backoff after the
+   * previous one.
+   */
+  synchronized Attempt startAttempt() {
+    long now = System.nanoTime();
+    long backoff = 0;
+    if (!attempts.isEmpty()) {
+      Attempt previous = attempts.get(attempts.size() - 1);
+      backoff = previous.endedAtNanos > 0 ? now - previous.endedAtNanos : 0;
+    }
+    Attempt a = new Attempt(now, backoff);
+    attempts.add(a);
+    return a;
+  }
+
+  /**
+   * Returns the attempt in progress.
+   */
+  synchronized Attempt current() {
+    return attempts.isEmpty() ? null : attempts.get(attempts.size() - 1);
+  }
+
+  void finish(boolean succeeded) {
+    this.succeeded = succeeded;
+    this.totalNanos = System.nanoTime() - startedAtNanos;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder b = new StringBuilder();
+    b.append(action).append(" reqid=").append(requestId());
+    b.append(String.format(" total=%.1fms", totalNanos / 1e6));
+    List<Attempt> a = attempts();
+    for (int i = 0; i < a.size(); i++) {
+      b.append("\n  ").append(a.get(i));
+    }
+    return b.toString();
+  }
+
+  /**
+   * Attempt is the timing of one attempt of a call.
+   */
+  public static class Attempt {
+    private final long createdAtNanos;
+    private final long backoffNanos;
+    private volatile URL url;
+    private volatile String requestId;
+    private volatile int statusCode;
+    private volatile long sentAtNanos;
+    private volatile long dispatchedAtNanos;
+    private volatile long connectedAtNanos;
+    private volatile long headersAtNanos;
+    private volatile long bodyReadNanos = -1;
+    private volatile long decodeNanos = -1;
+    private volatile long endedAtNanos;
+    private volatile Exception failure;
+
+    Attempt(long createdAtNanos, long backoffNanos) {
+      this.createdAtNanos = createdAtNanos;
+      this.backoffNanos = backoffNanos;
+    }
+
+    /**
+     * Returns the base URL the attempt was sent to.
+     * @return the URL, or null if the attempt wasn't sent
+     */
+    public URL url() {
+      return url;
+    }
+
+    /**
+     * Returns the Chain-Request-ID the core gave the attempt.
+     * @return the request ID, or null if the core didn't answer
+     */
+    public String requestId() {
+      return requestId;
+    }
+
+    /**
+     * Returns the HTTP status code of the core's response to the attempt.
+     * @return the status code, or 0 if the core didn't answer
+     */
+    public int statusCode() {
+      return statusCode;
+    }
+
+    /**
+     * Returns how long the client waited before making the attempt, after
+     * the previous attempt failed.
+     * @return a number of nanoseconds, 0 for the first attempt
+     */
+    public long backoffNanos() {
+      return backoffNanos;
+    }
+
+    /**
+     * Returns how long the attempt waited to be sent: for room in its lane,
+     * under its URL's concurrency limit, and in the transport's queue.
+     * @return a number of nanoseconds, or -1
+     */
+    public long queuedNanos() {
+      long sent = dispatchedAtNanos > 0 ? dispatchedAtNanos : sentAtNanos;
+      return sent > 0 ? sent - createdAtNanos : -1;
+    }
+
+    /**
+     * Returns how long the attempt took to get a connection, including the
+     * TCP and TLS handshakes if a new connection was opened. It is close to
+     * 0 for a pooled connection, and -1 for transports that don't report
+     * it.
+     * @return a number of nanoseconds, or -1
+     */
+    public long connectNanos() {
+      if (dispatchedAtNanos == 0 || connectedAtNanos == 0) {
+        return -1;
+      }
+      return connectedAtNanos - dispatchedAtNanos;
+    }
+
+    /**
+     * Returns the time from sending the request, once connected, until the
+     * response headers arrived. It includes writing the request body and
+     * the time the core took to process the request.
+     * @return a number of nanoseconds, or -1
+     */
+    public long firstByteNanos() {
+      long from = connectedAtNanos > 0 ? connectedAtNanos : sentAtNanos;
+      if (from == 0 || headersAtNanos == 0) {
+        return -1;
+      }
+      return headersAtNanos - from;
+    }
+
+    /**
+     * Returns how long reading and decompressing the response body took.
+     * @return a number of nanoseconds, or -1 if the body wasn't read
+     */
+    public long bodyReadNanos() {
+      return bodyReadNanos;
+    }
+
+    /**
+     * Returns how long deserializing the response body took.
+     * @return a number of nanoseconds, or -1 if it wasn't deserialized
+     */
+    public long decodeNanos() {
+      return decodeNanos;
+    }
+
+    /**
+     * Returns the reason the attempt failed.
+     * @return the exception, or null if the attempt succeeded or was abandoned
+     */
+    public Exception failure() {
+      return failure;
+    }
+
+    /**
+     * Tags a request with the attempt, so that the transport's interceptors
+     * can time the attempt's connection.
+     */
+    Request tag(Request request) {
+      return request.newBuilder().tag(this).build();
+    }
+
+    void sent(URL url) {
+      this.url = url;
+      this.sentAtNanos = System.nanoTime();
+    }
+
+    void dispatched() {
+      this.dispatchedAtNanos = System.nanoTime();
+    }
+
+    void connected() {
+      this.connectedAtNanos = System.nanoTime();
+    }
+
+    void received(Response response) {
+      if (headersAtNanos == 0) {
+        headersAtNanos = System.nanoTime();
+      }
+      if (requestId == null) {
+        requestId = response.header("Chain-Request-ID");
+      }
+      statusCode = response.code();
+    }
+
+    void bodyRead(long nanos) {
+      this.bodyReadNanos = nanos;
+    }
+
+    void decoded(long nanos) {
+      this.decodeNanos = nanos;
+    }
+
+    void failed(Exception failure) {
+      this.failure = failure;
+      this.endedAtNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s reqid=%s backoff=%.1fms queued=%.1fms connect=%.1fms firstByte=%.1fms"
+              + " bodyRead=%.1fms decode=%.1fms%s",
+          url,
+          requestId,
+          backoffNanos / 1e6,
+          queuedNanos() / 1e6,
+          connectNanos() / 1e6,
+          firstByteNanos() / 1e6,
+          bodyReadNanos / 1e6,
+          decodeNanos / 1e6,
+          failure != null ? " failure=" + failure : "");
+    }
+  }
+}
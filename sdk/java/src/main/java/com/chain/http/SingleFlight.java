@@ -0,0 +1,137 @@
+package com.chain.http;
+
+import com.chain.common.Utils;
+import com.chain.exception.ChainException;
+import com.google.gson.Gson;
+import com.squareup.okhttp.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * SingleFlight collapses identical concurrent reads into one request. A call
+ * for an action and request body that is already in flight waits for the
+ * response to the request in flight instead of sending its own. Only the
+ * response body is shared: each call deserializes its own copy of the
+ * result, on its own thread, so callers may modify their results freely.
+ */
+class SingleFlight {
+  private final Client client;
+  private final Set<String> actions;
+  private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, SingleFlightStats> stats = new ConcurrentHashMap<>();
+
+  // Reads the raw response body, for each caller to deserialize.
+  private static final Client.ResponseCreator<byte[]> BYTES =
+      new Client.ResponseCreator<byte[]>() {
+        public byte[] create(Response response, Gson deserializer) throws IOException {
+          return response.body().bytes();
+        }
+      };
+
+  SingleFlight(Client client, Set<String> actions) {
+    this.client = client;
+    this.actions = actions;
+  }
+
+  /**
+   * Returns whether calls for the action are collapsed.
+   */
+  boolean handles(String action) {
+    return actions.contains(action);
+  }
+
+  /**
+   * Sends a read, or joins an identical read already in flight, and waits
+   * for its result. The result is deserialized on the calling thread.
+   * @param hedged whether the read may be hedged, if it is sent
+   */
+  <T> T request(String action, Object body, boolean hedged, Type tClass)
+      throws ChainException {
+    return decode(Client.await(flight(action, body, hedged)), tClass);
+  }
+
+  /**
+   * Sends a read, or joins an identical read already in flight, without
+   * blocking. The result is deserialized on the default asynchronous
+   * executor rather than on the thread that receives the response, so
+   * that the calls sharing a response don't deserialize it one by one.
+   * @param hedged whether the read may be hedged, if it is sent
+   */
+  <T> CompletableFuture<T> requestAsync(
+      String action, Object body, boolean hedged, final Type tClass) {
+    return flight(action, body, hedged)
+        .thenApplyAsync(
+            new Function<byte[], T>() {
+              public T apply(byte[] resp) {
+                return decode(resp, tClass);
+              }
+            });
+  }
+
+  /**
+   * Returns the response body of the read in flight for the action and
+   * request body, sending the read if there is none.
+   */
+  private CompletableFuture<byte[]> flight(String action, Object body, boolean hedged) {
+    // Requests are identical if they serialize identically. The body is
+    // serialized once, and the same JSON is sent if this call sends it.
+    final String json = Utils.serializer.toJson(body);
+    final String key = action + "\n" + json;
+    CompletableFuture<byte[]> pending = new CompletableFuture<>();
+    CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, pending);
+    stats(action).record(existing != null);
+    if (existing != null) {
+      return existing;
+    }
+
+    final CompletableFuture<byte[]> flight = pending;
+    client
+        .readAsync(action, JsonRequestBody.serialized(json), BYTES, hedged)
+        .whenComplete(
+            new BiConsumer<byte[], Throwable>() {
+              public void accept(byte[] resp, Throwable err) {
+                // Calls that arrive from now on send a new request.
+                inFlight.remove(key, flight);
+                if (err != null) {
+                  flight.completeExceptionally(err);
+                } else {
+                  flight.complete(resp);
+                }
+              }
+            });
+    return flight;
+  }
+
+  private static <T> T decode(byte[] resp, Type tClass) {
+    return Utils.serializer.fromJson(
+        new InputStreamReader(new ByteArrayInputStream(resp), StandardCharsets.UTF_8), tClass);
+  }
+
+  /**
+   * Returns the statistics for the action, creating them if necessary.
+   */
+  private SingleFlightStats stats(String action) {
+    SingleFlightStats s = stats.get(action);
+    if (s == null) {
+      stats.putIfAbsent(action, new SingleFlightStats(action));
+      s = stats.get(action);
+    }
+    return s;
+  }
+
+  Map<String, SingleFlightStats> stats() {
+    return new TreeMap<>(stats);
+  }
+}
@@ -0,0 +1,66 @@
+package com.chain.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SingleFlightStats records how often identical concurrent reads of a single
+ * API action were served by one request. See
+ * {@link Client.Builder#setSingleFlight(String...)}.
+ */
+public class SingleFlightStats {
+  private final String action;
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong shared = new AtomicLong();
+
+  SingleFlightStats(String action) {
+    this.action = action;
+  }
+
+  void record(boolean joined) {
+    calls.incrementAndGet();
+    if (joined) {
+      shared.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the API action these statistics describe.
+   * @return the action name
+   */
+  public String action() {
+    return action;
+  }
+
+  /**
+   * Returns the number of calls made for the action.
+   * @return the number of calls
+   */
+  public long calls() {
+    return calls.get();
+  }
+
+  /**
+   * Returns the number of calls that were served by an identical request
+   * already in flight, rather than sending a request of their own.
+   * @return the number of calls
+   */
+  public long shared() {
+    return shared.get();
+  }
+
+  /**
+   * Returns the fraction of calls that were served by a request already in
+   * flight.
+   * @return the hit rate, or 0 if no calls have been made
+   */
+  public double hitRate() {
+    long c = calls.get();
+    return c == 0 ? 0 : (double) shared.get() / c;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: calls=%d shared=%d hitRate=%.2f", action, calls(), shared(), hitRate());
+  }
+}
@@ -0,0 +1,133 @@
+package com.chain.http;
+
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Timeouts bounds the time taken by requests that a transport has no other
+ * way to bound, by cancelling them on the client's shared timer.
+ */
+class Timeouts {
+  private Timeouts() {}
+
+  /**
+   * Returns the exception reported for a request cancelled by its timeout.
+   */
+  static SocketTimeoutException timeout(IOException cause) {
+    SocketTimeoutException ex = new SocketTimeoutException("request timed out");
+    if (cause != null) {
+      ex.initCause(cause);
+    }
+    return ex;
+  }
+
+  /**
+   * Sends a request with a transport's enqueue method, and waits for its
+   * response headers for at most timeoutNanos.
+   */
+  static Response execute(Transport transport, Request request, long timeoutNanos)
+      throws IOException {
+    final CompletableFuture<Response> future = new CompletableFuture<>();
+    Transport.Cancellable call =
+        transport.enqueue(
+            request,
+            new Callback() {
+              public void onFailure(Request request, IOException ex) {
+                future.completeExceptionally(ex);
+              }
+
+              public void onResponse(Response response) {
+                future.complete(response);
+              }
+            });
+    try {
+      return timeoutNanos > 0 ? future.get(timeoutNanos, TimeUnit.NANOSECONDS) : future.get();
+    } catch (TimeoutException ex) {
+      call.cancel();
+      throw timeout(null);
+    } catch (InterruptedException ex) {
+      call.cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(ex.getMessage());
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause().getMessage(), ex.getCause());
+    }
+  }
+
+  /**
+   * TimeoutCallback cancels a request once its timeout has passed, unless
+   * the request has finished, and reports the cancellation as a timeout.
+   * The timeout covers the whole of the callback's handling of the
+   * response, which usually includes reading its body.
+   */
+  static class TimeoutCallback implements Callback {
+    private final Callback delegate;
+    private boolean done;
+    private boolean timedOut;
+    private ScheduledFuture<?> timer;
+
+    TimeoutCallback(Callback delegate) {
+      this.delegate = delegate;
+    }
+
+    /**
+     * Starts the timer for the request, once it has been sent.
+     */
+    synchronized void start(final Transport.Cancellable call, long timeoutNanos) {
+      if (done || timeoutNanos <= 0) {
+        return;
+      }
+      timer =
+          Client.timer()
+              .schedule(
+                  new Runnable() {
+                    public void run() {
+                      synchronized (TimeoutCallback.this) {
+                        if (done) {
+                          return;
+                        }
+                        timedOut = true;
+                      }
+                      call.cancel();
+                    }
+                  },
+                  timeoutNanos,
+                  TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized boolean finish() {
+      done = true;
+      if (timer != null) {
+        timer.cancel(false);
+      }
+      return timedOut;
+    }
+
+    @Override
+    public void onFailure(Request request, IOException ex) {
+      delegate.onFailure(request, finish() ? timeout(ex) : ex);
+    }
+
+    @Override
+    public void onResponse(Response response) throws IOException {
+      try {
+        delegate.onResponse(response);
+      } finally {
+        finish();
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.chain.http;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+
+/**
+ * TimingInterceptor marks the phases of an attempt that only the OkHttp
+ * transport can see. Installed as an application interceptor, it marks when
+ * the transport starts on the attempt, after any wait in the dispatcher's
+ * queue; installed as a network interceptor, it marks when the attempt has
+ * a connection and when the response headers arrive. Requests that aren't
+ * tagged with a {@link RequestTiming.Attempt} pass through untouched.
+ */
+class TimingInterceptor implements Interceptor {
+  static final TimingInterceptor APPLICATION = new TimingInterceptor(false);
+  static final TimingInterceptor NETWORK = new TimingInterceptor(true);
+
+  private final boolean network;
+
+  private TimingInterceptor(boolean network) {
+    this.network = network;
+  }
+
+  @Override
+  public Response intercept(Interceptor.Chain chain) throws IOException {
+    Object tag = chain.request().tag();
+    if (!(tag instanceof RequestTiming.Attempt)) {
+      return chain.proceed(chain.request());
+    }
+    RequestTiming.Attempt attempt = (RequestTiming.Attempt) tag;
+    if (!network) {
+      attempt.dispatched();
+      return chain.proceed(chain.request());
+    }
+    attempt.connected();
+    Response response = chain.proceed(chain.request());
+    attempt.received(response);
+    return response;
+  }
+}
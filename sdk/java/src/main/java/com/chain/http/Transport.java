@@ -0,0 +1,84 @@
+package com.chain.http;
+
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+
+/**
+ * A Transport sends the HTTP requests built by a {@link Client}. The default
+ * transport is an {@link OkHttpTransport}; others can be supplied with
+ * {@link Client.Builder#setTransport(Transport)}.
+ * <br>
+ * Requests and responses are represented with OkHttp's types regardless of
+ * the transport. A transport must not follow redirects, and should report
+ * any failure to reach the server as an IOException, which the client
+ * treats as retriable.
+ */
+public interface Transport {
+  /**
+   * Sends a request and blocks until its response headers are received.
+   * @param request the request to send
+   * @return the response, whose body the caller will read and close
+   * @throws IOException if the request could not be sent or the response could not be read
+   */
+  Response execute(Request request) throws IOException;
+
+  /**
+   * Sends a request without blocking the calling thread. Exactly one of the
+   * callback's methods is called when the request completes.
+   * @param request the request to send
+   * @param callback receives the response or failure
+   * @return a handle that cancels the request
+   */
+  Cancellable enqueue(Request request, Callback callback);
+
+  /**
+   * Sends a request and blocks until its response headers are received,
+   * giving up with a SocketTimeoutException once the timeout has passed.
+   * The timeout replaces the transport's usual read timeout, and may be
+   * longer. Transports should override this method: by default, the
+   * request is sent with {@link #enqueue(Request, Callback)}, the usual
+   * read timeout still applies, and the timeout does not cover reading the
+   * response body.
+   * @param request the request to send
+   * @param timeoutNanos the time allowed, or 0 for no limit
+   * @return the response, whose body the caller will read and close
+   * @throws IOException if the request could not be sent or the response could not be read
+   */
+  default Response execute(Request request, long timeoutNanos) throws IOException {
+    return Timeouts.execute(this, request, timeoutNanos);
+  }
+
+  /**
+   * Sends a request without blocking the calling thread, giving up once the
+   * timeout has passed. The timeout replaces the transport's usual read
+   * timeout, and covers the callback's handling of the response. A request
+   * that times out is reported to the callback as a SocketTimeoutException.
+   * By default, the request is cancelled by a timer, and the usual read
+   * timeout still applies; transports should override this method so that
+   * the timeout can be longer.
+   * @param request the request to send
+   * @param timeoutNanos the time allowed, or 0 for no limit
+   * @param callback receives the response or failure
+   * @return a handle that cancels the request
+   */
+  default Cancellable enqueue(Request request, long timeoutNanos, Callback callback) {
+    Timeouts.TimeoutCallback timed = new Timeouts.TimeoutCallback(callback);
+    Cancellable call = enqueue(request, timed);
+    timed.start(call, timeoutNanos);
+    return call;
+  }
+
+  /**
+   * A handle to an in-flight request.
+   */
+  interface Cancellable {
+    /**
+     * Cancels the request, if it hasn't already completed. The callback, if
+     * any, may then receive an IOException.
+     */
+    void cancel();
+  }
+}
@@ -0,0 +1,137 @@
+package com.chain.http;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
+
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A TransportRegistry holds the connection resources shared by the clients
+ * built with it: connection pools and dispatchers for the default OkHttp
+ * transport, HTTP/2 transports, and TLS contexts. Clients whose settings
+ * are compatible reuse one another's connections and TLS sessions, rather
+ * than each opening their own, so creating many clients for different
+ * URLs or access tokens of the same cores is cheap.
+ * <br>
+ * Resources are shared per lane, and only among clients with the same
+ * settings for them. Clients with the same connection pool settings share
+ * a pool; clients with the same asynchronous request limits share a
+ * dispatcher, and with it those limits; and clients that trust the same
+ * certificates share a TLS context and its session cache.
+ * <br>
+ * By default, every client uses the {@link #shared()} registry. A client
+ * built with a registry of its own shares nothing with other clients.
+ * @see Client.Builder#setTransportRegistry(TransportRegistry)
+ */
+public class TransportRegistry {
+  private static final TransportRegistry SHARED = new TransportRegistry();
+
+  private final Map<List<Object>, ConnectionPool> pools = new HashMap<>();
+  private final Map<List<Object>, Dispatcher> dispatchers = new HashMap<>();
+  private final Map<List<Object>, Transport> transports = new HashMap<>();
+  private final Map<List<Certificate>, SSLContext> sslContexts = new HashMap<>();
+  private final Map<SSLContext, SSLSocketFactory> socketFactories = new HashMap<>();
+
+  /**
+   * Returns the registry used by clients that aren't given one.
+   * @return the shared registry
+   */
+  public static TransportRegistry shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the connection pool for a lane with the given settings.
+   */
+  synchronized ConnectionPool connectionPool(String lane, int maxIdle, long keepAliveMillis) {
+    List<Object> key = Arrays.<Object>asList(lane, maxIdle, keepAliveMillis);
+    ConnectionPool pool = pools.get(key);
+    if (pool == null) {
+      pool = new ConnectionPool(maxIdle, keepAliveMillis);
+      pools.put(key, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Returns the dispatcher for a lane with the given limits on
+   * asynchronous requests.
+   * @param virtualThreads whether the dispatcher runs requests on virtual threads
+   */
+  synchronized Dispatcher dispatcher(
+      String lane, int maxRequests, int maxRequestsPerHost, boolean virtualThreads) {
+    List<Object> key = Arrays.<Object>asList(lane, maxRequests, maxRequestsPerHost, virtualThreads);
+    Dispatcher dispatcher = dispatchers.get(key);
+    if (dispatcher == null) {
+      dispatcher =
+          virtualThreads ? new Dispatcher(VirtualThreads.newExecutor()) : new Dispatcher();
+      dispatcher.setMaxRequests(maxRequests);
+      dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+      dispatchers.put(key, dispatcher);
+    }
+    return dispatcher;
+  }
+
+  /**
+   * Returns the transport registered under the given key, creating it if
+   * there is none.
+   */
+  synchronized Transport transport(List<Object> key, Callable<Transport> create) {
+    Transport transport = transports.get(key);
+    if (transport == null) {
+      try {
+        transport = create.call();
+      } catch (RuntimeException ex) {
+        throw ex;
+      } catch (Exception ex) {
+        throw new RuntimeException("unable to create transport", ex);
+      }
+      transports.put(key, transport);
+    }
+    return transport;
+  }
+
+  /**
+   * Returns the TLS context registered for the given trusted certificates,
+   * or registers the given context if there is none.
+   */
+  synchronized SSLContext sslContext(List<Certificate> trusted, SSLContext context) {
+    SSLContext registered = sslContexts.get(trusted);
+    if (registered == null) {
+      sslContexts.put(trusted, context);
+      return context;
+    }
+    return registered;
+  }
+
+  /**
+   * Returns a socket factory for a TLS context. Connections are only
+   * pooled together if they were made by the same factory.
+   */
+  synchronized SSLSocketFactory socketFactory(SSLContext context) {
+    SSLSocketFactory factory = socketFactories.get(context);
+    if (factory == null) {
+      factory = context.getSocketFactory();
+      socketFactories.put(context, factory);
+    }
+    return factory;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "pools=%d dispatchers=%d transports=%d tlsContexts=%d",
+        pools.size(),
+        dispatchers.size(),
+        transports.size(),
+        sslContexts.size());
+  }
+}
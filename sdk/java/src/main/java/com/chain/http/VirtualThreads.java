@@ -0,0 +1,46 @@
+package com.chain.http;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * VirtualThreads creates executors that run each task on a virtual thread of
+ * its own. Virtual threads were added in Java 21, and the SDK is compiled
+ * for Java 8, so the executor is created by reflection.
+ * @see Client.Builder#useVirtualThreads()
+ */
+class VirtualThreads {
+  private static final Method NEW_EXECUTOR = lookup();
+
+  private static Method lookup() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the running JVM supports virtual threads.
+   */
+  static boolean supported() {
+    return NEW_EXECUTOR != null;
+  }
+
+  /**
+   * Returns a new executor that starts a virtual thread for each task.
+   * @throws UnsupportedOperationException if the JVM is older than Java 21
+   */
+  static ExecutorService newExecutor() {
+    if (NEW_EXECUTOR == null) {
+      throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+    }
+    try {
+      return (ExecutorService) NEW_EXECUTOR.invoke(null);
+    } catch (IllegalAccessException | InvocationTargetException ex) {
+      throw new RuntimeException("unable to create a virtual thread executor", ex);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.chain.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter is a count that only goes up, such as the number of calls made or
+ * the number of errors returned. Many threads can increment it at once
+ * without contending with each other.
+ */
+public class Counter implements Metric {
+  private final LongAdder count = new LongAdder();
+
+  /**
+   * Adds one to the count.
+   */
+  public void inc() {
+    count.increment();
+  }
+
+  /**
+   * Adds n to the count.
+   * @param n the amount to add
+   */
+  public void inc(long n) {
+    count.add(n);
+  }
+
+  /**
+   * Returns the count.
+   * @return the count
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + count();
+  }
+}
@@ -0,0 +1,13 @@
+package com.chain.metrics;
+
+/**
+ * A Gauge is a value read when it is reported, such as a ratio or a rate
+ * computed from other state.
+ */
+public interface Gauge extends Metric {
+  /**
+   * Returns the gauge's current value.
+   * @return the value
+   */
+  double value();
+}
@@ -0,0 +1,145 @@
+package com.chain.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram records the distribution of a value, such as the latency of a
+ * call in nanoseconds or the size of a batch, so that its percentiles can be
+ * reported.
+ * <br>
+ * Values are counted in buckets that grow in size with the value: each
+ * power of two is split into 16 buckets, so percentiles are accurate to
+ * within about 6% of the value, however large, in a fixed 8KB of memory.
+ * Recording a value is a single atomic increment, and never allocates.
+ */
+public class Histogram implements Metric {
+  private static final int SUB_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   * @param value the value
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(bucket(value));
+    count.increment();
+    sum.add(value);
+    long m = max.get();
+    while (value > m && !max.compareAndSet(m, value)) {
+      m = max.get();
+    }
+  }
+
+  /**
+   * Returns the number of values recorded.
+   * @return the count
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the sum of the values recorded.
+   * @return the sum
+   */
+  public long sum() {
+    return sum.sum();
+  }
+
+  /**
+   * Returns the largest value recorded.
+   * @return the largest value, or 0 if none was recorded
+   */
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * Returns the mean of the values recorded.
+   * @return the mean, or 0 if none was recorded
+   */
+  public double mean() {
+    long n = count();
+    return n == 0 ? 0 : (double) sum() / n;
+  }
+
+  /**
+   * Returns an estimate of the given percentile of the values recorded: a
+   * value at least as large as that fraction of the values, and within
+   * about 6% of it.
+   * @param q the percentile, between 0 and 1, e.g. 0.99
+   * @return the estimate, or 0 if no value was recorded
+   */
+  public long percentile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("percentile must be between 0 and 1");
+    }
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(q * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max());
+      }
+    }
+    return max();
+  }
+
+  /**
+   * Returns the index of the bucket holding a non-negative value. Values
+   * below 16 have a bucket each; above that, the bucket is chosen by the
+   * value's highest set bit and the four bits below it.
+   */
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + (exp - SUB_BITS) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Returns the largest value held by a bucket.
+   */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    long lower = (SUB_BUCKETS + sub) << shift;
+    return lower + (1L << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "count=%d mean=%.1f p50=%d p99=%d max=%d",
+        count(),
+        mean(),
+        percentile(0.5),
+        percentile(0.99),
+        max());
+  }
+}
@@ -0,0 +1,195 @@
+package com.chain.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * JmxReporter publishes the metrics of a registry as MBeans, so that they
+ * can be read with JConsole, VisualVM or any JMX agent. Each metric is
+ * registered under the name {@code <domain>:type=<Counter|Gauge|Histogram>,name="<name>"}.
+ * <pre>
+ * MetricRegistry registry = new MetricRegistry();
+ * JmxReporter jmx = new JmxReporter(registry, "com.chain");
+ * jmx.start();
+ * Client client = new Client.Builder().setMetricRegistry(registry).build();
+ * ...
+ * jmx.close();
+ * </pre>
+ */
+public class JmxReporter implements MetricsReporter, AutoCloseable {
+  private final MetricRegistry registry;
+  private final MBeanServer server;
+  private final String domain;
+  private final ConcurrentHashMap<String, ObjectName> registered = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a reporter for the platform MBean server. Nothing is published
+   * until {@link #start()} is called.
+   * @param registry the registry
+   * @param domain the JMX domain of the MBeans, e.g. "com.chain"
+   */
+  public JmxReporter(MetricRegistry registry, String domain) {
+    this(registry, ManagementFactory.getPlatformMBeanServer(), domain);
+  }
+
+  /**
+   * Creates a reporter for the given MBean server. Nothing is published
+   * until {@link #start()} is called.
+   * @param registry the registry
+   * @param server the MBean server
+   * @param domain the JMX domain of the MBeans, e.g. "com.chain"
+   */
+  public JmxReporter(MetricRegistry registry, MBeanServer server, String domain) {
+    this.registry = registry;
+    this.server = server;
+    this.domain = domain;
+  }
+
+  /**
+   * Starts publishing the registry's metrics, including those added to it
+   * later, until the reporter is closed.
+   */
+  public void start() {
+    registry.addReporter(this);
+  }
+
+  @Override
+  public void metricAdded(String name, Metric metric) {
+    try {
+      ObjectName objectName = objectName(name, metric);
+      server.registerMBean(mbean(metric), objectName);
+      registered.put(name, objectName);
+    } catch (JMException ex) {
+      // Another reporter may already have published a metric under this
+      // name; reporting must never fail the code that records it.
+    }
+  }
+
+  @Override
+  public void metricRemoved(String name, Metric metric) {
+    ObjectName objectName = registered.remove(name);
+    if (objectName != null) {
+      unregister(objectName);
+    }
+  }
+
+  /**
+   * Stops reporting, and unregisters the MBeans this reporter registered.
+   */
+  @Override
+  public void close() {
+    registry.removeReporter(this);
+    for (String name : registered.keySet()) {
+      ObjectName objectName = registered.remove(name);
+      if (objectName != null) {
+        unregister(objectName);
+      }
+    }
+  }
+
+  private void unregister(ObjectName objectName) {
+    try {
+      server.unregisterMBean(objectName);
+    } catch (JMException ex) {
+      // Already gone.
+    }
+  }
+
+  ObjectName objectName(String name, Metric metric) throws JMException {
+    String type =
+        metric instanceof Counter ? "Counter" : metric instanceof Histogram ? "Histogram" : "Gauge";
+    return new ObjectName(domain + ":type=" + type + ",name=" + ObjectName.quote(name));
+  }
+
+  private static StandardMBean mbean(final Metric metric) throws JMException {
+    if (metric instanceof Counter) {
+      final Counter c = (Counter) metric;
+      return new StandardMBean(
+          new CounterMBean() {
+            public long getCount() {
+              return c.count();
+            }
+          },
+          CounterMBean.class);
+    }
+    if (metric instanceof Histogram) {
+      final Histogram h = (Histogram) metric;
+      return new StandardMBean(
+          new HistogramMBean() {
+            public long getCount() {
+              return h.count();
+            }
+
+            public double getMean() {
+              return h.mean();
+            }
+
+            public long getMax() {
+              return h.max();
+            }
+
+            public long get50thPercentile() {
+              return h.percentile(0.5);
+            }
+
+            public long get95thPercentile() {
+              return h.percentile(0.95);
+            }
+
+            public long get99thPercentile() {
+              return h.percentile(0.99);
+            }
+
+            public long get999thPercentile() {
+              return h.percentile(0.999);
+            }
+          },
+          HistogramMBean.class);
+    }
+    final Gauge g = (Gauge) metric;
+    return new StandardMBean(
+        new GaugeMBean() {
+          public double getValue() {
+            return g.value();
+          }
+        },
+        GaugeMBean.class);
+  }
+
+  /**
+   * The JMX view of a {@link Counter}.
+   */
+  public interface CounterMBean {
+    long getCount();
+  }
+
+  /**
+   * The JMX view of a {@link Gauge}.
+   */
+  public interface GaugeMBean {
+    double getValue();
+  }
+
+  /**
+   * The JMX view of a {@link Histogram}.
+   */
+  public interface HistogramMBean {
+    long getCount();
+
+    double getMean();
+
+    long getMax();
+
+    long get50thPercentile();
+
+    long get95thPercentile();
+
+    long get99thPercentile();
+
+    long get999thPercentile();
+  }
+}
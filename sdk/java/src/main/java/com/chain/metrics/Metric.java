@@ -0,0 +1,8 @@
+package com.chain.metrics;
+
+/**
+ * Metric is the common type of the measurements kept in a
+ * {@link MetricRegistry}: a {@link Counter}, a {@link Gauge} or a
+ * {@link Histogram}.
+ */
+public interface Metric {}
@@ -0,0 +1,127 @@
+package com.chain.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * MetricRegistry holds a set of named metrics, and tells its reporters
+ * about them. Metrics are created on first use, and names are dotted, such
+ * as {@code client.submit-transaction.latency}.
+ * <br>
+ * A registry can be shared by several clients, and by the application
+ * itself. Give it to a client with
+ * {@link com.chain.http.Client.Builder#setMetricRegistry(MetricRegistry)},
+ * and publish it with a reporter such as {@link JmxReporter}.
+ */
+public class MetricRegistry {
+  private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<>();
+  private final CopyOnWriteArrayList<MetricsReporter> reporters = new CopyOnWriteArrayList<>();
+
+  /**
+   * Returns the counter with the given name, creating it if it doesn't
+   * exist.
+   * @param name the metric's name
+   * @return the counter
+   * @throws IllegalArgumentException if the name is taken by another type of metric
+   */
+  public Counter counter(String name) {
+    Metric m = metrics.get(name);
+    if (m == null) {
+      m = add(name, new Counter());
+    }
+    return cast(name, m, Counter.class);
+  }
+
+  /**
+   * Returns the histogram with the given name, creating it if it doesn't
+   * exist.
+   * @param name the metric's name
+   * @return the histogram
+   * @throws IllegalArgumentException if the name is taken by another type of metric
+   */
+  public Histogram histogram(String name) {
+    Metric m = metrics.get(name);
+    if (m == null) {
+      m = add(name, new Histogram());
+    }
+    return cast(name, m, Histogram.class);
+  }
+
+  /**
+   * Registers a gauge under the given name, unless there already is one.
+   * @param name the metric's name
+   * @param gauge the gauge
+   * @return the gauge registered under the name
+   * @throws IllegalArgumentException if the name is taken by another type of metric
+   */
+  public Gauge gauge(String name, Gauge gauge) {
+    return cast(name, add(name, gauge), Gauge.class);
+  }
+
+  /**
+   * Removes a metric.
+   * @param name the metric's name
+   * @return true if there was a metric with the name
+   */
+  public boolean remove(String name) {
+    Metric m = metrics.remove(name);
+    if (m == null) {
+      return false;
+    }
+    for (MetricsReporter r : reporters) {
+      r.metricRemoved(name, m);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the registry's metrics, sorted by name.
+   * @return a snapshot of the metrics
+   */
+  public SortedMap<String, Metric> metrics() {
+    return new TreeMap<String, Metric>(metrics);
+  }
+
+  /**
+   * Adds a reporter, which is told about the metrics already in the
+   * registry and those added later.
+   * @param reporter the reporter
+   */
+  public void addReporter(MetricsReporter reporter) {
+    reporters.add(reporter);
+    for (Map.Entry<String, Metric> e : metrics().entrySet()) {
+      reporter.metricAdded(e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * Removes a reporter. It is not told about the metrics it already knows.
+   * @param reporter the reporter
+   */
+  public void removeReporter(MetricsReporter reporter) {
+    reporters.remove(reporter);
+  }
+
+  private Metric add(String name, Metric metric) {
+    Metric existing = metrics.putIfAbsent(name, metric);
+    if (existing != null) {
+      return existing;
+    }
+    for (MetricsReporter r : reporters) {
+      r.metricAdded(name, metric);
+    }
+    return metric;
+  }
+
+  private static <M extends Metric> M cast(String name, Metric m, Class<M> type) {
+    if (!type.isInstance(m)) {
+      throw new IllegalArgumentException(
+          "metric " + name + " is a " + m.getClass().getSimpleName() + ", not a "
+              + type.getSimpleName());
+    }
+    return type.cast(m);
+  }
+}
@@ -0,0 +1,24 @@
+package com.chain.metrics;
+
+/**
+ * A MetricsReporter publishes the metrics of a {@link MetricRegistry} to a
+ * monitoring system. It is told about each metric as it is added to the
+ * registry, and reads the metric's value whenever it needs it; see
+ * {@link JmxReporter} for an example.
+ */
+public interface MetricsReporter {
+  /**
+   * Called when a metric is added to the registry, or, for metrics that
+   * were already in the registry, when the reporter is added.
+   * @param name the metric's name
+   * @param metric the metric
+   */
+  void metricAdded(String name, Metric metric);
+
+  /**
+   * Called when a metric is removed from the registry.
+   * @param name the metric's name
+   * @param metric the metric
+   */
+  void metricRemoved(String name, Metric metric);
+}
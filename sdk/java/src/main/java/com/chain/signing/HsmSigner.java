@@ -4,23 +4,31 @@ import com.chain.api.MockHsm;
 import com.chain.http.BatchResponse;
 
 import com.chain.api.Transaction;
+import com.chain.common.FlightEvents;
 import com.chain.exception.*;
 import com.chain.http.Client;
+import com.chain.metrics.MetricRegistry;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * HsmSigner makes signing requests to remote HSMs. It stores a map of client objects
  * to public keys, and routes tx template signing requests to the relevant HSM servers.
  * Only templates with keys added to the HsmSigner's map will be signed.
+ * <br>
+ * If an HSM's client records metrics, the latency of each signing request
+ * to it is recorded in the histogram {@code signer.<host:port>.latency}.
  */
 public class HsmSigner {
   /**
    * A map of hsm objects to public keys. The list of public keys have
    * corresponding private keys stored in remote HSM servers. The hsm
-   * objects are configured to make requests to the HSMs.
+   * objects are configured to make requests to the HSMs. Keys may be added
+   * while other threads are signing.
    */
-  private static Map<Client, List<String>> hsmXPubs = new HashMap();
+  private static Map<Client, List<String>> hsmXPubs = new ConcurrentHashMap<>();
 
   /**
    * Adds an entry to the HsmSigner's hsm client-to-keys map.
@@ -28,10 +36,12 @@ public class HsmSigner {
    * @param hsm the hsm object
    */
   public static void addKey(String xpub, Client hsm) {
-    if (!hsmXPubs.containsKey(hsm)) {
-      hsmXPubs.put(hsm, new ArrayList<String>());
+    List<String> xpubs = hsmXPubs.get(hsm);
+    if (xpubs == null) {
+      hsmXPubs.putIfAbsent(hsm, new CopyOnWriteArrayList<String>());
+      xpubs = hsmXPubs.get(hsm);
     }
-    hsmXPubs.get(hsm).add(xpub);
+    xpubs.add(xpub);
   }
 
   /**
@@ -66,9 +76,14 @@ public class HsmSigner {
       HashMap<String, Object> body = new HashMap();
       body.put("transactions", Arrays.asList(template));
       body.put("xpubs", entry.getValue());
-      template =
-          hsm.singletonBatchRequest(
-              "sign-transaction", body, Transaction.Template.class, APIException.class);
+      long start = System.nanoTime();
+      try {
+        template =
+            hsm.singletonBatchRequest(
+                "sign-transaction", body, Transaction.Template.class, APIException.class);
+      } finally {
+        recordLatency(hsm, start);
+      }
     }
     return template;
   }
@@ -96,9 +111,20 @@ public class HsmSigner {
       HashMap<String, Object> requestBody = new HashMap();
       requestBody.put("transactions", tmpls);
       requestBody.put("xpubs", entry.getValue());
-      BatchResponse<Transaction.Template> batch =
-          hsm.batchRequest(
-              "sign-transaction", requestBody, Transaction.Template.class, APIException.class);
+      BatchResponse<Transaction.Template> batch = null;
+      long start = System.nanoTime();
+      FlightEvents.Span event = FlightEvents.begin(FlightEvents.Type.SIGN_ROUND);
+      try {
+        batch =
+            hsm.batchRequest(
+                "sign-transaction", requestBody, Transaction.Template.class, APIException.class);
+      } finally {
+        recordLatency(hsm, start);
+        if (event.recording()) {
+          event.set("hsm", hsm.url().getAuthority()).set("templates", tmpls.size());
+          event.set("signed", batch != null ? batch.successes().size() : 0).end();
+        }
+      }
 
       // We need to work towards a single, final BatchResponse that uses the
       // original indexes. For the next cycle, we should retain only those
@@ -106,14 +132,14 @@ public class HsmSigner {
       // maintain a mapping of each template's index in the upcoming request
       // to its original index.
       List<Transaction.Template> nextTmpls = new ArrayList<>();
-      int[] nextOriginalIndex = new int[batch.successesByIndex().size()];
+      int[] nextOriginalIndex = new int[batch.successes().size()];
 
       for (int i = 0; i < tmpls.size(); i++) {
         if (batch.isSuccess(i)) {
-          nextTmpls.add(batch.successesByIndex().get(i));
+          nextTmpls.add(batch.success(i));
           nextOriginalIndex[nextTmpls.size() - 1] = originalIndex[i];
         } else {
-          errors.put(originalIndex[i], batch.errorsByIndex().get(i));
+          errors.put(originalIndex[i], batch.error(i));
         }
       }
 
@@ -133,4 +159,12 @@ public class HsmSigner {
 
     return new BatchResponse<>(successes, errors);
   }
+
+  private static void recordLatency(Client hsm, long start) {
+    MetricRegistry registry = hsm.metricRegistry();
+    if (registry != null) {
+      String name = "signer." + hsm.url().getAuthority() + ".latency";
+      registry.histogram(name).record(System.nanoTime() - start);
+    }
+  }
 }
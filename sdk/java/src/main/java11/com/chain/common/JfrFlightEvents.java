@@ -0,0 +1,113 @@
+package com.chain.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.AnnotationElement;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventFactory;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.ValueDescriptor;
+
+/**
+ * JfrFlightEvents emits the SDK's events to Java Flight Recorder. The event
+ * classes are generated from {@link FlightEvents.Type} with JFR's event
+ * factory. It is only compiled for Java 11 and later, into the versioned
+ * section of the SDK's multi-release jar, and is loaded by name by
+ * {@link FlightEvents}.
+ */
+class JfrFlightEvents extends FlightEvents {
+  private final Factory[] factories;
+
+  JfrFlightEvents() {
+    FlightEvents.Type[] types = FlightEvents.Type.values();
+    factories = new Factory[types.length];
+    for (FlightEvents.Type type : types) {
+      factories[type.ordinal()] = new Factory(type);
+    }
+  }
+
+  @Override
+  protected FlightEvents.Span start(FlightEvents.Type type) {
+    Factory f = factories[type.ordinal()];
+    if (!f.eventType.isEnabled()) {
+      return FlightEvents.Span.NONE;
+    }
+    Event event = f.factory.newEvent();
+    event.begin();
+    return new JfrSpan(event, f.fields);
+  }
+
+  private static class Factory {
+    final EventFactory factory;
+    final EventType eventType;
+    final Map<String, Integer> fields = new HashMap<>();
+
+    Factory(FlightEvents.Type type) {
+      List<ValueDescriptor> values = new ArrayList<>();
+      String[] fields = type.fields();
+      for (int i = 0; i < fields.length; i++) {
+        String name = fields[i];
+        Class<?> kind = String.class;
+        if (name.endsWith(":long")) {
+          name = name.substring(0, name.length() - ":long".length());
+          kind = long.class;
+        }
+        values.add(new ValueDescriptor(kind, name));
+        this.fields.put(name, i);
+      }
+      List<AnnotationElement> annotations =
+          Arrays.asList(
+              new AnnotationElement(Name.class, type.eventName()),
+              new AnnotationElement(Label.class, type.label()),
+              new AnnotationElement(Category.class, new String[] {"Chain"}));
+      this.factory = EventFactory.create(annotations, values);
+      this.eventType = factory.getEventType();
+    }
+  }
+
+  private static class JfrSpan extends FlightEvents.Span {
+    private final Event event;
+    private final Map<String, Integer> fields;
+
+    JfrSpan(Event event, Map<String, Integer> fields) {
+      this.event = event;
+      this.fields = fields;
+    }
+
+    @Override
+    public boolean recording() {
+      return true;
+    }
+
+    @Override
+    public FlightEvents.Span set(String field, String value) {
+      event.set(index(field), value);
+      return this;
+    }
+
+    @Override
+    public FlightEvents.Span set(String field, long value) {
+      event.set(index(field), value);
+      return this;
+    }
+
+    @Override
+    public void end() {
+      event.commit();
+    }
+
+    private int index(String field) {
+      Integer i = fields.get(field);
+      if (i == null) {
+        throw new IllegalArgumentException("unknown event field " + field);
+      }
+      return i;
+    }
+  }
+}
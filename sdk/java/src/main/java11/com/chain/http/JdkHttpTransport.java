@@ -0,0 +1,407 @@
+package com.chain.http;
+
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import javax.net.ssl.SSLContext;
+
+/**
+ * JdkHttpTransport sends requests with the JDK's HTTP client, which
+ * multiplexes concurrent requests to each core over a single HTTP/2
+ * connection. It is only compiled for Java 11 and later, into the
+ * versioned section of the SDK's multi-release jar, and is created by
+ * {@link Client.Builder#useHttp2()}.
+ */
+class JdkHttpTransport implements Transport {
+  // Headers the JDK client sets itself, and refuses to accept from callers.
+  private static final Set<String> RESTRICTED_HEADERS =
+      new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+  static {
+    RESTRICTED_HEADERS.add("Connection");
+    RESTRICTED_HEADERS.add("Content-Length");
+    RESTRICTED_HEADERS.add("Expect");
+    RESTRICTED_HEADERS.add("Host");
+    RESTRICTED_HEADERS.add("Transfer-Encoding");
+    RESTRICTED_HEADERS.add("Upgrade");
+  }
+
+  private final HttpClient client;
+  private final Duration readTimeout;
+
+  /**
+   * @param executor the executor for the client's asynchronous work, or
+   *   null for the JDK's default
+   * @throws UnsupportedOperationException if the proxy isn't an HTTP proxy
+   */
+  JdkHttpTransport(
+      long connectTimeoutMillis,
+      long readTimeoutMillis,
+      SSLContext sslContext,
+      Proxy proxy,
+      Executor executor) {
+    HttpClient.Builder builder =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NEVER);
+    if (connectTimeoutMillis > 0) {
+      builder.connectTimeout(Duration.ofMillis(connectTimeoutMillis));
+    }
+    if (sslContext != null) {
+      builder.sslContext(sslContext);
+    }
+    if (proxy != null && proxy.type() == Proxy.Type.HTTP) {
+      builder.proxy(ProxySelector.of((InetSocketAddress) proxy.address()));
+    } else if (proxy != null && proxy.type() != Proxy.Type.DIRECT) {
+      throw new UnsupportedOperationException(
+          "the HTTP/2 transport doesn't support " + proxy.type() + " proxies");
+    }
+    if (executor != null) {
+      builder.executor(executor);
+    }
+    this.client = builder.build();
+    this.readTimeout = readTimeoutMillis > 0 ? Duration.ofMillis(readTimeoutMillis) : null;
+  }
+
+  @Override
+  public Response execute(Request request) throws IOException {
+    return execute(request, readTimeout);
+  }
+
+  @Override
+  public Response execute(Request request, long timeoutNanos) throws IOException {
+    return execute(request, timeoutNanos > 0 ? Duration.ofNanos(timeoutNanos) : null);
+  }
+
+  private Response execute(Request request, Duration timeout) throws IOException {
+    try {
+      return toResponse(request, client.send(toHttpRequest(request, timeout), bodyHandler()));
+    } catch (HttpTimeoutException ex) {
+      throw Timeouts.timeout(ex);
+    } catch (IOException ex) {
+      throw toIOException(ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(ex.getMessage());
+    }
+  }
+
+  @Override
+  public Cancellable enqueue(Request request, Callback callback) {
+    return enqueue(request, readTimeout, callback);
+  }
+
+  @Override
+  public Cancellable enqueue(Request request, long timeoutNanos, Callback callback) {
+    return enqueue(request, timeoutNanos > 0 ? Duration.ofNanos(timeoutNanos) : null, callback);
+  }
+
+  private Cancellable enqueue(final Request request, Duration timeout, final Callback callback) {
+    HttpRequest httpRequest;
+    try {
+      httpRequest = toHttpRequest(request, timeout);
+    } catch (IOException ex) {
+      callback.onFailure(request, ex);
+      return new Cancellable() {
+        public void cancel() {}
+      };
+    }
+
+    final CompletableFuture<HttpResponse<InputStream>> future =
+        client.sendAsync(httpRequest, bodyHandler());
+    future.whenComplete(
+        new BiConsumer<HttpResponse<InputStream>, Throwable>() {
+          public void accept(HttpResponse<InputStream> resp, Throwable err) {
+            if (err != null) {
+              callback.onFailure(request, toIOException(err));
+              return;
+            }
+            try {
+              callback.onResponse(toResponse(request, resp));
+            } catch (IOException ex) {
+              callback.onFailure(request, ex);
+            }
+          }
+        });
+    return new Cancellable() {
+      public void cancel() {
+        future.cancel(true);
+      }
+    };
+  }
+
+  private static HttpResponse.BodyHandler<InputStream> bodyHandler() {
+    return HttpResponse.BodyHandlers.ofInputStream();
+  }
+
+  private HttpRequest toHttpRequest(Request request, Duration timeout) throws IOException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.urlString()));
+    if (timeout != null) {
+      builder.timeout(timeout);
+    }
+
+    Headers headers = request.headers();
+    for (int i = 0; i < headers.size(); i++) {
+      if (!RESTRICTED_HEADERS.contains(headers.name(i))) {
+        builder.header(headers.name(i), headers.value(i));
+      }
+    }
+
+    RequestBody body = request.body();
+    if (body == null) {
+      return builder.method(request.method(), HttpRequest.BodyPublishers.noBody()).build();
+    }
+    if (body.contentType() != null) {
+      builder.header("Content-Type", body.contentType().toString());
+    }
+
+    // A body whose length is known is small or already in memory, and is
+    // sent with its length. Any other body is streamed, since it may be a
+    // batch too large to hold in memory as a whole.
+    if (body.contentLength() >= 0) {
+      Buffer buffer = new Buffer();
+      body.writeTo(buffer);
+      return builder
+          .method(request.method(), HttpRequest.BodyPublishers.ofByteArray(buffer.readByteArray()))
+          .build();
+    }
+    return builder
+        .method(request.method(), HttpRequest.BodyPublishers.ofInputStream(new BodyStreams(body, timeout)))
+        .build();
+  }
+
+  private static Response toResponse(Request request, HttpResponse<InputStream> resp) {
+    Response.Builder builder =
+        new Response.Builder()
+            .request(request)
+            .protocol(
+                resp.version() == HttpClient.Version.HTTP_2 ? Protocol.HTTP_2 : Protocol.HTTP_1_1)
+            .code(resp.statusCode())
+            .message("");
+    for (Map.Entry<String, List<String>> header : resp.headers().map().entrySet()) {
+      if (header.getKey().startsWith(":")) {
+        continue; // HTTP/2 pseudo-headers, such as :status
+      }
+      for (String value : header.getValue()) {
+        builder.addHeader(header.getKey(), value);
+      }
+    }
+
+    String contentType = resp.headers().firstValue("Content-Type").orElse(null);
+    long contentLength = resp.headers().firstValueAsLong("Content-Length").orElse(-1);
+    builder.body(
+        ResponseBody.create(
+            contentType != null ? MediaType.parse(contentType) : null,
+            contentLength,
+            Okio.buffer(Okio.source(resp.body()))));
+    return builder.build();
+  }
+
+  private static IOException toIOException(Throwable err) {
+    // A body that can't be serialized fails while the JDK client is sending
+    // it, inside the client's own exceptions. It is reported as it is, so
+    // that the request isn't retried.
+    for (Throwable cause = err; cause != null; cause = cause.getCause()) {
+      if (cause instanceof JsonRequestBody.SerializationException) {
+        return (IOException) cause;
+      }
+    }
+    if (err instanceof CompletionException || err instanceof ExecutionException) {
+      if (err.getCause() != null) {
+        err = err.getCause();
+      }
+    }
+    if (err instanceof HttpTimeoutException) {
+      return Timeouts.timeout((IOException) err);
+    }
+    if (err instanceof IOException) {
+      return (IOException) err;
+    }
+    return new IOException(err.getMessage(), err);
+  }
+
+  /**
+   * BodyStreams supplies the JDK client with a stream of a request body,
+   * each time it sends the body. The body is written into the stream by a
+   * thread of its own, a chunk at a time, so that at most a few chunks of
+   * it are held in memory. The JDK client doesn't close the stream of a
+   * request it cancels, so a writer that has waited too long for it to be
+   * read gives up.
+   */
+  private static class BodyStreams implements Supplier<InputStream> {
+    private static final ExecutorService WRITERS =
+        Executors.newCachedThreadPool(
+            new ThreadFactory() {
+              public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "chain-request-body-writer");
+                t.setDaemon(true);
+                return t;
+              }
+            });
+
+    // How long a body's writer waits for the JDK client to read more of
+    // it, if the request has no timeout, before giving up on the request.
+    private static final long DEFAULT_STALL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final RequestBody body;
+    private final long stallNanos;
+
+    BodyStreams(RequestBody body, Duration timeout) {
+      this.body = body;
+      this.stallNanos = timeout != null ? timeout.toNanos() : DEFAULT_STALL_NANOS;
+    }
+
+    @Override
+    public InputStream get() {
+      final BodyPipe pipe = new BodyPipe(stallNanos);
+      WRITERS.execute(
+          new Runnable() {
+            public void run() {
+              pipe.write(body);
+            }
+          });
+      return pipe;
+    }
+  }
+
+  /**
+   * BodyPipe carries a request body from the thread writing it to the JDK
+   * client reading it. The writer waits while the pipe is full, and stops
+   * if the reader closes the pipe or reads nothing for too long. A failure
+   * to write the body is thrown to the reader.
+   */
+  private static class BodyPipe extends InputStream {
+    private static final byte[] END = new byte[0];
+
+    private final ArrayBlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(4);
+    private final long stallNanos;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private byte[] chunk;
+    private int pos;
+
+    BodyPipe(long stallNanos) {
+      this.stallNanos = stallNanos;
+    }
+
+    void write(RequestBody body) {
+      BufferedSink sink =
+          Okio.buffer(
+              Okio.sink(
+                  new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                      write(new byte[] {(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                      if (len > 0) {
+                        put(Arrays.copyOfRange(b, off, off + len));
+                      }
+                    }
+                  }));
+      try {
+        body.writeTo(sink);
+        sink.flush();
+      } catch (IOException ex) {
+        failure = ex;
+      }
+      try {
+        put(END);
+      } catch (IOException ex) {
+        // The reader has gone.
+      }
+    }
+
+    private void put(byte[] b) throws IOException {
+      long deadline = System.nanoTime() + stallNanos;
+      try {
+        while (!chunks.offer(b, 100, TimeUnit.MILLISECONDS)) {
+          if (closed || System.nanoTime() - deadline > 0) {
+            throw new IOException("request body no longer being read");
+          }
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(ex.getMessage());
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (chunk == null || (chunk != END && pos == chunk.length)) {
+        try {
+          chunk = chunks.take();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException(ex.getMessage());
+        }
+        pos = 0;
+      }
+      if (chunk == END) {
+        if (failure != null) {
+          throw failure;
+        }
+        return -1;
+      }
+      int n = Math.min(len, chunk.length - pos);
+      System.arraycopy(chunk, pos, b, off, n);
+      pos += n;
+      return n;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      chunks.clear();
+    }
+  }
+}
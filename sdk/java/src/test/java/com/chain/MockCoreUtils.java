@@ -0,0 +1,46 @@
+package com.chain;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+
+/**
+ * MockCoreUtils provides responses in the form a core sends them, for tests
+ * that run a client against a MockWebServer.
+ */
+public class MockCoreUtils {
+  /**
+   * The response body of most mock actions.
+   */
+  public static class Message {
+    public String message;
+  }
+
+  /**
+   * Returns a response with the given status and body. It carries a request
+   * ID, without which the client would take it for a proxy's response and
+   * retry it.
+   */
+  public static MockResponse chainResponse(int code, String body) {
+    return chainResponse(code, "test", body);
+  }
+
+  public static MockResponse chainResponse(int code, String reqid, String body) {
+    return new MockResponse()
+        .setResponseCode(code)
+        .setHeader("Chain-Request-ID", reqid)
+        .setBody(body);
+  }
+
+  /**
+   * Returns a successful response whose body is a {@link Message}.
+   */
+  public static MockResponse message(String message) {
+    return chainResponse(200, "{\"message\":\"" + message + "\"}");
+  }
+
+  /**
+   * Returns the response of a core that is temporarily unavailable.
+   */
+  public static MockResponse unavailable() {
+    return chainResponse(503, "{\"code\":\"CH000\",\"message\":\"unavailable\"}");
+  }
+}
@@ -0,0 +1,49 @@
+package com.chain.common;
+
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * NativeImageConfigTest asserts that the reflection configuration bundled for
+ * GraalVM native images names only classes that exist, and covers every
+ * model Gson may bind by reflection.
+ */
+public class NativeImageConfigTest {
+  static final String CONFIG =
+      "META-INF/native-image/com.chain/chain-sdk-java/reflect-config.json";
+
+  @Test
+  public void testReflectConfig() throws Exception {
+    List<Map<String, Object>> entries =
+        Utils.serializer.fromJson(
+            new InputStreamReader(getClass().getClassLoader().getResourceAsStream(CONFIG), "UTF-8"),
+            new TypeToken<List<Map<String, Object>>>() {}.getType());
+    Set<String> names = new HashSet<>();
+    for (Map<String, Object> e : entries) {
+      String name = (String) e.get("name");
+      Class.forName(name, false, getClass().getClassLoader());
+      names.add(name);
+    }
+
+    File api = new File(getClass().getClassLoader().getResource("com/chain/api").toURI());
+    String[] classes = api.list();
+    assertNotNull(classes);
+    for (String file : classes) {
+      String name = "com.chain.api." + file.substring(0, file.length() - ".class".length());
+      if (name.matches(".*\\$\\d+")) {
+        continue; // anonymous classes aren't bound
+      }
+      assertTrue(name + " is missing from " + CONFIG, names.contains(name));
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.chain.common;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Rfc3339DateAdapterTest asserts that dates are read and written as they
+ * were with Utils.rfc3339DateFormat.
+ */
+public class Rfc3339DateAdapterTest {
+  @Test
+  public void testMatchesDateFormat() throws Exception {
+    Random random = new Random(1);
+    for (String zone : new String[] {"UTC", "America/Los_Angeles", "Asia/Kolkata"}) {
+      SimpleDateFormat sdf = new SimpleDateFormat(Utils.rfc3339DateFormat);
+      sdf.setTimeZone(TimeZone.getTimeZone(zone));
+      Rfc3339DateAdapter adapter = new Rfc3339DateAdapter(ZoneId.of(zone));
+      for (int i = 0; i < 10000; i++) {
+        // Times between 1970 and 2100.
+        long millis = (long) (random.nextDouble() * 4102444800000L);
+        String formatted = sdf.format(new Date(millis));
+        assertEquals(formatted, adapter.format(millis));
+        assertEquals(millis, Rfc3339DateAdapter.parse(formatted));
+      }
+    }
+  }
+
+  @Test
+  public void testParse() {
+    assertEquals(1489009987000L, Rfc3339DateAdapter.parse("2017-03-08T21:53:07Z"));
+    assertEquals(1489009987123L, Rfc3339DateAdapter.parse("2017-03-08T21:53:07.123Z"));
+    assertEquals(1489009987123L, Rfc3339DateAdapter.parse("2017-03-08T21:53:07.123456789Z"));
+    assertEquals(1489009987100L, Rfc3339DateAdapter.parse("2017-03-08T21:53:07.1Z"));
+    assertEquals(1489009987000L, Rfc3339DateAdapter.parse("2017-03-08T13:53:07-08:00"));
+    assertEquals(1489009987000L, Rfc3339DateAdapter.parse("2017-03-09t03:23:07+05:30"));
+
+    String[] invalid = {
+      "2017-03-08T21:53:07", "2017-02-30T21:53:07Z", "2017-03-08T24:00:00Z",
+      "2017-03-08T21:53:07.Z", "2017-03-08T21:53:07+0800", "2017-03-08 21:53Z", "garbage",
+    };
+    for (String s : invalid) {
+      try {
+        Rfc3339DateAdapter.parse(s);
+        fail("parsed " + s);
+      } catch (java.time.DateTimeException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testSerializer() {
+    Holder h = Utils.serializer.fromJson("{\"at\":\"2017-03-08T21:53:07.123Z\"}", Holder.class);
+    assertEquals(1489009987123L, h.at.getTime());
+    assertEquals(h.at, Utils.serializer.fromJson(Utils.serializer.toJson(h), Holder.class).at);
+    assertNull(Utils.serializer.fromJson("{\"at\":null}", Holder.class).at);
+    try {
+      Utils.serializer.fromJson("{\"at\":\"March 8\"}", Holder.class);
+      fail("parsed an invalid date");
+    } catch (JsonSyntaxException expected) {
+    }
+  }
+
+  static class Holder {
+    Date at;
+  }
+}
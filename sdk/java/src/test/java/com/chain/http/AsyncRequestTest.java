@@ -0,0 +1,86 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.exception.APIException;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static com.chain.MockCoreUtils.message;
+import static com.chain.MockCoreUtils.unavailable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * AsyncRequestTest exercises the non-blocking request path against a mock
+ * server, including retries scheduled on the shared timer.
+ */
+public class AsyncRequestTest {
+  MockWebServer server;
+  Client client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    client = new Client(server.getUrl("/"));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void testRetriesUntilSuccess() throws Exception {
+    server.enqueue(unavailable());
+    server.enqueue(unavailable());
+    server.enqueue(message("ok"));
+
+    CompletableFuture<Message> future = client.requestAsync("info", null, Message.class);
+    assertEquals("ok", future.get(10, TimeUnit.SECONDS).message);
+    assertEquals(3, server.getRequestCount());
+  }
+
+  @Test
+  public void testSingletonErrorCompletesExceptionally() throws Exception {
+    server.enqueue(chainResponse(200, "[{\"code\":\"CH735\",\"message\":\"rejected\"}]"));
+
+    CompletableFuture<Message> future =
+        client.singletonBatchRequestAsync(
+            "submit-transaction", null, Message.class, APIException.class);
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("expecting APIException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof APIException);
+      assertEquals("CH735", ((APIException) e.getCause()).code);
+    }
+    assertEquals(1, server.getRequestCount());
+  }
+
+  @Test
+  public void testBatchComposes() throws Exception {
+    server.enqueue(chainResponse(200, "[{\"message\":\"a\"},{\"code\":\"CH001\"}]"));
+    server.enqueue(chainResponse(200, "[{\"message\":\"b\"}]"));
+
+    CompletableFuture<BatchResponse<Message>> future =
+        client
+            .<Message>batchRequestAsync("build-transaction", null, Message.class, APIException.class)
+            .thenCompose(
+                batch -> {
+                  assertEquals(1, batch.successes().size());
+                  assertEquals(1, batch.errors().size());
+                  return client.<Message>batchRequestAsync(
+                      "submit-transaction", batch.successes(), Message.class, APIException.class);
+                });
+    assertEquals("b", future.get(10, TimeUnit.SECONDS).successes().get(0).message);
+  }
+}
@@ -0,0 +1,124 @@
+package com.chain.http;
+
+import com.chain.api.Transaction;
+import com.chain.exception.APIException;
+import com.chain.exception.BuildException;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * AutoBatchTest asserts that concurrent singleton calls are coalesced into
+ * batch requests, and that each caller receives its own response entry.
+ */
+public class AutoBatchTest {
+  MockWebServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    // Echo each build request back as one template per action, failing the
+    // builders that have no actions.
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            String body = request.getBody().readUtf8();
+            StringBuilder resp = new StringBuilder("[");
+            int items = body.split("\"actions\"").length - 1;
+            for (int i = 0; i < items; i++) {
+              if (i > 0) resp.append(",");
+              if (body.split("\"actions\"")[i + 1].startsWith(":[]")) {
+                resp.append("{\"code\":\"CH701\",\"message\":\"no actions\"}");
+              } else {
+                resp.append("{\"raw_transaction\":\"tx" + i + "\"}");
+              }
+            }
+            resp.append("]");
+            return chainResponse(200, resp.toString());
+          }
+        });
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void testCoalescesConcurrentBuilds() throws Exception {
+    final Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setAutoBatching(200, TimeUnit.MILLISECONDS, 8)
+            .build();
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Transaction.Template>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      results.add(
+          pool.submit(
+              new Callable<Transaction.Template>() {
+                public Transaction.Template call() throws Exception {
+                  return new Transaction.Builder()
+                      .addAction(new Transaction.Action.Issue().setAmount(1))
+                      .build(client);
+                }
+              }));
+    }
+    for (Future<Transaction.Template> f : results) {
+      assertTrue(f.get(10, TimeUnit.SECONDS).rawTransaction.startsWith("tx"));
+    }
+    pool.shutdown();
+
+    assertEquals(1, server.getRequestCount());
+    AutoBatchStats stats = client.autoBatchStats().get("build-transaction");
+    assertEquals(1, stats.batches());
+    assertEquals(8, stats.items());
+    assertEquals(8, stats.maxBatchSize());
+  }
+
+  @Test
+  public void testErrorsReachTheirCaller() throws Exception {
+    final Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setAutoBatching(10, TimeUnit.MILLISECONDS, 100)
+            .build();
+
+    try {
+      new Transaction.Builder().build(client);
+      fail("expecting BuildException");
+    } catch (BuildException e) {
+      assertEquals("CH701", e.code);
+    }
+  }
+
+  @Test
+  public void testDisabledSendsSingletons() throws Exception {
+    Client client = new Client(server.getUrl("/"));
+    new Transaction.Builder().addAction(new Transaction.Action.Issue()).build(client);
+    new Transaction.Builder().addAction(new Transaction.Action.Issue()).build(client);
+    assertEquals(2, server.getRequestCount());
+    assertTrue(client.autoBatchStats().isEmpty());
+  }
+}
@@ -0,0 +1,182 @@
+package com.chain.http;
+
+import com.chain.common.Utils;
+import com.chain.exception.APIException;
+import com.chain.exception.JSONException;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * BatchResponseTest covers decoding of batch response bodies.
+ */
+public class BatchResponseTest {
+  public static class Item {
+    public String id;
+    public Map<String, Object> tags;
+  }
+
+  static Response response(String body) {
+    return response(ResponseBody.create(MediaType.parse("application/json"), body));
+  }
+
+  static Response response(ResponseBody body) {
+    return new Response.Builder()
+        .request(new Request.Builder().url("http://localhost/").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(200)
+        .header("Chain-Request-ID", "test")
+        .body(body)
+        .build();
+  }
+
+  @Test
+  public void testInterleavedErrors() throws Exception {
+    BatchResponse<Item> batch =
+        new BatchResponse<>(
+            response("[{\"id\":\"a\"},{\"code\":\"CH002\",\"message\":\"nope\"},{\"id\":\"c\"}]"),
+            Utils.serializer,
+            Item.class,
+            APIException.class);
+
+    assertEquals(3, batch.size());
+    assertTrue(batch.isSuccess(0));
+    assertTrue(batch.isError(1));
+    assertFalse(batch.isSuccess(1));
+    assertFalse(batch.isError(3));
+    assertEquals("a", batch.success(0).id);
+    assertEquals("CH002", batch.error(1).code);
+    assertNull(batch.success(1));
+    assertEquals(2, batch.successes().size());
+    assertEquals("c", batch.successesByIndex().get(2).id);
+    assertEquals(1, batch.errorsByIndex().size());
+  }
+
+  @Test
+  public void testItemHandler() throws Exception {
+    final List<String> seen = new ArrayList<>();
+    new BatchResponse<>(
+        response("[{\"id\":\"a\"},{\"code\":\"CH002\"},{\"id\":\"c\",\"code\":null}]"),
+        Utils.serializer,
+        Item.class,
+        APIException.class,
+        new BatchResponse.ItemHandler<Item>() {
+          public void onSuccess(int index, Item item) {
+            seen.add(index + ":" + item.id);
+          }
+
+          public void onError(int index, APIException error) {
+            seen.add(index + ":" + error.code);
+          }
+        });
+    assertEquals("[0:a, 1:CH002, 2:c]", seen.toString());
+  }
+
+  @Test
+  public void testMalformedBody() throws Exception {
+    try {
+      new BatchResponse<>(
+          response("{\"id\":\"a\"}"), Utils.serializer, Item.class, APIException.class);
+      fail("expecting JSONException");
+    } catch (JSONException e) {
+      assertEquals("test", e.requestId);
+    }
+  }
+
+  @Test
+  public void testNestedItems() throws Exception {
+    BatchResponse<Item> batch =
+        new BatchResponse<>(
+            response(
+                "[{\"tags\":{\"code\":\"x\"},\"id\":\"a\"},{},"
+                    + "{\"code\":\"CH003\",\"data\":{\"k\":[1,2]}}]"),
+            Utils.serializer,
+            Item.class,
+            APIException.class);
+
+    assertEquals(3, batch.size());
+    assertEquals("a", batch.success(0).id);
+    assertEquals("x", batch.success(0).tags.get("code"));
+    assertTrue(batch.isSuccess(1));
+    assertNull(batch.success(1).id);
+    assertEquals("CH003", batch.error(2).code);
+  }
+
+  @Test
+  public void testCodeAfterOtherFields() throws Exception {
+    // Errors relayed by something other than the core may not put "code"
+    // first.
+    BatchResponse<Item> batch =
+        new BatchResponse<>(
+            response(
+                "[{\"message\":\"nope\",\"temporary\":true,\"code\":\"CH002\"},"
+                    + "{\"id\":\"b\",\"tags\":{\"n\":1.5},\"code\":null}]"),
+            Utils.serializer,
+            Item.class,
+            APIException.class);
+
+    assertEquals(2, batch.size());
+    assertEquals("CH002", batch.error(0).code);
+    assertEquals("nope", batch.error(0).chainMessage);
+    assertTrue(batch.error(0).temporary);
+    assertEquals("b", batch.success(1).id);
+    assertEquals(1.5, batch.success(1).tags.get("n"));
+  }
+
+  @Test
+  public void testReadTimeout() throws Exception {
+    Buffer buf = new Buffer().writeUtf8("[{\"id\":\"a\"},{\"id\":");
+    final BufferedSource source =
+        Okio.buffer(
+            new ForwardingSource(buf) {
+              @Override
+              public long read(Buffer sink, long byteCount) throws IOException {
+                long n = super.read(sink, byteCount);
+                if (n == -1) {
+                  throw new SocketTimeoutException("timeout");
+                }
+                return n;
+              }
+            });
+    ResponseBody body =
+        new ResponseBody() {
+          public MediaType contentType() {
+            return MediaType.parse("application/json");
+          }
+
+          public long contentLength() {
+            return -1;
+          }
+
+          public BufferedSource source() {
+            return source;
+          }
+        };
+
+    try {
+      new BatchResponse<>(response(body), Utils.serializer, Item.class, APIException.class);
+      fail("expecting SocketTimeoutException");
+    } catch (SocketTimeoutException e) {
+      // Left for the client to retry.
+    }
+  }
+}
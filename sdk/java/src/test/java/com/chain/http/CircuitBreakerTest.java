@@ -0,0 +1,162 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.message;
+import static com.chain.MockCoreUtils.unavailable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CircuitBreakerTest asserts that endpoints which keep failing are passed
+ * over, and restored after a single successful probe.
+ */
+public class CircuitBreakerTest {
+  MockWebServer server;
+
+  /**
+   * Records the state transitions of circuit breakers.
+   */
+  static class RecordingListener implements CircuitBreaker.Listener {
+    final List<String> transitions = Collections.synchronizedList(new ArrayList<String>());
+
+    @Override
+    public void onStateChange(Endpoint endpoint, CircuitBreaker.State from, CircuitBreaker.State to) {
+      transitions.add(from + "->" + to);
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void testTransitions() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    Endpoint e =
+        new Endpoint(new URL("http://core:1999"), 0, 2, TimeUnit.MILLISECONDS.toNanos(50), listener);
+    CircuitBreaker breaker = e.circuitBreaker();
+
+    e.finish(e.start(), false);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    e.finish(e.start(), false);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    assertFalse(breaker.tryAcquire());
+
+    // Only one request is let through as the probe.
+    Thread.sleep(60);
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+    e.finish(e.start(), false);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+    // An abandoned probe lets another request probe right away.
+    Thread.sleep(60);
+    assertTrue(breaker.tryAcquire());
+    e.abandon();
+    assertTrue(breaker.tryAcquire());
+    e.finish(e.start(), true);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+    assertEquals(
+        Arrays.asList(
+            "CLOSED->OPEN",
+            "OPEN->HALF_OPEN",
+            "HALF_OPEN->OPEN",
+            "OPEN->HALF_OPEN",
+            "HALF_OPEN->OPEN",
+            "OPEN->HALF_OPEN",
+            "HALF_OPEN->CLOSED"),
+        listener.transitions);
+  }
+
+  @Test
+  public void testListenerSeesChangesInOrder() throws Exception {
+    final RecordingListener recorder = new RecordingListener();
+    CircuitBreaker.Listener slow =
+        new CircuitBreaker.Listener() {
+          @Override
+          public void onStateChange(
+              Endpoint endpoint, CircuitBreaker.State from, CircuitBreaker.State to) {
+            Thread.yield();
+            recorder.onStateChange(endpoint, from, to);
+          }
+        };
+    Endpoint e = new Endpoint(new URL("http://core:1999"), 0, 1, TimeUnit.SECONDS.toNanos(1), slow);
+    final CircuitBreaker breaker = e.circuitBreaker();
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      final boolean fail = i % 2 == 0;
+      threads[i] =
+          new Thread() {
+            @Override
+            public void run() {
+              for (int j = 0; j < 2000; j++) {
+                if (fail) {
+                  breaker.onFailure();
+                } else {
+                  breaker.onSuccess();
+                }
+              }
+            }
+          };
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    // Each change starts from the state the previous one ended in.
+    String state = "CLOSED";
+    for (String transition : recorder.transitions) {
+      assertEquals(state, transition.split("->")[0]);
+      state = transition.split("->")[1];
+    }
+    assertEquals(breaker.state().toString(), state);
+  }
+
+  @Test
+  public void testOpenEndpointSkipped() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setCircuitBreaker(2, 200, TimeUnit.MILLISECONDS)
+            .setCircuitBreakerListener(listener)
+            .build();
+    server.enqueue(
+        unavailable());
+    server.enqueue(
+        unavailable());
+    server.enqueue(
+        message("ok"));
+
+    // While the breaker is open, retries wait without reaching the core,
+    // until a probe succeeds.
+    assertEquals("ok", client.<Message>request("info", null, Message.class).message);
+    assertEquals(3, server.getRequestCount());
+    assertEquals(
+        Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"),
+        listener.transitions);
+  }
+}
@@ -0,0 +1,97 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils;
+import com.chain.MockCoreUtils.Message;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSink;
+import okio.GzipSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CompressionTest asserts that clients decompress gzip-encoded responses,
+ * and compress large request bodies for cores that accept them.
+ */
+public class CompressionTest {
+  MockWebServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  static MockResponse chainResponse(String body) {
+    return MockCoreUtils.chainResponse(200, body).setHeader("Accept-Encoding", "gzip");
+  }
+
+  static Buffer gzip(String s) throws Exception {
+    Buffer buf = new Buffer();
+    GzipSink sink = new GzipSink(buf);
+    sink.write(new Buffer().writeUtf8(s), s.length());
+    sink.close();
+    return buf;
+  }
+
+  @Test
+  public void testResponseDecompressed() throws Exception {
+    Client client = new Client.Builder().setURL(server.getUrl("/")).build();
+    server.enqueue(
+        chainResponse("").setHeader("Content-Encoding", "gzip").setBody(gzip("{\"message\":\"hi\"}")));
+
+    assertEquals("hi", client.<Message>request("info", null, Message.class).message);
+    assertEquals("gzip", server.takeRequest().getHeader("Accept-Encoding"));
+    assertEquals(1, client.compressionStats().responses());
+    assertEquals(16, client.compressionStats().responseBytes());
+  }
+
+  @Test
+  public void testLargeRequestCompressed() throws Exception {
+    Client client = new Client.Builder().setURL(server.getUrl("/")).setGzipThreshold(100).build();
+    char[] chars = new char[1000];
+    Arrays.fill(chars, 'a');
+    Message large = new Message();
+    large.message = new String(chars);
+    Message small = new Message();
+    small.message = "small";
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(chainResponse("{\"message\":\"ok\"}"));
+    }
+
+    // The first request is sent plain, since the core hasn't yet said it
+    // accepts compressed requests.
+    client.request("info", large, Message.class);
+    RecordedRequest req = server.takeRequest();
+    assertNull(req.getHeader("Content-Encoding"));
+
+    client.request("info", large, Message.class);
+    req = server.takeRequest();
+    assertEquals("gzip", req.getHeader("Content-Encoding"));
+    Buffer body = new Buffer();
+    body.writeAll(new GzipSource(req.getBody()));
+    assertTrue(body.readUtf8().contains(large.message));
+
+    client.request("info", small, Message.class);
+    req = server.takeRequest();
+    assertNull(req.getHeader("Content-Encoding"));
+    assertEquals("{\"message\":\"small\"}", req.getBody().readUtf8());
+
+    assertEquals(1, client.compressionStats().requests());
+    assertTrue(client.compressionStats().requestRatio() > 10);
+  }
+}
@@ -0,0 +1,106 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.exception.OverloadException;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.message;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ConcurrencyLimiterTest asserts that requests beyond an endpoint's
+ * concurrency limit are queued or shed, and that the limit adapts to
+ * congestion.
+ */
+public class ConcurrencyLimiterTest {
+  MockWebServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  static ConcurrencyLimiter limiter(int initial, int max, long queueTimeoutMillis)
+      throws Exception {
+    Endpoint e = new Endpoint(new URL("http://core:1999"), 0);
+    e.limitConcurrency(initial, max, TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis));
+    return e.concurrencyLimiter();
+  }
+
+  static void assertShed(CompletableFuture<?> f) throws Exception {
+    try {
+      f.get(1, TimeUnit.SECONDS);
+      fail("expecting OverloadException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof OverloadException);
+    }
+  }
+
+  @Test
+  public void testQueueAndShed() throws Exception {
+    ConcurrencyLimiter l = limiter(1, 1, 100);
+    assertTrue(l.acquire(RequestOptions.Priority.NORMAL).isDone());
+
+    // The next request waits for room, and gets it when the first finishes.
+    CompletableFuture<Void> second = l.acquire(RequestOptions.Priority.NORMAL);
+    assertFalse(second.isDone());
+    l.release();
+    second.get(1, TimeUnit.SECONDS);
+
+    // A request that waits too long is shed.
+    assertShed(l.acquire(RequestOptions.Priority.NORMAL));
+    assertEquals(1, l.shed());
+    assertEquals(0, l.queued());
+  }
+
+  @Test
+  public void testAdaptiveLimit() throws Exception {
+    ConcurrencyLimiter l = limiter(2, 4, 0);
+    for (int i = 0; i < 20; i++) {
+      l.acquire(RequestOptions.Priority.NORMAL).get();
+      l.acquire(RequestOptions.Priority.NORMAL).get();
+      l.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+      l.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertEquals(4, l.limit());
+
+    l.acquire(RequestOptions.Priority.NORMAL).get();
+    l.onCongestion();
+    assertEquals(3, l.limit());
+  }
+
+  @Test
+  public void testClientSheds() throws Exception {
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setConcurrencyLimit(1, 1, 0, TimeUnit.SECONDS)
+            .build();
+    server.enqueue(
+        message("slow")
+            .setBodyDelay(500, TimeUnit.MILLISECONDS));
+
+    CompletableFuture<Message> slow = client.requestAsync("info", null, Message.class);
+    Thread.sleep(100);
+    assertShed(client.<Message>requestAsync("info", null, Message.class));
+    assertEquals("slow", slow.get(5, TimeUnit.SECONDS).message);
+    assertEquals(1, server.getRequestCount());
+  }
+}
@@ -0,0 +1,118 @@
+package com.chain.http;
+
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * EndpointSelectorTest covers the built-in endpoint selection strategies and
+ * the per-endpoint statistics they rely on.
+ */
+public class EndpointSelectorTest {
+  MockWebServer fast;
+  MockWebServer slow;
+
+  @Before
+  public void setUp() throws Exception {
+    fast = new MockWebServer();
+    slow = new MockWebServer();
+    fast.start();
+    slow.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    fast.shutdown();
+    slow.shutdown();
+  }
+
+  static List<Endpoint> endpoints(int n) throws Exception {
+    Endpoint[] e = new Endpoint[n];
+    for (int i = 0; i < n; i++) {
+      e[i] = new Endpoint(new URL("http://core" + i + ":1999"), i);
+    }
+    return Arrays.asList(e);
+  }
+
+  @Test
+  public void testStickyMovesOnFailure() throws Exception {
+    Client client =
+        new Client.Builder().addURL(slow.getUrl("/")).addURL(fast.getUrl("/")).build();
+    slow.enqueue(chainResponse(503, "{\"code\":\"CH000\"}"));
+    fast.enqueue(chainResponse(200, "{}"));
+    fast.enqueue(chainResponse(200, "{}"));
+
+    client.request("info", null, Object.class);
+    client.request("info", null, Object.class);
+
+    assertEquals(1, slow.getRequestCount());
+    assertEquals(2, fast.getRequestCount());
+    Endpoint failed = client.endpoints().get(0);
+    assertEquals(1, failed.requests());
+    assertEquals(1, failed.failures());
+    assertTrue(failed.isFailing());
+    assertEquals(0, client.endpoints().get(1).failures());
+  }
+
+  @Test
+  public void testEwmaLatency() throws Exception {
+    List<Endpoint> endpoints = endpoints(2);
+    EndpointSelector selector = new EndpointSelector.EwmaLatency();
+    Endpoint slow = endpoints.get(0);
+    Endpoint fast = endpoints.get(1);
+    slow.start();
+    slow.finish(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(200), true);
+    fast.start();
+    fast.finish(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20), true);
+    for (int i = 0; i < 10; i++) {
+      assertSame(fast, selector.select(endpoints));
+    }
+
+    // Enough requests in flight to the faster endpoint outweigh its latency.
+    for (int i = 0; i < 10; i++) {
+      fast.start();
+    }
+    assertSame(slow, selector.select(endpoints));
+  }
+
+  @Test
+  public void testLeastOutstanding() throws Exception {
+    List<Endpoint> endpoints = endpoints(3);
+    EndpointSelector selector = new EndpointSelector.LeastOutstanding();
+    endpoints.get(0).start();
+    endpoints.get(2).start();
+    assertSame(endpoints.get(1), selector.select(endpoints));
+
+    // A recent failure passes the endpoint over even when it is idle.
+    long start = endpoints.get(1).start();
+    endpoints.get(1).finish(start, false);
+    assertFalse(selector.select(endpoints) == endpoints.get(1));
+  }
+
+  @Test
+  public void testSlowStartAfterRecovery() throws Exception {
+    Endpoint e = endpoints(1).get(0);
+    assertEquals(1, e.slowStartWeight(10, TimeUnit.SECONDS), 0);
+
+    e.finish(e.start(), false);
+    assertTrue(e.isFailing());
+    assertTrue(e.latencyMillis() >= 900);
+
+    e.finish(e.start(), true);
+    assertFalse(e.isFailing());
+    assertTrue(e.slowStartWeight(10, TimeUnit.SECONDS) < 0.5);
+    assertEquals(1, e.slowStartWeight(0, TimeUnit.SECONDS), 0);
+  }
+}
@@ -0,0 +1,142 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.exception.APIException;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.chain.MockCoreUtils.message;
+import static com.chain.MockCoreUtils.unavailable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * FailoverProbeTest asserts that requests waiting to retry move to the
+ * first URL found healthy, as soon as it is found, and that only URLs
+ * that can't be reached start the probing.
+ */
+public class FailoverProbeTest {
+  // Each request is elected on once it has failed this many times, by
+  // when it is waiting out a backoff of more than a second.
+  static final int FAILURES_BEFORE_ELECTION = 7;
+
+  MockWebServer down;
+  MockWebServer electing;
+  volatile boolean elected;
+  final ConcurrentHashMap<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+  final CountDownLatch failing = new CountDownLatch(2);
+
+  @Before
+  public void setUp() throws Exception {
+    down = new MockWebServer();
+    // The first core drops every connection.
+    down.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            failed(request.getPath());
+            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+          }
+        });
+    electing = new MockWebServer();
+    // The second core is unavailable until it has been elected leader.
+    electing.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            if (!elected) {
+              failed(request.getPath());
+              return unavailable();
+            }
+            return message("leader");
+          }
+        });
+    down.start();
+    electing.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    down.shutdown();
+    electing.shutdown();
+  }
+
+  void failed(String path) {
+    failures.putIfAbsent(path, new AtomicInteger());
+    if (failures.get(path).incrementAndGet() == FAILURES_BEFORE_ELECTION) {
+      failing.countDown();
+    }
+  }
+
+  @Test
+  public void testWaitingRequestsMoveToLeader() throws Exception {
+    final Client client =
+        new Client.Builder()
+            .addURL(down.getUrl("/"))
+            .addURL(electing.getUrl("/"))
+            .setFailoverProbe("info", 50, TimeUnit.MILLISECONDS)
+            .build();
+
+    // The two requests use different actions, so that their failures are
+    // counted apart.
+    final CompletableFuture<Message> sync = new CompletableFuture<>();
+    new Thread(
+            new Runnable() {
+              public void run() {
+                try {
+                  sync.complete(client.<Message>request("list-assets", null, Message.class));
+                } catch (Exception e) {
+                  sync.completeExceptionally(e);
+                }
+              }
+            })
+        .start();
+    CompletableFuture<Message> async = client.requestAsync("list-accounts", null, Message.class);
+
+    assertTrue(failing.await(30, TimeUnit.SECONDS));
+    assertFalse(sync.isDone() || async.isDone());
+    elected = true;
+
+    // Both requests are in backoffs longer than these waits, and are only
+    // retried within them because a probe finds the leader.
+    assertEquals("leader", sync.get(1, TimeUnit.SECONDS).message);
+    assertEquals("leader", async.get(1, TimeUnit.SECONDS).message);
+    assertEquals(electing.getUrl("/"), client.endpoints().get(1).url());
+    assertEquals(
+        CircuitBreaker.State.CLOSED, client.endpoints().get(1).circuitBreaker().state());
+  }
+
+  @Test
+  public void testUnavailableDoesntProbe() throws Exception {
+    Client client =
+        new Client.Builder()
+            .setURL(electing.getUrl("/"))
+            .setFailoverProbe("info", 50, TimeUnit.MILLISECONDS)
+            .build();
+
+    try {
+      client.request(
+          "list-assets", null, Message.class, new RequestOptions().setMaxRetries(3));
+      fail("expecting APIException");
+    } catch (APIException e) {
+      assertEquals(503, e.statusCode);
+    }
+    // The core answered each attempt, so it was never probed.
+    assertEquals(4, electing.getRequestCount());
+    assertEquals(null, failures.get("/info"));
+  }
+}
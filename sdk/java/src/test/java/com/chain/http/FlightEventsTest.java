@@ -0,0 +1,106 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.common.FlightEvents;
+import com.chain.exception.APIException;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FlightEventsTest asserts that a client's attempts, backoffs and batch
+ * decoding are recorded as JFR events while a recording is running, and
+ * not otherwise.
+ */
+public class FlightEventsTest {
+  MockWebServer server;
+  Client client;
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue("JFR events require Java 11 or later", FlightEvents.supported());
+    server = new MockWebServer();
+    server.start();
+    client = new Client.Builder().setURL(server.getUrl("/")).build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (server != null) {
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testEvents() throws Exception {
+    assertFalse(FlightEvents.begin(FlightEvents.Type.ATTEMPT).recording());
+
+    server.enqueue(chainResponse(503, "first", "{\"code\":\"CH000\"}"));
+    server.enqueue(chainResponse(200, "second", "[{\"message\":\"a\"},{\"code\":\"CH700\"}]"));
+
+    Path file = Files.createTempFile("chain-sdk", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.chain.Attempt");
+      recording.enable("com.chain.Backoff");
+      recording.enable("com.chain.BatchDecode");
+      recording.start();
+      BatchResponse<Message> batch =
+          client.batchRequest(
+              "create-thing", Arrays.asList(1, 2), Message.class, APIException.class);
+      assertEquals(2, batch.size());
+      recording.stop();
+      recording.dump(file);
+    }
+
+    List<RecordedEvent> attempts = new ArrayList<>();
+    List<RecordedEvent> backoffs = new ArrayList<>();
+    List<RecordedEvent> decodes = new ArrayList<>();
+    try {
+      for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+        String name = e.getEventType().getName();
+        if (name.equals("com.chain.Attempt")) {
+          attempts.add(e);
+        } else if (name.equals("com.chain.Backoff")) {
+          backoffs.add(e);
+        } else if (name.equals("com.chain.BatchDecode")) {
+          decodes.add(e);
+        }
+      }
+    } finally {
+      Files.delete(file);
+    }
+
+    assertEquals(2, attempts.size());
+    assertEquals("create-thing", attempts.get(0).getString("action"));
+    assertEquals(1, attempts.get(0).getLong("attempt"));
+    assertEquals(503, attempts.get(0).getLong("statusCode"));
+    assertEquals("first", attempts.get(0).getString("requestId"));
+    assertTrue(attempts.get(0).getString("failure") != null);
+    assertEquals(2, attempts.get(1).getLong("attempt"));
+    assertEquals(200, attempts.get(1).getLong("statusCode"));
+
+    assertEquals(1, backoffs.size());
+    assertEquals(2, backoffs.get(0).getLong("attempt"));
+    assertTrue(backoffs.get(0).getDuration().toMillis() > 0);
+
+    assertEquals(1, decodes.size());
+    assertEquals(2, decodes.get(0).getLong("items"));
+    assertEquals(1, decodes.get(0).getLong("errors"));
+  }
+}
@@ -0,0 +1,131 @@
+package com.chain.http;
+
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * HedgingTest asserts that slow read-only requests are duplicated to a second
+ * URL, within the hedging budget.
+ */
+public class HedgingTest {
+  MockWebServer primary;
+  MockWebServer secondary;
+  final CountDownLatch release = new CountDownLatch(1);
+
+  public static class Page {
+    public String server;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    primary = new MockWebServer();
+    secondary = new MockWebServer();
+    // Any request may be hedged once the latency window fills, including
+    // the warm-up requests, so the secondary always answers.
+    secondary.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            return page("secondary");
+          }
+        });
+    primary.start();
+    secondary.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    primary.shutdown();
+    secondary.shutdown();
+  }
+
+  static MockResponse page(String server) {
+    return chainResponse(200, "{\"server\":\"" + server + "\"}");
+  }
+
+  Client client(double ratio) throws Exception {
+    return new Client.Builder()
+        .addURL(primary.getUrl("/"))
+        .addURL(secondary.getUrl("/"))
+        .setHedging(0.9, ratio)
+        .build();
+  }
+
+  // Establishes the latency distribution of list-assets on the primary.
+  void warmUp(Client client, int n) throws Exception {
+    for (int i = 0; i < n; i++) {
+      primary.enqueue(page("primary"));
+      client.<Page>hedgedRequest("list-assets", null, Page.class);
+    }
+  }
+
+  @Test
+  public void testSlowRequestIsHedged() throws Exception {
+    Client client = client(1);
+    warmUp(client, 30);
+
+    // The primary holds the next request until the test ends, so only a
+    // hedge can answer it.
+    int secondaryRequests = secondary.getRequestCount();
+    primary.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            release.await();
+            return page("primary");
+          }
+        });
+    Page p = client.hedgedRequest("list-assets", null, Page.class);
+
+    assertEquals("secondary", p.server);
+    assertEquals(secondaryRequests + 1, secondary.getRequestCount());
+  }
+
+  @Test
+  public void testHedgesAreBudgeted() throws Exception {
+    // Twenty-three requests at a ratio of 0.1 earn only two hedges in all,
+    // however they end up being spent.
+    Client client = client(0.1);
+    warmUp(client, 20);
+
+    for (int i = 0; i < 3; i++) {
+      primary.enqueue(page("primary").setBodyDelay(300, TimeUnit.MILLISECONDS));
+      client.<Page>hedgedRequest("list-assets", null, Page.class);
+    }
+    assertEquals(2, secondary.getRequestCount());
+  }
+
+  @Test
+  public void testNoHedgeToSameURL() throws Exception {
+    Client client =
+        new Client.Builder()
+            .addURL(primary.getUrl("/"))
+            .addURL(secondary.getUrl("/"))
+            .setHedging(0.9, 1)
+            .setCircuitBreaker(1, 1, TimeUnit.MINUTES)
+            .build();
+    warmUp(client, 30);
+    int secondaryRequests = secondary.getRequestCount();
+    // With the secondary's breaker open, only the primary is available.
+    client.lane(Lane.DEFAULT).endpoints().get(1).circuitBreaker().onFailure();
+
+    primary.enqueue(page("primary").setBodyDelay(300, TimeUnit.MILLISECONDS));
+    Page p = client.hedgedRequest("list-assets", null, Page.class);
+
+    assertEquals("primary", p.server);
+    assertEquals(31, primary.getRequestCount());
+    assertEquals(secondaryRequests, secondary.getRequestCount());
+  }
+}
@@ -0,0 +1,199 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.api.Transaction;
+import com.chain.exception.OverloadException;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static com.chain.MockCoreUtils.message;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * LaneTest asserts that requests in one lane are isolated from the limits
+ * and load of another.
+ */
+public class LaneTest {
+  MockWebServer server;
+  // Long-polls are held until released, so that tests don't depend on how
+  // long anything takes.
+  final CountDownLatch polled = new CountDownLatch(1);
+  final CountDownLatch release = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    // Long-polls are answered once released; everything else is answered
+    // at once.
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            if (request.getPath().equals("/list-transactions")) {
+              polled.countDown();
+              release.await();
+            }
+            return message(request.getPath());
+          }
+        });
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    server.shutdown();
+  }
+
+  @Test
+  public void testLongPollsDontBlockDefaultLane() throws Exception {
+    // With a single asynchronous request allowed per lane, a long-poll in a
+    // shared lane would hold up every other request.
+    Client client =
+        new Client.Builder().setURL(server.getUrl("/")).setMaxAsyncRequests(1, 1).build();
+    RequestOptions longPoll = new RequestOptions().setLane(Lane.LONG_POLL);
+
+    CompletableFuture<Message> poll =
+        client.requestAsync("list-transactions", null, Message.class, longPoll);
+    assertTrue(polled.await(5, TimeUnit.SECONDS));
+    Message m = client.<Message>requestAsync("info", null, Message.class).get(5, TimeUnit.SECONDS);
+    assertEquals("/info", m.message);
+    assertFalse(poll.isDone());
+    release.countDown();
+    assertEquals("/list-transactions", poll.get(5, TimeUnit.SECONDS).message);
+
+    assertEquals(1, client.lane(Lane.LONG_POLL).requests());
+    assertEquals(1, client.lane(Lane.DEFAULT).requests());
+  }
+
+  @Test
+  public void testLaneQueue() throws Exception {
+    Client client =
+        new Client.Builder().setURL(server.getUrl("/")).setLane("bulk", 1).build();
+    RequestOptions bulk = new RequestOptions().setLane("bulk");
+    Lane lane = client.lane("bulk");
+
+    CompletableFuture<Message> first =
+        client.requestAsync("list-transactions", null, Message.class, bulk);
+    CompletableFuture<Message> second =
+        client.requestAsync("list-transactions", null, Message.class, bulk);
+    assertEquals(1, lane.inFlight());
+    assertEquals(1, lane.queued());
+    assertTrue(polled.await(5, TimeUnit.SECONDS));
+    release.countDown();
+
+    first.get(5, TimeUnit.SECONDS);
+    second.get(5, TimeUnit.SECONDS);
+    // The room is released just after the caller receives its result.
+    for (int i = 0; i < 100 && lane.inFlight() > 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, lane.inFlight());
+    assertEquals(0, lane.queued());
+    assertEquals(2, lane.requests());
+    assertTrue(lane.maxWaitNanos() > 0);
+    assertEquals(lane.maxWaitNanos(), lane.waitNanos());
+  }
+
+  @Test
+  public void testLaneQueueTimeout() throws Exception {
+    Client client =
+        new Client.Builder().setURL(server.getUrl("/")).setLane("bulk", 1).build();
+    Lane lane = client.lane("bulk");
+    RequestOptions bulk =
+        new RequestOptions().setLane("bulk").setAttemptTimeout(100, TimeUnit.MILLISECONDS);
+
+    CompletableFuture<Message> slow =
+        client.requestAsync(
+            "list-transactions", null, Message.class, new RequestOptions().setLane("bulk"));
+    try {
+      client.request("info", null, Message.class, bulk);
+      fail("expecting OverloadException");
+    } catch (OverloadException e) {
+    }
+    try {
+      client.requestAsync("info", null, Message.class, bulk).get(5, TimeUnit.SECONDS);
+      fail("expecting OverloadException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof OverloadException);
+    }
+    assertEquals(0, lane.queued());
+
+    release.countDown();
+    slow.get(5, TimeUnit.SECONDS);
+    assertEquals(1, server.getRequestCount());
+  }
+
+  @Test
+  public void testManyConcurrentFeeds() throws Exception {
+    // Each poll is answered only once every feed is polling, which a limit
+    // on the long-poll lane would prevent until the excess feeds were shed.
+    final int feeds = 25;
+    final CountDownLatch polling = new CountDownLatch(feeds);
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            polling.countDown();
+            polling.await(10, TimeUnit.SECONDS);
+            return chainResponse(
+                200, "{\"items\":[{\"id\":\"tx\"}],\"next\":{},\"last_page\":false}");
+          }
+        });
+    final Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setReadTimeout(1, TimeUnit.SECONDS)
+            .build();
+
+    List<CompletableFuture<Transaction>> next = new ArrayList<>();
+    for (int i = 0; i < feeds; i++) {
+      final Transaction.Feed feed = new Transaction.Feed();
+      final CompletableFuture<Transaction> tx = new CompletableFuture<>();
+      new Thread(
+              new Runnable() {
+                public void run() {
+                  try {
+                    tx.complete(feed.next(client));
+                  } catch (Exception e) {
+                    tx.completeExceptionally(e);
+                  }
+                }
+              })
+          .start();
+      next.add(tx);
+    }
+    for (CompletableFuture<Transaction> tx : next) {
+      assertEquals("tx", tx.get(10, TimeUnit.SECONDS).id);
+    }
+    assertEquals(feeds, client.lane(Lane.LONG_POLL).requests());
+    assertEquals(0, client.lane(Lane.LONG_POLL).maxWaitNanos());
+  }
+
+  @Test
+  public void testUnknownLane() throws Exception {
+    Client client = new Client.Builder().setURL(server.getUrl("/")).build();
+    try {
+      client.request("info", null, Message.class, new RequestOptions().setLane("missing"));
+      fail("expecting IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+    assertEquals(0, server.getRequestCount());
+  }
+}
@@ -0,0 +1,159 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.exception.APIException;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static com.chain.MockCoreUtils.message;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * LoggingTest asserts that request logging can be made asynchronous,
+ * bounded, sampled and limited to slow requests.
+ */
+public class LoggingTest {
+  MockWebServer server;
+  static final String LONG = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    // /slow answers after a delay, /bad fails, and everything else answers
+    // at once with a long message.
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            if (request.getPath().equals("/bad")) {
+              return chainResponse(400, "{\"code\":\"CH002\"}");
+            }
+            if (request.getPath().equals("/slow")) {
+              Thread.sleep(200);
+            }
+            return message(LONG);
+          }
+        });
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  private static void awaitLogged(Client client, long n) throws InterruptedException {
+    for (int i = 0; i < 100 && client.logStats().logged() < n; i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testAsyncTruncatedLog() throws Exception {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setLogger(log)
+            .setLogLevel(LoggingInterceptor.Level.ALL)
+            .setAsyncLogging(10)
+            .setLogBodyLimit(16)
+            .build();
+
+    // The caller still receives the whole response.
+    assertEquals(LONG, client.<Message>request("info", null, Message.class).message);
+    awaitLogged(client, 1);
+
+    String entry = log.toString("UTF-8");
+    assertTrue(entry.contains("\tresponse={\"message\":\"abcd\n"));
+    assertTrue(entry.contains("\ttruncated=true\n"));
+    assertEquals(1, client.logStats().truncated());
+  }
+
+  @Test
+  public void testDropsWhenQueueIsFull() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    OutputStream stuck =
+        new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+          }
+        };
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setLogger(stuck)
+            .setLogLevel(LoggingInterceptor.Level.ALL)
+            .setAsyncLogging(1)
+            .build();
+
+    // The first entry is being written, the second waits, and the rest
+    // are dropped, without holding up their requests.
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      client.request("info", null, Message.class);
+      Thread.sleep(20);
+    }
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    assertEquals(3, client.logStats().dropped());
+
+    release.countDown();
+    awaitLogged(client, 2);
+    assertEquals(2, client.logStats().logged());
+  }
+
+  @Test
+  public void testSamplingAndSlowRequests() throws Exception {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setLogger(log)
+            .setLogLevel(LoggingInterceptor.Level.ERRORS)
+            .setSlowRequestLogging(100, TimeUnit.MILLISECONDS)
+            .build();
+
+    client.request("info", null, Message.class);
+    assertEquals(0, client.logStats().logged());
+    client.request("slow", null, Message.class);
+    assertEquals(1, client.logStats().logged());
+    assertTrue(log.toString("UTF-8").contains("/slow"));
+
+    Client sampled =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setLogger(log)
+            .setLogLevel(LoggingInterceptor.Level.ALL)
+            .setLogSampling(0, 1)
+            .build();
+    sampled.request("info", null, Message.class);
+    try {
+      sampled.request("bad", null, Message.class);
+      fail("expecting APIException");
+    } catch (APIException e) {
+    }
+    assertEquals(1, sampled.logStats().sampledOut());
+    assertEquals(1, sampled.logStats().logged());
+    assertFalse(sampled.logStats().truncated() > 0);
+  }
+}
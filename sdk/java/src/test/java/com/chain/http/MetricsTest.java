@@ -0,0 +1,119 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.exception.APIException;
+import com.chain.metrics.Gauge;
+import com.chain.metrics.Histogram;
+import com.chain.metrics.JmxReporter;
+import com.chain.metrics.MetricRegistry;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static com.chain.MockCoreUtils.message;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MetricsTest asserts that a client records its calls in its metric
+ * registry, and that the registry's metrics are published over JMX.
+ */
+public class MetricsTest {
+  MockWebServer server;
+  MetricRegistry registry;
+  Client client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    registry = new MetricRegistry();
+    client = new Client.Builder().setURL(server.getUrl("/")).setMetricRegistry(registry).build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void testCallMetrics() throws Exception {
+    server.enqueue(chainResponse(503, "{\"code\":\"CH000\"}"));
+    server.enqueue(message("ok"));
+
+    assertEquals("ok", client.<Message>request("info", null, Message.class).message);
+
+    assertEquals(1, registry.histogram("client.info.latency").count());
+    assertEquals(1, registry.counter("client.info.calls").count());
+    assertEquals(0, registry.counter("client.info.errors").count());
+    assertEquals(1, registry.counter("client.info.retries").count());
+    assertEquals(1, registry.counter("client.status.503").count());
+    assertEquals(1, registry.counter("client.status.200").count());
+    assertEquals(0, registry.counter("client.endpoint-switches").count());
+  }
+
+  @Test
+  public void testBatchMetrics() throws Exception {
+    server.enqueue(
+        chainResponse(
+            200,
+            "[{\"message\":\"a\"},{\"code\":\"CH700\"},"
+                + "{\"message\":\"c\"},{\"message\":\"d\"}]"));
+
+    BatchResponse<Message> batch =
+        client.batchRequest(
+            "create-thing", Arrays.asList(1, 2, 3, 4), Message.class, APIException.class);
+    assertEquals(4, batch.size());
+
+    assertEquals(1, registry.histogram("client.create-thing.batch-size").count());
+    assertEquals(4, registry.histogram("client.create-thing.batch-size").max());
+    assertEquals(4, registry.counter("client.create-thing.batch-items").count());
+    assertEquals(1, registry.counter("client.create-thing.batch-errors").count());
+    Gauge ratio = (Gauge) registry.metrics().get("client.create-thing.batch-error-ratio");
+    assertEquals(0.25, ratio.value(), 1e-9);
+  }
+
+  @Test
+  public void testHistogramPercentiles() {
+    Histogram h = new Histogram();
+    for (long i = 1; i <= 100000; i++) {
+      h.record(i * 1000);
+    }
+    assertEquals(100000, h.count());
+    assertEquals(100000000, h.max());
+    for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+      double exact = q * 100000 * 1000;
+      long estimate = h.percentile(q);
+      assertTrue(q + ": " + estimate, estimate >= exact && estimate <= exact * 1.07);
+    }
+    assertEquals(100000000, h.percentile(1));
+  }
+
+  @Test
+  public void testJmxReporter() throws Exception {
+    MBeanServer mbeans = MBeanServerFactory.newMBeanServer();
+    registry.counter("client.info.calls").inc(3);
+    JmxReporter jmx = new JmxReporter(registry, mbeans, "com.chain.test");
+    assertTrue(mbeans.queryNames(new ObjectName("com.chain.test:*"), null).isEmpty());
+    jmx.start();
+    registry.histogram("client.info.latency").record(42);
+
+    ObjectName calls = new ObjectName("com.chain.test:type=Counter,name=\"client.info.calls\"");
+    ObjectName latency =
+        new ObjectName("com.chain.test:type=Histogram,name=\"client.info.latency\"");
+    assertEquals(3L, mbeans.getAttribute(calls, "Count"));
+    assertEquals(42L, mbeans.getAttribute(latency, "Max"));
+
+    jmx.close();
+    assertFalse(mbeans.isRegistered(calls));
+    assertFalse(mbeans.isRegistered(latency));
+  }
+}
@@ -0,0 +1,131 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.message;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * PrewarmTest asserts that a client opens its prewarmed connections when it
+ * is built, reuses them for its first requests, and reports when they are
+ * ready.
+ */
+public class PrewarmTest {
+  MockWebServer server;
+  MockWebServer slow;
+  final CountDownLatch slowRelease = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    // Holding each response briefly keeps the warm-up requests in flight
+    // together, as a TLS handshake would.
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            if (request.getPath().equals("/info")) {
+              Thread.sleep(100);
+            }
+            return message("ok");
+          }
+        });
+    slow = new MockWebServer();
+    slow.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            slowRelease.await();
+            return message("ok");
+          }
+        });
+    server.start();
+    slow.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    slowRelease.countDown();
+    server.shutdown();
+    slow.shutdown();
+  }
+
+  @Test
+  public void testOpensConnections() throws Exception {
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setTransportRegistry(new TransportRegistry())
+            .setPrewarming("info", 3, 1, TimeUnit.MINUTES)
+            .build();
+    client.prewarmed().get(10, TimeUnit.SECONDS);
+
+    int opened = 0;
+    for (int i = 0; i < 3; i++) {
+      RecordedRequest req = server.takeRequest();
+      assertEquals("/info", req.getPath());
+      if (req.getSequenceNumber() == 0) {
+        opened++;
+      }
+    }
+    assertEquals(3, opened);
+
+    // The first request finds a connection waiting for it.
+    client.<Message>request("list-assets", null, Message.class);
+    RecordedRequest req = server.takeRequest();
+    assertEquals("/list-assets", req.getPath());
+    assertTrue(req.getSequenceNumber() > 0);
+  }
+
+  @Test
+  public void testReadyWhenEveryURLIsWarm() throws Exception {
+    Client client =
+        new Client.Builder()
+            .addURL(server.getUrl("/"))
+            .addURL(slow.getUrl("/"))
+            .setTransportRegistry(new TransportRegistry())
+            .setPrewarming("info", 2, 1, TimeUnit.MINUTES)
+            .build();
+
+    // The first URL is warm, but the second hasn't answered.
+    Thread.sleep(500);
+    assertFalse(client.prewarmed().isDone());
+
+    slowRelease.countDown();
+    client.prewarmed().get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testLimits() {
+    try {
+      new Client.Builder().setPrewarming("info", 0, 1, TimeUnit.MINUTES);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new Client.Builder()
+          .setURL(server.getUrl("/"))
+          .setConnectionPool(5, 1, TimeUnit.MINUTES)
+          .setPrewarming("info", 10, 1, TimeUnit.MINUTES)
+          .build();
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertTrue(new Client.Builder().setURL(server.getUrl("/")).build().prewarmed().isDone());
+  }
+}
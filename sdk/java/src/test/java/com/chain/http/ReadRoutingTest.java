@@ -0,0 +1,90 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.chain.MockCoreUtils.message;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ReadRoutingTest asserts that reads are spread across every URL while
+ * writes stick to one.
+ */
+public class ReadRoutingTest {
+  MockWebServer leader;
+  MockWebServer follower;
+
+  @Before
+  public void setUp() throws Exception {
+    Dispatcher ok =
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            return message("ok");
+          }
+        };
+    leader = new MockWebServer();
+    leader.setDispatcher(ok);
+    leader.start();
+    follower = new MockWebServer();
+    follower.setDispatcher(ok);
+    follower.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    leader.shutdown();
+    follower.shutdown();
+  }
+
+  private Client.Builder builder() throws Exception {
+    return new Client.Builder()
+        .addURL(leader.getUrl("/"))
+        .addURL(follower.getUrl("/"))
+        .setReadSelector(new EndpointSelector.LeastOutstanding());
+  }
+
+  @Test
+  public void testReadsSpreadAndWritesStick() throws Exception {
+    Client client = builder().build();
+
+    for (int i = 0; i < 20; i++) {
+      client.request("submit-transaction", null, Message.class);
+    }
+    assertEquals(20, leader.getRequestCount());
+    assertEquals(0, follower.getRequestCount());
+
+    for (int i = 0; i < 20; i++) {
+      client.request("list-assets", null, Message.class);
+    }
+    assertTrue(leader.getRequestCount() > 20);
+    assertTrue(follower.getRequestCount() > 0);
+  }
+
+  @Test
+  public void testOverride() throws Exception {
+    Client client =
+        builder()
+            .setReadAction("list-balances", false)
+            .setReadAction("info", true)
+            .build();
+    assertFalse(client.isRead("list-balances"));
+    assertTrue(client.isRead("list-transactions"));
+    assertTrue(client.isRead("get-transaction-feed"));
+    assertTrue(client.isRead("info"));
+    assertFalse(client.isRead("create-account"));
+
+    for (int i = 0; i < 20; i++) {
+      client.request("list-balances", null, Message.class);
+    }
+    assertEquals(0, follower.getRequestCount());
+  }
+}
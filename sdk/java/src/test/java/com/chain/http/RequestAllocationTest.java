@@ -0,0 +1,78 @@
+package com.chain.http;
+
+import com.chain.api.Transaction;
+import com.squareup.okhttp.Request;
+import okio.Buffer;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RequestAllocationTest holds the per-request allocations of the request
+ * path to a budget, so that regressions in the hot path are caught. It
+ * measures building a request and writing its body for a typical
+ * build-transaction item.
+ */
+public class RequestAllocationTest {
+  // Bytes allocated per request. The request path currently allocates
+  // about 1.2KB for this body, down from about 6.5KB when the body was
+  // serialized to a String and the URL and credentials were rebuilt on
+  // every attempt.
+  private static final long BUDGET = 2048;
+
+  private static final int WARMUP = 20000;
+  private static final int ITERATIONS = 20000;
+
+  @Test
+  public void testRequestAllocationBudget() throws Exception {
+    java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    Client client = new Client(new URL("http://localhost:1999"), "user:secret");
+    Endpoint endpoint = client.endpoints().get(0);
+    List<Transaction.Builder> body = new ArrayList<>();
+    body.add(
+        new Transaction.Builder()
+            .addAction(
+                new Transaction.Action.SpendFromAccount()
+                    .setAccountAlias("alice")
+                    .setAssetAlias("gold")
+                    .setAmount(10))
+            .addAction(
+                new Transaction.Action.ControlWithAccount()
+                    .setAccountAlias("bob")
+                    .setAssetAlias("gold")
+                    .setAmount(10)));
+    Buffer sink = new Buffer();
+
+    for (int i = 0; i < WARMUP; i++) {
+      send(client, endpoint, body, sink);
+    }
+    long tid = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(tid);
+    for (int i = 0; i < ITERATIONS; i++) {
+      send(client, endpoint, body, sink);
+    }
+    long perRequest = (threads.getThreadAllocatedBytes(tid) - before) / ITERATIONS;
+
+    assertTrue(
+        "allocated " + perRequest + " bytes per request, budget is " + BUDGET,
+        perRequest <= BUDGET);
+  }
+
+  private static void send(Client client, Endpoint endpoint, Object body, Buffer sink)
+      throws Exception {
+    Request req = client.buildRequest(endpoint, "build-transaction", new JsonRequestBody(body));
+    req.body().writeTo(sink);
+    sink.clear();
+  }
+}
@@ -0,0 +1,107 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.exception.APIException;
+import com.chain.exception.HTTPException;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.message;
+import static com.chain.MockCoreUtils.unavailable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * RequestOptionsTest asserts that per-call options override the client's
+ * timeouts and retry policy.
+ */
+public class RequestOptionsTest {
+  MockWebServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void testAttemptTimeoutExtendsReadTimeout() throws Exception {
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setReadTimeout(200, TimeUnit.MILLISECONDS)
+            .build();
+    RequestOptions opts =
+        new RequestOptions().setAttemptTimeout(5, TimeUnit.SECONDS).setMaxRetries(0);
+    server.enqueue(
+        message("sync").setBodyDelay(500, TimeUnit.MILLISECONDS));
+    server.enqueue(
+        message("async").setBodyDelay(500, TimeUnit.MILLISECONDS));
+
+    assertEquals("sync", client.<Message>request("info", null, Message.class, opts).message);
+    assertEquals(
+        "async",
+        client
+            .<Message>requestAsync("info", null, Message.class, opts)
+            .get(5, TimeUnit.SECONDS)
+            .message);
+  }
+
+  @Test
+  public void testAttemptTimeout() throws Exception {
+    Client client = new Client.Builder().setURL(server.getUrl("/")).build();
+    RequestOptions opts =
+        new RequestOptions().setAttemptTimeout(100, TimeUnit.MILLISECONDS).setMaxRetries(0);
+    server.enqueue(
+        message("slow").setBodyDelay(2, TimeUnit.SECONDS));
+    server.enqueue(
+        message("slow").setBodyDelay(2, TimeUnit.SECONDS));
+
+    // Each response is slower than the attempt timeout, but well within the
+    // client's read timeout.
+    try {
+      client.request("info", null, Message.class, opts);
+      fail("expecting HTTPException");
+    } catch (HTTPException e) {
+    }
+    try {
+      client.requestAsync("info", null, Message.class, opts).get(5, TimeUnit.SECONDS);
+      fail("expecting HTTPException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof HTTPException);
+    }
+  }
+
+  @Test
+  public void testDeadlineSpansRetries() throws Exception {
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setCircuitBreaker(0, 0, TimeUnit.SECONDS)
+            .build();
+    for (int i = 0; i < 20; i++) {
+      server.enqueue(unavailable());
+    }
+    RequestOptions opts = new RequestOptions().setDeadline(500, TimeUnit.MILLISECONDS);
+
+    // Without a deadline, all ten retries would be sent.
+    try {
+      client.request("info", null, Message.class, opts);
+      fail("expecting APIException");
+    } catch (APIException e) {
+      assertEquals(503, e.statusCode);
+    }
+    assertTrue(server.getRequestCount() < 10);
+  }
+}
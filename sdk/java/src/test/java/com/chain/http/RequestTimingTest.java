@@ -0,0 +1,95 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RequestTimingTest asserts that a request listener is told how the time of
+ * each call was spent.
+ */
+public class RequestTimingTest {
+  MockWebServer server;
+  Client client;
+  final LinkedBlockingQueue<RequestTiming> timings = new LinkedBlockingQueue<>();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setRequestListener(
+                new RequestListener() {
+                  public void onComplete(RequestTiming timing) {
+                    timings.add(timing);
+                  }
+                })
+            .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void testRetriedCall() throws Exception {
+    server.enqueue(chainResponse(503, "first", "{\"code\":\"CH000\"}"));
+    server.enqueue(chainResponse(200, "second", "{\"message\":\"ok\"}"));
+
+    assertEquals("ok", client.<Message>request("info", null, Message.class).message);
+
+    RequestTiming timing = timings.poll(5, TimeUnit.SECONDS);
+    assertEquals("info", timing.action());
+    assertEquals("second", timing.requestId());
+    assertTrue(timing.succeeded());
+    assertEquals(2, timing.attempts().size());
+
+    RequestTiming.Attempt first = timing.attempts().get(0);
+    assertEquals("first", first.requestId());
+    assertNotNull(first.failure());
+    assertEquals(0, first.backoffNanos());
+    assertEquals(-1, first.decodeNanos());
+
+    RequestTiming.Attempt second = timing.attempts().get(1);
+    assertNull(second.failure());
+    assertEquals(server.getUrl("/"), second.url());
+    assertTrue(second.backoffNanos() > 0);
+    assertTrue(second.queuedNanos() >= 0);
+    assertTrue(second.connectNanos() >= 0);
+    assertTrue(second.firstByteNanos() > 0);
+    assertTrue(second.bodyReadNanos() >= 0);
+    assertTrue(second.decodeNanos() >= 0);
+    assertTrue(timing.totalNanos() >= second.backoffNanos() + second.firstByteNanos());
+  }
+
+  @Test
+  public void testAsyncCall() throws Exception {
+    server.enqueue(
+        chainResponse(200, "async", "{\"message\":\"ok\"}")
+            .setBodyDelay(100, TimeUnit.MILLISECONDS));
+
+    Message m = client.<Message>requestAsync("info", null, Message.class).get(5, TimeUnit.SECONDS);
+    assertEquals("ok", m.message);
+
+    RequestTiming timing = timings.poll(5, TimeUnit.SECONDS);
+    assertEquals("async", timing.requestId());
+    assertTrue(timing.succeeded());
+    RequestTiming.Attempt attempt = timing.attempts().get(0);
+    assertTrue(attempt.connectNanos() >= 0);
+    assertTrue(attempt.bodyReadNanos() >= TimeUnit.MILLISECONDS.toNanos(90));
+  }
+}
@@ -0,0 +1,94 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.chain.MockCoreUtils.chainResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * SingleFlightTest asserts that identical concurrent reads are served by a
+ * single request.
+ */
+public class SingleFlightTest {
+  MockWebServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    // Each response echoes the request body, after a delay long enough for
+    // the concurrent calls to pile up.
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            return chainResponse(200, "{\"message\":" + request.getBody().readUtf8() + "}")
+                .setBodyDelay(200, TimeUnit.MILLISECONDS);
+          }
+        });
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  public void testIdenticalReadsShareRequest() throws Exception {
+    Client client =
+        new Client.Builder().setURL(server.getUrl("/")).setSingleFlight("list-assets").build();
+
+    List<CompletableFuture<Message>> calls = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      calls.add(client.<Message>requestAsync("list-assets", "gold", Message.class));
+    }
+    calls.add(client.<Message>requestAsync("list-assets", "silver", Message.class));
+    for (int i = 0; i < calls.size(); i++) {
+      calls.get(i).get(5, TimeUnit.SECONDS);
+    }
+
+    assertEquals("gold", calls.get(0).get().message);
+    assertEquals("silver", calls.get(10).get().message);
+    // Every call has its own copy of the result.
+    assertNotSame(calls.get(0).get(), calls.get(1).get());
+    assertEquals(2, server.getRequestCount());
+
+    SingleFlightStats stats = client.singleFlightStats().get("list-assets");
+    assertEquals(11, stats.calls());
+    assertEquals(9, stats.shared());
+
+    // A blocking call, once the others are done, sends a request of its own.
+    assertEquals("gold", client.<Message>request("list-assets", "gold", Message.class).message);
+    assertEquals(3, server.getRequestCount());
+    assertEquals(12, stats.calls());
+  }
+
+  @Test
+  public void testOtherActionsAreSentSeparately() throws Exception {
+    Client client =
+        new Client.Builder().setURL(server.getUrl("/")).setSingleFlight("list-assets").build();
+
+    List<CompletableFuture<Message>> calls = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      calls.add(client.<Message>requestAsync("list-accounts", "alice", Message.class));
+    }
+    for (int i = 0; i < calls.size(); i++) {
+      assertEquals("alice", calls.get(i).get(5, TimeUnit.SECONDS).message);
+    }
+    assertEquals(3, server.getRequestCount());
+    assertEquals(0, client.singleFlightStats().size());
+  }
+}
@@ -0,0 +1,121 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.squareup.okhttp.Credentials;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.chain.MockCoreUtils.message;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TransportRegistryTest asserts that clients built with the same registry
+ * reuse one another's connections.
+ */
+public class TransportRegistryTest {
+  MockWebServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  void respond() {
+    server.enqueue(
+        message("ok"));
+  }
+
+  @Test
+  public void testClientsShareConnections() throws Exception {
+    TransportRegistry registry = new TransportRegistry();
+    Client a =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setAccessToken("a:secret")
+            .setTransportRegistry(registry)
+            .build();
+    Client b =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setAccessToken("b:secret")
+            .setTransportRegistry(registry)
+            .build();
+    Client other =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setTransportRegistry(new TransportRegistry())
+            .build();
+
+    for (Client c : new Client[] {a, b, other}) {
+      respond();
+      c.request("info", null, Message.class);
+    }
+    // The sequence number counts the requests made over a connection.
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    RecordedRequest second = server.takeRequest();
+    assertEquals(1, second.getSequenceNumber());
+    assertEquals(Credentials.basic("b", "secret"), second.getHeader("Authorization"));
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+  }
+
+  @Test
+  public void testNewBuilder() throws Exception {
+    Client client =
+        new Client.Builder()
+            .setURL("http://core:1999")
+            .setAccessToken("a:secret")
+            .setTransportRegistry(new TransportRegistry())
+            .build();
+    Client derived = client.newBuilder().setURL(server.getUrl("/")).build();
+    respond();
+    derived.request("info", null, Message.class);
+
+    assertEquals("http://core:1999", client.url().toString());
+    RecordedRequest req = server.takeRequest();
+    assertEquals(Credentials.basic("a", "secret"), req.getHeader("Authorization"));
+  }
+
+  @Test
+  public void testNewConnectionBuilder() throws Exception {
+    final List<RequestTiming> timings = new ArrayList<>();
+    Client client =
+        new Client.Builder()
+            .setURL(server.getUrl("/"))
+            .setAccessToken("a:secret")
+            .setTransportRegistry(new TransportRegistry())
+            .setSingleFlight("info")
+            .setRequestListener(
+                new RequestListener() {
+                  public void onComplete(RequestTiming timing) {
+                    timings.add(timing);
+                  }
+                })
+            .build();
+    Client derived = client.newConnectionBuilder().setURL(server.getUrl("/mockhsm")).build();
+    respond();
+    respond();
+    client.request("info", null, Message.class);
+    derived.request("info", null, Message.class);
+
+    // The derived client reuses the connection and credentials, but not
+    // the listener.
+    assertEquals(1, timings.size());
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    RecordedRequest req = server.takeRequest();
+    assertEquals("/mockhsm/info", req.getPath());
+    assertEquals(1, req.getSequenceNumber());
+    assertEquals(Credentials.basic("a", "secret"), req.getHeader("Authorization"));
+  }
+}
@@ -0,0 +1,224 @@
+package com.chain.http;
+
+import com.chain.MockCoreUtils.Message;
+import com.chain.exception.JSONException;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.chain.MockCoreUtils.message;
+import static com.chain.MockCoreUtils.unavailable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * TransportTest asserts that clients send requests through a configured
+ * transport, including the JDK HTTP client transport where it is available.
+ */
+public class TransportTest {
+  MockWebServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  /**
+   * Counts the requests passed to an OkHttp transport.
+   */
+  static class CountingTransport extends OkHttpTransport {
+    final AtomicInteger count = new AtomicInteger();
+
+    CountingTransport() {
+      super(new OkHttpClient());
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+      count.incrementAndGet();
+      return super.execute(request);
+    }
+
+    @Override
+    public Cancellable enqueue(Request request, Callback callback) {
+      count.incrementAndGet();
+      return super.enqueue(request, callback);
+    }
+  }
+
+  @Test
+  public void testCustomTransport() throws Exception {
+    CountingTransport transport = new CountingTransport();
+    Client client = new Client.Builder().setURL(server.getUrl("/")).setTransport(transport).build();
+    server.enqueue(message("sync"));
+    server.enqueue(message("async"));
+
+    assertEquals("sync", client.<Message>request("info", null, Message.class).message);
+    assertEquals(
+        "async",
+        client
+            .<Message>requestAsync("info", null, Message.class)
+            .get(10, TimeUnit.SECONDS)
+            .message);
+    assertEquals(2, transport.count.get());
+
+    try {
+      client.setReadTimeout(1, TimeUnit.SECONDS);
+      fail("expecting UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+    }
+  }
+
+  @Test
+  public void testUserAgent() throws Exception {
+    Client client = new Client.Builder().setURL(server.getUrl("/")).build();
+    server.enqueue(message("sync"));
+    client.<Message>request("info", null, Message.class);
+    // The version is read from the filtered properties.json on first use.
+    String agent = server.takeRequest().getHeader("User-Agent");
+    assertTrue(agent, agent.matches("chain-sdk-java/\\d+\\.\\d+\\.\\d+.*"));
+  }
+
+  @Test
+  public void testJdkHttpTransport() throws Exception {
+    Client client;
+    try {
+      client = new Client.Builder().setURL(server.getUrl("/")).useHttp2().build();
+    } catch (UnsupportedOperationException e) {
+      Assume.assumeNoException(e); // running on Java 8
+      return;
+    }
+    server.enqueue(unavailable());
+    server.enqueue(message("sync"));
+    server.enqueue(message("async"));
+
+    assertEquals("sync", client.<Message>request("info", null, Message.class).message);
+    assertEquals(
+        "async",
+        client
+            .<Message>requestAsync("info", null, Message.class)
+            .get(10, TimeUnit.SECONDS)
+            .message);
+    assertEquals(3, server.getRequestCount());
+    server.takeRequest();
+    assertEquals("null", server.takeRequest().getBody().readUtf8());
+  }
+
+  @Test
+  public void testSmallBodyLength() throws Exception {
+    Client client = new Client.Builder().setURL(server.getUrl("/")).build();
+    server.enqueue(message("async"));
+    Map<String, Object> body = new HashMap<>();
+    body.put("alias", "alice");
+
+    CompletableFuture<Message> f = client.<Message>requestAsync("info", body, Message.class);
+    // A small body is serialized before the call returns.
+    body.put("alias", "bob");
+    assertEquals("async", f.get(10, TimeUnit.SECONDS).message);
+
+    RecordedRequest req = server.takeRequest();
+    assertEquals("{\"alias\":\"alice\"}", req.getBody().readUtf8());
+    assertEquals("17", req.getHeader("Content-Length"));
+    assertNull(req.getHeader("Transfer-Encoding"));
+  }
+
+  @Test
+  public void testJdkHttpTransportStreamsBody() throws Exception {
+    Client client;
+    try {
+      client = new Client.Builder().setURL(server.getUrl("/")).useHttp2().build();
+    } catch (UnsupportedOperationException e) {
+      Assume.assumeNoException(e); // running on Java 8
+      return;
+    }
+    StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      large.append("0123456789");
+    }
+    Map<String, Object> body = new HashMap<>();
+    body.put("data", large.toString());
+    server.enqueue(message("sync"));
+
+    assertEquals("sync", client.<Message>request("info", body, Message.class).message);
+    RecordedRequest req = server.takeRequest();
+    // A body of unknown length is sent as it's written, not buffered first.
+    assertEquals("chunked", req.getHeader("Transfer-Encoding"));
+    assertEquals(large.length() + "{\"data\":\"\"}".length(), req.getBodySize());
+
+    // A body that can't be serialized fails the call without retries.
+    body.put("data", Double.NaN);
+    try {
+      client.request("info", body, Message.class);
+      fail("expecting JSONException");
+    } catch (JSONException e) {
+    }
+    assertTrue(server.getRequestCount() <= 2);
+  }
+
+  @Test
+  public void testJdkHttpTransportSocksProxy() throws Exception {
+    Proxy socks = new Proxy(Proxy.Type.SOCKS, new InetSocketAddress("localhost", 1080));
+    try {
+      new Client.Builder().setURL(server.getUrl("/")).setProxy(socks).useHttp2().build();
+      fail("expecting UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      Assume.assumeTrue(e.getMessage().contains("SOCKS")); // not running on Java 8
+    }
+    assertEquals(0, server.getRequestCount());
+  }
+
+  @Test
+  public void testVirtualThreads() throws Exception {
+    Client client;
+    try {
+      client = new Client.Builder().setURL(server.getUrl("/")).useVirtualThreads().build();
+    } catch (UnsupportedOperationException e) {
+      Assume.assumeNoException(e); // running on Java 20 or earlier
+      return;
+    }
+    // The response is delayed so that the callback below runs on the
+    // transport's thread, rather than on the test's.
+    server.enqueue(
+        message("async").setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+    final Thread[] caller = new Thread[1];
+    Message m =
+        client
+            .<Message>requestAsync("info", null, Message.class)
+            .thenApply(
+                new Function<Message, Message>() {
+                  public Message apply(Message m) {
+                    caller[0] = Thread.currentThread();
+                    return m;
+                  }
+                })
+            .get(10, TimeUnit.SECONDS);
+    assertEquals("async", m.message);
+    assertEquals(true, Thread.class.getMethod("isVirtual").invoke(caller[0]));
+  }
+}